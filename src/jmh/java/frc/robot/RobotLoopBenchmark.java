@@ -0,0 +1,69 @@
+package frc.robot;
+
+// Imports for the RobotLoopBenchmark class
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks one full teleop period of the robot against FakeDevices. The
+ * result is the time the robot code itself takes out of the 20 ms budget.
+ *
+ * Between invocations, outside the timed region, the fake clock moves on one
+ * period with the DriveModel attached and the sticks sweep back and forth.
+ * Each timed period then sees a real dt, moving encoders and IMU, and new
+ * talon outputs, as it would on the field. With a frozen clock and fixed
+ * inputs, CachedMotorOutput skips every write after the first, and the
+ * PowerManager and CompressorScheduler integrate a dt of 0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RobotLoopBenchmark {
+    // TimedRobot period the clock moves on between invocations (s)
+    private static final double LOOP_PERIOD = 0.02;
+
+    // Periods for the sticks to sweep forward and back once
+    private static final int SWEEP_PERIODS = 100;
+
+    private FakeRobot robot;
+    private int periods = 0;
+
+    @Setup
+    public void setup()
+    {
+        robot = new FakeRobot();
+        robot.drivetrain = new DriveModel(robot.talLM, robot.talLF, robot.talRM, robot.talRF, robot.talC,
+                robot.imuBus, robot.battery);
+
+        // Door closing, tank pressurized, the sticks are swept by nextPeriod()
+        robot.joyR.setButton(3, true);
+        robot.pressureSensor.voltage = 2.5;
+    }
+
+    @Setup(Level.Invocation)
+    public void nextPeriod()
+    {
+        robot.step(LOOP_PERIOD);
+
+        // Driving forward and back with a slight strafe
+        double sweep = Math.sin(2 * Math.PI * (periods++ % SWEEP_PERIODS) / SWEEP_PERIODS);
+        robot.joyR.axes[0] = 0.2 * sweep;
+        robot.joyR.axes[1] = -0.7 * sweep;
+        robot.joyL.axes[0] = 0.2 * sweep;
+        robot.joyL.axes[1] = 0.7 * sweep;
+    }
+
+    @Benchmark
+    public void teleopPeriodic()
+    {
+        robot.loop.teleopPeriodic();
+    }
+}
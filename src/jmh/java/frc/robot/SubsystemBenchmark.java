@@ -0,0 +1,80 @@
+package frc.robot;
+
+// Imports for the SubsystemBenchmark class
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the hot path of each subsystem against FakeDevices. Run with
+ * ./gradlew jmh; the gc profiler adds the allocation rate of each method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubsystemBenchmark {
+    // Plunger state the regulateState/runSolenoid benchmarks start from
+    @Param({ "CLOSED", "VACUUM_ON", "HOLD" })
+    public String plungerState;
+
+    private FakeRobot robot;
+    private Plunger.plungerState startState;
+    private double[] joyR, joyL;
+
+    @Setup
+    public void setup()
+    {
+        robot = new FakeRobot();
+        startState = Plunger.plungerState.valueOf(plungerState);
+        joyR = robot.driveBase.formatDriveJoystick(0.3, 0.6);
+        joyL = robot.driveBase.formatDriveJoystick(-0.2, 0.6);
+    }
+
+    @Benchmark
+    public void teleopDrive()
+    {
+        robot.driveBase.teleopDrive(joyR, joyL);
+    }
+
+    @Benchmark
+    public double[] formatDriveJoystick()
+    {
+        return robot.driveBase.formatDriveJoystick(0.3, 0.6);
+    }
+
+    @Benchmark
+    public Plunger.plungerState plungerRegulateState()
+    {
+        robot.plunger.state = startState;
+        robot.plunger.regulateState(false);
+        return robot.plunger.state;
+    }
+
+    @Benchmark
+    public void plungerRunSolenoid()
+    {
+        robot.plunger.state = startState;
+        robot.plunger.runSolenoid();
+    }
+
+    @Benchmark
+    public void pillowRun(Blackhole blackhole)
+    {
+        robot.pillow.run(false, true);
+        blackhole.consume(robot.talPillow.output);
+    }
+
+    @Benchmark
+    public double gyroOffsetHeading()
+    {
+        return robot.gyro.getOffsetHeading();
+    }
+}
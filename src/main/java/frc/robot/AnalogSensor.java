@@ -0,0 +1,12 @@
+package frc.robot;
+
+/**
+ * An analog input channel, such as a pressure transducer.
+ */
+public interface AnalogSensor {
+    /**
+     * Accessor method for the input voltage.
+     * @return The voltage on the channel.
+     */
+    double getVoltage();
+}
@@ -0,0 +1,22 @@
+package frc.robot;
+
+// Imports for the AnalogTriggerSensor interface
+import java.util.function.LongConsumer;
+
+/**
+ * An analog input with hardware triggers that report when the voltage
+ * crosses a window. Below a trigger's lower limit it goes low, above the
+ * upper limit it goes high, and in between it keeps its last state, so noise
+ * near one limit doesn't make it chatter.
+ */
+public interface AnalogTriggerSensor extends AnalogSensor {
+    /**
+     * Adds a trigger on the input. The handlers run on the interrupt thread,
+     * not the caller's.
+     * @param lowerVoltage
+     * @param upperVoltage
+     * @param below Called with the FPGA time in microseconds when the voltage drops below the lower limit, or null.
+     * @param above Called with the FPGA time in microseconds when the voltage rises above the upper limit, or null.
+     */
+    void addTrigger(double lowerVoltage, double upperVoltage, LongConsumer below, LongConsumer above);
+}
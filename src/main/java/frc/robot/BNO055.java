@@ -1,8 +1,7 @@
 package frc.robot;
 
-import java.util.TimerTask;
+import java.lang.invoke.VarHandle;
 import edu.wpi.first.wpilibj.I2C;
-import edu.wpi.first.wpilibj.Timer;
 
 /**
  * BNO055 IMU for the FIRST Robotics Competition. References throughout the code
@@ -62,9 +61,9 @@ import edu.wpi.first.wpilibj.Timer;
  */
 
 public class BNO055 {
-	// Tread variables
-	private java.util.Timer executor;
-	private static final long THREAD_PERIOD = 20; // ms - max poll rate on sensor.
+	// Thread variables
+	private Sampler sampler;
+	private static final double DEFAULT_SAMPLE_RATE = 100; // Hz - fusion output rate in IMU mode.
 
 	public static final byte BNO055_ADDRESS_A = 0x28;
 	public static final byte BNO055_ADDRESS_B = 0x29;
@@ -72,10 +71,11 @@ public class BNO055 {
 
 	private static BNO055 instance;
 
-	private static I2C imu;
-	private static int _mode;
-	private static opmode_t requestedMode; // user requested mode of operation.
-	private static vector_type_t requestedVectorType;
+	private final I2CBus imu;
+	private final Clock clock;
+	private int _mode;
+	private opmode_t requestedMode; // user requested mode of operation.
+	private vector_type_t requestedVectorType;
 
 	// State machine variables
 	private volatile int state = 0;
@@ -85,7 +85,45 @@ public class BNO055 {
 	private volatile double nextTime; // seconds
 	private volatile byte[] positionVector = new byte[6];
 	private volatile long turns = 0;
-	private volatile double[] xyz = new double[3];
+
+	// Burst read variables. The gyro, euler, quaternion and linear acceleration
+	// registers are contiguous (0x14 - 0x2D), so a single I2C transaction
+	// returns every fusion output sampled at the same instant (section 4.2.1).
+	private static final int FUSION_BLOCK_START = 0x14;
+	private static final int FUSION_BLOCK_LENGTH = 0x2E - FUSION_BLOCK_START;
+	private static final int GYRO_OFFSET = reg_t.BNO055_GYRO_DATA_X_LSB_ADDR.getVal() - FUSION_BLOCK_START;
+	private static final int EULER_OFFSET = reg_t.BNO055_EULER_H_LSB_ADDR.getVal() - FUSION_BLOCK_START;
+	private static final int LINEAR_ACCEL_OFFSET = reg_t.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR.getVal()
+			- FUSION_BLOCK_START;
+
+	private volatile boolean burstRead = true;
+	private final byte[] fusionBlock = new byte[FUSION_BLOCK_LENGTH];
+	private final double[] euler = new double[3];
+	private final double[] gyroRates = new double[3];
+	private final double[] linearAccel = new double[3];
+
+	// The requested vector of the update in progress. It is published with
+	// the snapshot, so the getters never see it half written.
+	private final double[] vector = new double[3];
+	private double lastHeading = 0.0;
+
+	// Snapshot published with a seqlock. The sequence is odd while the update
+	// thread is writing, readers retry until they see the same even value
+	// before and after copying the fields out.
+	private volatile long snapshotSequence = 0;
+	private double snapHeading;
+	private double snapRoll;
+	private double snapPitch;
+	private long snapTurns;
+	private double snapYawRate;
+	private double snapAccelX;
+	private double snapAccelY;
+	private double snapAccelZ;
+	private double snapTimestamp;
+	private final double[] snapVector = new double[3];
+	private final double[] snapEuler = new double[3];
+	private final double[] snapGyroRates = new double[3];
+	private final double[] snapLinearAccel = new double[3];
 
 	public class SystemStatus {
 		public int system_status;
@@ -264,18 +302,23 @@ public class BNO055 {
 	};
 
 	/**
-	 * Instantiates a new BNO055 class.
+	 * Instantiates a new BNO055 class. The sensor isn't polled until
+	 * startSampler() is called.
 	 *
-	 * @param port
-	 *            the physical port the sensor is plugged into on the roboRio
-	 * @param address
-	 *            the address the sensor is at (0x28 or 0x29)
+	 * @param bus
+	 *            the I2C device the sensor is at
+	 * @param clock
+	 *            time source for the initialization delays and sample timestamps
+	 * @param mode
+	 *            the operating mode to run the sensor in.
+	 * @param vectorType
+	 *            the format the position vector data should be returned in
 	 */
-	private BNO055(I2C.Port port, byte address) {
-		imu = new I2C(port, address);
-
-		executor = new java.util.Timer();
-		executor.schedule(new BNO055UpdateTask(this), 0L, THREAD_PERIOD);
+	private BNO055(I2CBus bus, Clock clock, opmode_t mode, vector_type_t vectorType) {
+		imu = bus;
+		this.clock = clock;
+		requestedMode = mode;
+		requestedVectorType = vectorType;
 	}
 
 	/**
@@ -291,13 +334,33 @@ public class BNO055 {
 	 */
 	public static BNO055 getInstance(opmode_t mode, vector_type_t vectorType, I2C.Port port, byte address) {
 		if (instance == null) {
-			instance = new BNO055(port, address);
+			instance = new BNO055(Devices.i2c(port, address), Devices.fpgaClock(), mode, vectorType);
+			instance.startSampler();
 		}
-		requestedMode = mode;
-		requestedVectorType = vectorType;
+		instance.requestedMode = mode;
+		instance.requestedVectorType = vectorType;
 		return instance;
 	}
 
+	/**
+	 * Creates an IMU object on the given bus that is not polled automatically.
+	 * Call update() to step it, for example against a FakeDevices.FakeI2C off
+	 * the robot.
+	 * 
+	 * @param mode
+	 *            the operating mode to run the sensor in.
+	 * @param vectorType
+	 *            the format the position vector data should be returned in
+	 * @param bus
+	 *            the I2C device the sensor is at
+	 * @param clock
+	 *            time source for the initialization delays and sample timestamps
+	 * @return a new BNO055 object
+	 */
+	public static BNO055 create(opmode_t mode, vector_type_t vectorType, I2CBus bus, Clock clock) {
+		return new BNO055(bus, clock, mode, vectorType);
+	}
+
 	/**
 	 * Get an instance of the IMU object plugged into the onboard I2C header. Using
 	 * the default address (0x28)
@@ -313,11 +376,73 @@ public class BNO055 {
 		return getInstance(mode, vectorType, I2C.Port.kOnboard, BNO055_ADDRESS_A);
 	}
 
+	/**
+	 * Gets the fusion data output rate of an operating mode (section 3.6.3).
+	 * Non-fusion modes are polled at the default rate.
+	 *
+	 * @param mode
+	 *            the operating mode
+	 * @return the rate new data is available in Hz
+	 */
+	public static double getOutputRate(opmode_t mode) {
+		switch (mode) {
+		case OPERATION_MODE_COMPASS:
+			return 20;
+		case OPERATION_MODE_M4G:
+			return 50;
+		default:
+			return DEFAULT_SAMPLE_RATE;
+		}
+	}
+
+	/**
+	 * Changes how often the sensor is polled. There's no benefit to polling
+	 * faster than the output rate of the operating mode.
+	 *
+	 * @param rate
+	 *            the new poll rate in Hz
+	 */
+	public void setSampleRate(double rate) {
+		if (sampler != null) {
+			sampler.setRate(rate);
+		}
+	}
+
+	/**
+	 * Starts polling the sensor on its own thread at the output rate of the
+	 * operating mode.
+	 */
+	public synchronized void startSampler() {
+		if (sampler == null) {
+			sampler = new Sampler(this::update, getOutputRate(requestedMode), clock);
+		}
+		sampler.start();
+	}
+
+	/**
+	 * Gets the sampler that polls the sensor, for its latency and jitter
+	 * histograms.
+	 *
+	 * @return the sampler running update(), or null if it was never started
+	 */
+	public Sampler getSampler() {
+		return sampler;
+	}
+
+	/**
+	 * Stops polling the sensor. The last published sample stays available.
+	 */
+	public synchronized void stop() {
+		if (sampler != null) {
+			sampler.stop();
+		}
+	}
+
 	/**
 	 * Called periodically. Communicates with the sensor, and checks its state.
 	 */
-	private void update() {
-		currentTime = Timer.getFPGATimestamp(); // seconds
+	public void update() {
+		currentTime = clock.getTimestamp(); // seconds
 		if (!initialized) {
 			// System.out.println("State: " + state + ". curr: " + currentTime
 			// + ", next: " + nextTime);
@@ -336,14 +461,14 @@ public class BNO055 {
 					// Sensor present, go to next state
 					sensorPresent = true;
 					state++;
-					nextTime = Timer.getFPGATimestamp() + 0.050;
+					nextTime = clock.getTimestamp() + 0.050;
 				}
 				break;
 			case 1:
 				if (currentTime >= nextTime) {
 					// Switch to config mode (just in case since this is the default)
 					setMode(opmode_t.OPERATION_MODE_CONFIG.getVal());
-					nextTime = Timer.getFPGATimestamp() + 0.050;
+					nextTime = clock.getTimestamp() + 0.050;
 					state++;
 				}
 				break;
@@ -360,7 +485,7 @@ public class BNO055 {
 					// Sensor present, go to next state
 					state++;
 					// Log current time
-					nextTime = Timer.getFPGATimestamp() + 0.050;
+					nextTime = clock.getTimestamp() + 0.050;
 				}
 				break;
 			case 4:
@@ -368,7 +493,7 @@ public class BNO055 {
 				if (currentTime >= nextTime) {
 					/* Set to normal power mode */
 					write8(reg_t.BNO055_PWR_MODE_ADDR, (byte) powermode_t.POWER_MODE_NORMAL.getVal());
-					nextTime = Timer.getFPGATimestamp() + 0.050;
+					nextTime = clock.getTimestamp() + 0.050;
 					state++;
 				}
 				break;
@@ -376,14 +501,14 @@ public class BNO055 {
 				// Use external crystal - 32.768 kHz
 				if (currentTime >= nextTime) {
 					write8(reg_t.BNO055_PAGE_ID_ADDR, (byte) 0x00);
-					nextTime = Timer.getFPGATimestamp() + 0.050;
+					nextTime = clock.getTimestamp() + 0.050;
 					state++;
 				}
 				break;
 			case 6:
 				if (currentTime >= nextTime) {
 					write8(reg_t.BNO055_SYS_TRIGGER_ADDR, (byte) 0x80);
-					nextTime = Timer.getFPGATimestamp() + 0.500;
+					nextTime = clock.getTimestamp() + 0.500;
 					state++;
 				}
 				break;
@@ -391,7 +516,7 @@ public class BNO055 {
 				// Set operating mode to mode requested at instantiation
 				if (currentTime >= nextTime) {
 					setMode(requestedMode);
-					nextTime = Timer.getFPGATimestamp() + 1.05;
+					nextTime = clock.getTimestamp() + 1.05;
 					state++;
 				}
 				break;
@@ -413,64 +538,244 @@ public class BNO055 {
 	}
 
 	/**
-	 * Query the sensor for position data.
+	 * Query the sensor for position data. In burst mode every fusion output is
+	 * read in one transaction and decoded into preallocated buffers, so no
+	 * garbage is created per update.
 	 */
 	private void calculateVector() {
-		double[] pos = new double[3];
-		short x = 0, y = 0, z = 0;
+		double[] pos = vector;
 		double headingDiff = 0.0;
 
-		// Read vector data (6 bytes)
-		readLen(requestedVectorType.getVal(), positionVector);
+		if (burstRead && readLen(FUSION_BLOCK_START, fusionBlock)) {
+			decodeVector(fusionBlock, GYRO_OFFSET, vector_type_t.VECTOR_GYROSCOPE, gyroRates);
+			decodeVector(fusionBlock, EULER_OFFSET, vector_type_t.VECTOR_EULER, euler);
+			decodeVector(fusionBlock, LINEAR_ACCEL_OFFSET, vector_type_t.VECTOR_LINEARACCEL, linearAccel);
+
+			switch (requestedVectorType) {
+			case VECTOR_GYROSCOPE:
+				copyVector(gyroRates, pos);
+				break;
+			case VECTOR_EULER:
+				copyVector(euler, pos);
+				break;
+			case VECTOR_LINEARACCEL:
+				copyVector(linearAccel, pos);
+				break;
+			default:
+				// Requested vector lives outside the fusion block, read it separately
+				readLen(requestedVectorType.getVal(), positionVector);
+				decodeVector(positionVector, 0, requestedVectorType, pos);
+				break;
+			}
+		} else {
+			// Read vector data (6 bytes)
+			readLen(requestedVectorType.getVal(), positionVector);
+			decodeVector(positionVector, 0, requestedVectorType, pos);
+		}
+
+		// Heading, roll and pitch come from the euler registers when they were
+		// part of this read, otherwise from the requested vector as before
+		double[] angles = euler;
+		if (!burstRead || requestedVectorType == vector_type_t.VECTOR_EULER) {
+			angles = pos;
+		}
+
+		// calculate turns
+		headingDiff = lastHeading - angles[0];
+		if (Math.abs(headingDiff) >= 350) {
+			// We've traveled past the zero heading position
+			if (headingDiff > 0) {
+				turns++;
+			} else {
+				turns--;
+			}
+		}
+		lastHeading = angles[0];
+
+		publishSnapshot(angles);
+	}
 
-		x = (short) ((positionVector[0] & 0xFF) | ((positionVector[1] << 8) & 0xFF00));
-		y = (short) ((positionVector[2] & 0xFF) | ((positionVector[3] << 8) & 0xFF00));
-		z = (short) ((positionVector[4] & 0xFF) | ((positionVector[5] << 8) & 0xFF00));
+	/**
+	 * Publishes the latest sample for getSnapshot(). Only called from the update
+	 * thread, so there is a single writer.
+	 *
+	 * @param angles
+	 *            the heading, roll and pitch of this update
+	 */
+	private void publishSnapshot(double[] angles) {
+		long sequence = snapshotSequence;
+
+		// Mark the snapshot as being written before touching any field
+		snapshotSequence = sequence + 1;
+		VarHandle.storeStoreFence();
+
+		snapHeading = angles[0];
+		snapRoll = angles[1];
+		snapPitch = angles[2];
+		snapTurns = turns;
+		// The gyro z rate is counterclockwise positive, the heading clockwise
+		snapYawRate = -gyroRates[2];
+		snapAccelX = linearAccel[0];
+		snapAccelY = linearAccel[1];
+		snapAccelZ = linearAccel[2];
+		snapTimestamp = currentTime;
+		copyVector(vector, snapVector);
+		copyVector(euler, snapEuler);
+		copyVector(gyroRates, snapGyroRates);
+		copyVector(linearAccel, snapLinearAccel);
+
+		// The volatile write releases the fields written above
+		snapshotSequence = sequence + 2;
+	}
+
+	/**
+	 * Copies the most recent sample into the given snapshot. Never blocks on
+	 * the update thread and never allocates; if an update is published while
+	 * copying, the copy is simply retried.
+	 *
+	 * @param out
+	 *            the snapshot to fill in
+	 * @return true if the sensor has produced at least one sample
+	 */
+	public boolean getSnapshot(ImuSnapshot out) {
+		long before, after;
+
+		do {
+			before = snapshotSequence;
+			out.heading = snapHeading;
+			out.roll = snapRoll;
+			out.pitch = snapPitch;
+			out.turns = snapTurns;
+			out.yawRate = snapYawRate;
+			out.accelX = snapAccelX;
+			out.accelY = snapAccelY;
+			out.accelZ = snapAccelZ;
+			out.timestamp = snapTimestamp;
+			VarHandle.loadLoadFence();
+			after = snapshotSequence;
+		} while ((before & 1) != 0 || before != after);
+
+		out.sequence = before / 2;
+		return before != 0;
+	}
+
+	/**
+	 * Decodes three little endian 16 bit values from a register buffer and
+	 * converts them to an appropriate range (section 3.6.4).
+	 *
+	 * @param buffer
+	 *            the raw register data
+	 * @param offset
+	 *            index of the x axis LSB in the buffer
+	 * @param type
+	 *            the vector type the registers hold
+	 * @param out
+	 *            array the three converted values are written to
+	 */
+	private static void decodeVector(byte[] buffer, int offset, vector_type_t type, double[] out) {
+		short x = (short) ((buffer[offset] & 0xFF) | ((buffer[offset + 1] << 8) & 0xFF00));
+		short y = (short) ((buffer[offset + 2] & 0xFF) | ((buffer[offset + 3] << 8) & 0xFF00));
+		short z = (short) ((buffer[offset + 4] & 0xFF) | ((buffer[offset + 5] << 8) & 0xFF00));
+		double lsb = 1.0;
 
-		/* Convert the value to an appropriate range (section 3.6.4) */
-		/* and assign the value to the Vector type */
-		switch (requestedVectorType) {
+		switch (type) {
 		case VECTOR_MAGNETOMETER:
 			/* 1uT = 16 LSB */
-			pos[0] = ((double) x) / 16.0;
-			pos[1] = ((double) y) / 16.0;
-			pos[2] = ((double) z) / 16.0;
+			lsb = 16.0;
 			break;
 		case VECTOR_GYROSCOPE:
-			/* 1rps = 900 LSB */
-			pos[0] = ((double) x) / 900.0;
-			pos[1] = ((double) y) / 900.0;
-			pos[2] = ((double) z) / 900.0;
+			/* 1dps = 16 LSB, UNIT_SEL is left at its default of dps (section 3.6.1) */
+			lsb = 16.0;
 			break;
 		case VECTOR_EULER:
 			/* 1 degree = 16 LSB */
-			pos[0] = ((double) x) / 16.0;
-			pos[1] = ((double) y) / 16.0;
-			pos[2] = ((double) z) / 16.0;
+			lsb = 16.0;
 			break;
 		case VECTOR_ACCELEROMETER:
 		case VECTOR_LINEARACCEL:
 		case VECTOR_GRAVITY:
 			/* 1m/s^2 = 100 LSB */
-			pos[0] = ((double) x) / 100.0;
-			pos[1] = ((double) y) / 100.0;
-			pos[2] = ((double) z) / 100.0;
+			lsb = 100.0;
 			break;
 		}
 
-		// calculate turns
-		headingDiff = xyz[0] - pos[0];
-		if (Math.abs(headingDiff) >= 350) {
-			// We've traveled past the zero heading position
-			if (headingDiff > 0) {
-				turns++;
-			} else {
-				turns--;
-			}
-		}
+		out[0] = ((double) x) / lsb;
+		out[1] = ((double) y) / lsb;
+		out[2] = ((double) z) / lsb;
+	}
+
+	private static void copyVector(double[] from, double[] to) {
+		to[0] = from[0];
+		to[1] = from[1];
+		to[2] = from[2];
+	}
 
-		// Update position vectors
-		xyz = pos;
+	/**
+	 * Copies one of the published vectors with the same retry as getSnapshot(),
+	 * so the three values always come from a single update.
+	 *
+	 * @param from
+	 *            the published vector
+	 * @param out
+	 *            an array of at least 3 elements
+	 */
+	private void readSnapshotVector(double[] from, double[] out) {
+		long before, after;
+
+		do {
+			before = snapshotSequence;
+			copyVector(from, out);
+			VarHandle.loadLoadFence();
+			after = snapshotSequence;
+		} while ((before & 1) != 0 || before != after);
+	}
+
+	/**
+	 * Enables or disables burst reads of the fusion register block. When
+	 * disabled only the requested vector is read each update and the gyro and
+	 * linear acceleration outputs are not refreshed.
+	 *
+	 * @param enabled
+	 *            true to read all fusion outputs in one transaction
+	 */
+	public void setBurstRead(boolean enabled) {
+		burstRead = enabled;
+	}
+
+	/**
+	 * Copies the latest euler angles (heading, roll, pitch) from the last burst
+	 * read into the given array.
+	 * All three values come from the same update.
+	 *
+	 * @param out
+	 *            an array of at least 3 elements
+	 */
+	public void getEuler(double[] out) {
+		readSnapshotVector(snapEuler, out);
+	}
+
+	/**
+	 * Copies the latest gyro rates (x, y, z) from the last burst read into the
+	 * given array.
+	 * All three values come from the same update.
+	 *
+	 * @param out
+	 *            an array of at least 3 elements
+	 */
+	public void getGyroRates(double[] out) {
+		readSnapshotVector(snapGyroRates, out);
+	}
+
+	/**
+	 * Copies the latest linear acceleration (x, y, z) in m/s^2 from the last
+	 * burst read into the given array.
+	 * All three values come from the same update.
+	 *
+	 * @param out
+	 *            an array of at least 3 elements
+	 */
+	public void getLinearAccel(double[] out) {
+		readSnapshotVector(snapLinearAccel, out);
 	}
 
 	/**
@@ -659,10 +964,24 @@ public class BNO055 {
 	 * Operating Mode Data Output Rate IMU 100 Hz COMPASS 20 Hz M4G 50 Hz
 	 * NDOF_FMC_OFF 100 Hz NDOF 100 Hz
 	 *
-	 * @return a vector [heading, roll, pitch]
+	 * @return a new array [heading, roll, pitch] from a single update, which
+	 *         the caller may keep. See getVector(double[]) to avoid allocating.
 	 */
 	public double[] getVector() {
-		return xyz;
+		double[] out = new double[3];
+		readSnapshotVector(snapVector, out);
+		return out;
+	}
+
+	/**
+	 * Copies the vector getVector() returns into the given array without
+	 * allocating. The three values always come from a single update.
+	 *
+	 * @param out
+	 *            an array of at least 3 elements
+	 */
+	public void getVector(double[] out) {
+		readSnapshotVector(snapVector, out);
 	}
 
 	/**
@@ -674,7 +993,19 @@ public class BNO055 {
 	 * @return heading in degrees
 	 */
 	public double getHeading() {
-		return xyz[0] + turns * 360;
+		double heading;
+		long headingTurns, before, after;
+
+		// Read the heading and turn count from the same update
+		do {
+			before = snapshotSequence;
+			heading = snapHeading;
+			headingTurns = snapTurns;
+			VarHandle.loadLoadFence();
+			after = snapshotSequence;
+		} while ((before & 1) != 0 || before != after);
+
+		return heading + headingTurns * 360;
 	}
 
 	/**
@@ -742,22 +1073,4 @@ public class BNO055 {
 
 		return retVal;
 	}
-
-	private class BNO055UpdateTask extends TimerTask {
-		private BNO055 imu;
-
-		private BNO055UpdateTask(BNO055 imu) {
-			if (imu == null) {
-				throw new NullPointerException("BNO055 pointer null");
-			}
-			this.imu = imu;
-		}
-
-		/**
-		 * Called periodically in its own thread
-		 */
-		public void run() {
-			imu.update();
-		}
-	}
 }
@@ -0,0 +1,115 @@
+package frc.robot;
+
+/** Methods:
+ * public BatteryModel(double openCircuitVoltage, double resistance)
+ * public void update(double current, double voltage)
+ * public double predictVoltage(double current)
+ * public double getCurrentLimit(double minimumVoltage)
+ * public double getOpenCircuitVoltage()
+ * public double getResistance()
+ */
+
+/**
+ * A battery as an ideal voltage source behind a resistance, V = Voc - I * R.
+ * Both are estimated online from (current, voltage) samples with
+ * exponentially weighted least squares, so the model follows the battery as
+ * it drains and warms up over a match. Until the current has varied enough
+ * to fit a slope, the resistance stays at its last (or initial) value.
+ */
+public class BatteryModel {
+    // Weight of each new sample in the running averages
+    private static final double SAMPLE_WEIGHT = 0.02;
+
+    // Current variance (A^2) needed before the resistance is refit
+    private static final double MIN_CURRENT_VARIANCE = 25;
+
+    // Limits on the fitted resistance (ohms), battery plus wiring
+    private static final double MIN_RESISTANCE = 0.005;
+    private static final double MAX_RESISTANCE = 0.1;
+
+    private double openCircuitVoltage;
+    private double resistance;
+
+    // Exponentially weighted moments of the samples
+    private boolean hasSamples = false;
+    private double meanCurrent, meanVoltage, currentVariance, covariance;
+
+    /**
+     * Constructs a new BatteryModel.
+     * @param openCircuitVoltage Starting estimate of the unloaded voltage.
+     * @param resistance Starting estimate of the internal resistance in ohms.
+     */
+    public BatteryModel(double openCircuitVoltage, double resistance)
+    {
+        this.openCircuitVoltage = openCircuitVoltage;
+        this.resistance = resistance;
+    }
+
+    /**
+     * Adds a sample and refits the model.
+     * @param current Total current in amps.
+     * @param voltage Battery voltage at that current.
+     */
+    public void update(double current, double voltage)
+    {
+        if (!hasSamples)
+        {
+            meanCurrent = current;
+            meanVoltage = voltage;
+            hasSamples = true;
+        }
+        else
+        {
+            double dI = current - meanCurrent;
+            double dV = voltage - meanVoltage;
+            meanCurrent += SAMPLE_WEIGHT * dI;
+            meanVoltage += SAMPLE_WEIGHT * dV;
+            currentVariance = (1 - SAMPLE_WEIGHT) * (currentVariance + SAMPLE_WEIGHT * dI * dI);
+            covariance = (1 - SAMPLE_WEIGHT) * (covariance + SAMPLE_WEIGHT * dI * dV);
+        }
+
+        if (currentVariance > MIN_CURRENT_VARIANCE)
+        {
+            resistance = Math.max(MIN_RESISTANCE, Math.min(MAX_RESISTANCE, -covariance / currentVariance));
+        }
+        openCircuitVoltage = meanVoltage + resistance * meanCurrent;
+    }
+
+    /**
+     * Predicts the battery voltage at a current.
+     * @param current
+     * @return Voltage in volts.
+     */
+    public double predictVoltage(double current)
+    {
+        return openCircuitVoltage - resistance * current;
+    }
+
+    /**
+     * Calculates the most current the battery can give while staying above a voltage.
+     * @param minimumVoltage
+     * @return Current in amps, 0 if the battery is already below it unloaded.
+     */
+    public double getCurrentLimit(double minimumVoltage)
+    {
+        return Math.max(0, (openCircuitVoltage - minimumVoltage) / resistance);
+    }
+
+    /**
+     * Accessor method for the estimated unloaded voltage.
+     * @return
+     */
+    public double getOpenCircuitVoltage()
+    {
+        return openCircuitVoltage;
+    }
+
+    /**
+     * Accessor method for the estimated internal resistance.
+     * @return Resistance in ohms.
+     */
+    public double getResistance()
+    {
+        return resistance;
+    }
+}
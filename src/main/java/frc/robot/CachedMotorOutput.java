@@ -0,0 +1,142 @@
+package frc.robot;
+
+/** Methods:
+ * public CachedMotorOutput(MotorOutput motor, Clock clock, double tolerance, double keepAlive)
+ * public void set(double percentOutput)
+ * public void follow(int masterPort)
+ * public void setInverted(boolean inverted)
+ * public double getOutputCurrent()
+ * public double getSensorPosition()
+ * public double getSensorVelocity()
+ * public void invalidate()
+ * public long getWrites()
+ * public long getSavedWrites()
+ */
+
+/**
+ * Wraps a MotorOutput and only passes on commands that change something, so
+ * a control loop can set every motor every cycle without putting a CAN frame
+ * on the bus for each call. An unchanged output is still re-sent once the
+ * keep-alive interval has passed since the last write.
+ */
+public class CachedMotorOutput implements MotorOutput {
+    private final MotorOutput motor;
+    private final Clock clock;
+    private final long keepAliveMicros;
+    private final double tolerance;
+
+    // Last command passed on to the motor
+    private double lastOutput;
+    private int lastMaster = -1;
+    private boolean hasOutput = false;
+    private long lastWrite;
+
+    // Written by the control loop, read by the telemetry thread
+    private volatile long writes, savedWrites;
+
+    /**
+     * Constructs a new CachedMotorOutput.
+     * @param motor The motor commands are passed on to.
+     * @param clock
+     * @param tolerance Smallest output change that is sent.
+     * @param keepAlive Longest time an unchanged output goes without being re-sent (seconds).
+     */
+    public CachedMotorOutput(MotorOutput motor, Clock clock, double tolerance, double keepAlive)
+    {
+        this.motor = motor;
+        this.clock = clock;
+        this.tolerance = tolerance;
+        keepAliveMicros = (long) (keepAlive * 1e6);
+    }
+
+    /**
+     * Sets the motor output if it differs from the last one by more than the
+     * tolerance or the keep-alive interval has passed.
+     * @param percentOutput
+     */
+    public void set(double percentOutput)
+    {
+        long now = clock.getMicros();
+        if (hasOutput && Math.abs(percentOutput - lastOutput) <= tolerance
+                && now - lastWrite < keepAliveMicros)
+        {
+            savedWrites++;
+            return;
+        }
+
+        motor.set(percentOutput);
+        lastOutput = percentOutput;
+        lastMaster = -1;
+        hasOutput = true;
+        lastWrite = now;
+        writes++;
+    }
+
+    /**
+     * Makes the motor follow another controller, unless it already is.
+     * @param masterPort
+     */
+    public void follow(int masterPort)
+    {
+        if (masterPort == lastMaster)
+        {
+            savedWrites++;
+            return;
+        }
+
+        motor.follow(masterPort);
+        lastMaster = masterPort;
+        hasOutput = false;
+        lastWrite = clock.getMicros();
+        writes++;
+    }
+
+    public void setInverted(boolean inverted)
+    {
+        motor.setInverted(inverted);
+    }
+
+    public double getOutputCurrent()
+    {
+        return motor.getOutputCurrent();
+    }
+
+    public double getSensorPosition()
+    {
+        return motor.getSensorPosition();
+    }
+
+    public double getSensorVelocity()
+    {
+        return motor.getSensorVelocity();
+    }
+
+    /**
+     * Forgets the last command so the next one is always sent, for example
+     * after the controller has been reset.
+     */
+    public void invalidate()
+    {
+        hasOutput = false;
+        lastMaster = -1;
+    }
+
+    /**
+     * Accessor method for the number of commands passed on to the motor.
+     * @return
+     */
+    public long getWrites()
+    {
+        return writes;
+    }
+
+    /**
+     * Accessor method for the number of commands that weren't sent because
+     * nothing had changed.
+     * @return
+     */
+    public long getSavedWrites()
+    {
+        return savedWrites;
+    }
+}
@@ -0,0 +1,230 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import edu.wpi.cscore.CameraServerJNI;
+import edu.wpi.cscore.MjpegServer;
+import edu.wpi.cscore.UsbCamera;
+import edu.wpi.cscore.VideoSource.ConnectionStrategy;
+import edu.wpi.first.cameraserver.CameraServer;
+
+/** Methods:
+ * public CameraManager(Clock clock, Telemetry telemetry, double bandwidthCap)
+ * public void select(int camera)
+ * public void toggle()
+ * public int getActive()
+ * public int getLevel()
+ * public double getDataRate()
+ * public void update()
+ * private void applyLevel()
+ * private double readCpuTime()
+ */
+
+/**
+ * Streams one of the two Sandstorm cameras at a time through a single MJPEG
+ * server. The inactive camera is force closed so it stops capturing, and the
+ * active one is kept open so switching doesn't wait for a client to connect.
+ *
+ * Once a second the stream's measured data rate is compared with the
+ * bandwidth cap. Above the cap the stream steps down the quality ladder; after
+ * a few quiet periods it steps back up. The ladder drops FPS and JPEG quality
+ * before resolution, since a resolution change makes the camera renegotiate.
+ */
+public class CameraManager {
+    // Camera indices
+    public static final int FRONT_CAMERA = 0;
+    public static final int BACK_CAMERA = 1;
+
+    // Quality ladder, best first: width, height, FPS, JPEG quality (-1 sends the camera's own JPEGs)
+    private static final int[][] LADDER = {
+        {320, 240, 20, -1},
+        {320, 240, 15, -1},
+        {320, 240, 15, 60},
+        {240, 180, 15, 60},
+        {160, 120, 15, 60},
+        {160, 120, 10, 40},
+        {160, 120, 7, 30}
+    };
+    private static final int START_LEVEL = 3;
+
+    // Adaptation timing (seconds)
+    private static final double ADAPT_PERIOD = 1;
+    private static final int SETTLE_PERIODS = 2;
+    private static final int STEP_UP_PERIODS = 3;
+
+    // Fractions of the cap that trigger a step down or allow a step up
+    private static final double STEP_DOWN_LOAD = 0.9;
+    private static final double STEP_UP_LOAD = 0.6;
+
+    // Rate the stream statistics are sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 2;
+
+    // Linux clock ticks per second for /proc/self/stat
+    private static final double CPU_TICKS = 100;
+
+    private final UsbCamera[] cameras = new UsbCamera[2];
+    private final MjpegServer server;
+    private final Clock clock;
+    private final double bandwidthCap;
+    private int active = -1;
+    private int level = START_LEVEL;
+    private double lastAdapt;
+    private int settlePeriods;
+    private int quietPeriods;
+    private double lastCpuTime = -1;
+    private volatile double cpuLoad;
+
+    /**
+     * Constructs a new CameraManager, starts both cameras and streams the front one.
+     * @param clock
+     * @param telemetry
+     * @param bandwidthCap Highest data rate the stream may use (bytes per second).
+     */
+    public CameraManager(Clock clock, Telemetry telemetry, double bandwidthCap)
+    {
+        this.clock = clock;
+        this.bandwidthCap = bandwidthCap;
+
+        // cscore only measures FPS and data rate when telemetry is on
+        CameraServerJNI.setTelemetryPeriod(ADAPT_PERIOD);
+
+        for (int i = 0; i < cameras.length; i++) {
+            cameras[i] = new UsbCamera("Sandstorm " + i, i);
+            cameras[i].setConnectionStrategy(ConnectionStrategy.kForceClose);
+        }
+        server = CameraServer.getInstance().addSwitchedCamera("Sandstorm");
+        select(FRONT_CAMERA);
+        lastAdapt = clock.getTimestamp();
+
+        telemetry.registerPolled("Camera Active", TELEMETRY_RATE, this::getActive);
+        telemetry.registerPolled("Camera Level", TELEMETRY_RATE, this::getLevel);
+        telemetry.registerPolled("Camera FPS", TELEMETRY_RATE, () -> cameras[active].getActualFPS());
+        telemetry.registerPolled("Camera kB/s", TELEMETRY_RATE, () -> getDataRate() / 1000);
+        telemetry.registerPolled("Camera CPU (%)", TELEMETRY_RATE, () -> cpuLoad);
+    }
+
+    /**
+     * Streams the given camera and suspends capture on the other.
+     * @param camera FRONT_CAMERA or BACK_CAMERA.
+     */
+    public synchronized void select(int camera)
+    {
+        if (camera == active) return;
+        if (camera < 0 || camera >= cameras.length) {
+            System.out.println("CameraManager: no camera " + camera);
+            return;
+        }
+
+        if (active >= 0) cameras[active].setConnectionStrategy(ConnectionStrategy.kForceClose);
+        active = camera;
+        cameras[active].setConnectionStrategy(ConnectionStrategy.kKeepOpen);
+        server.setSource(cameras[active]);
+        applyLevel();
+    }
+
+    /**
+     * Switches the stream to the other camera.
+     */
+    public synchronized void toggle()
+    {
+        select(active == FRONT_CAMERA ? BACK_CAMERA : FRONT_CAMERA);
+    }
+
+    /**
+     * Accessor method for the streamed camera.
+     * @return FRONT_CAMERA or BACK_CAMERA.
+     */
+    public int getActive()
+    {
+        return active;
+    }
+
+    /**
+     * Accessor method for the current step on the quality ladder.
+     * @return 0 for the best quality.
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Accessor method for the streamed camera's data rate. With server side
+     * compression this overestimates what goes out, which errs on the safe side.
+     * @return The data rate in bytes per second.
+     */
+    public double getDataRate()
+    {
+        return cameras[active].getActualDataRate();
+    }
+
+    /**
+     * Adapts the stream to the bandwidth cap. Call from robotPeriodic.
+     */
+    public synchronized void update()
+    {
+        double now = clock.getTimestamp();
+        if (now - lastAdapt < ADAPT_PERIOD) return;
+        double elapsed = now - lastAdapt;
+        lastAdapt = now;
+
+        // CPU used by the whole robot process, which includes cscore's threads
+        double cpuTime = readCpuTime();
+        if (cpuTime >= 0 && lastCpuTime >= 0) cpuLoad = 100 * (cpuTime - lastCpuTime) / elapsed;
+        lastCpuTime = cpuTime;
+
+        // Let the measured rate catch up after a change
+        if (settlePeriods > 0) {
+            settlePeriods--;
+            return;
+        }
+
+        double load = getDataRate() / bandwidthCap;
+        if (load > STEP_DOWN_LOAD && level < LADDER.length - 1) {
+            level++;
+            applyLevel();
+        }
+        else if (load < STEP_UP_LOAD && level > 0) {
+            if (++quietPeriods >= STEP_UP_PERIODS) {
+                level--;
+                applyLevel();
+            }
+        }
+        else quietPeriods = 0;
+    }
+
+    /**
+     * Sends the current ladder step to the active camera and the server.
+     */
+    private void applyLevel()
+    {
+        int[] step = LADDER[level];
+        UsbCamera camera = cameras[active];
+        camera.setResolution(step[0], step[1]);
+        camera.setFPS(step[2]);
+        server.setCompression(step[3]);
+        server.setDefaultCompression(step[3]);
+        settlePeriods = SETTLE_PERIODS;
+        quietPeriods = 0;
+    }
+
+    /**
+     * Reads the CPU time used by this process.
+     * @return The time in seconds, or -1 when it can't be read.
+     */
+    private double readCpuTime()
+    {
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc/self/stat")), StandardCharsets.US_ASCII);
+            // Fields after the command name, which may contain spaces
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) / CPU_TICKS;
+        }
+        catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package frc.robot;
+
+/**
+ * A monotonic time source. On the robot this is the FPGA clock.
+ */
+public interface Clock {
+    /**
+     * Accessor method for the current time.
+     * @return The time in microseconds.
+     */
+    long getMicros();
+
+    /**
+     * Accessor method for the current time.
+     * @return The time in seconds.
+     */
+    default double getTimestamp()
+    {
+        return getMicros() / 1e6;
+    }
+}
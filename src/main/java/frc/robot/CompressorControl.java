@@ -0,0 +1,22 @@
+package frc.robot;
+
+/**
+ * The compressor attached to the pneumatics control module.
+ */
+public interface CompressorControl {
+    /**
+     * Starts closed loop control (the compressor runs until the pressure switch trips).
+     */
+    void start();
+
+    /**
+     * Stops closed loop control.
+     */
+    void stop();
+
+    /**
+     * Accessor method for the compressor.
+     * @return If the compressor is currently running.
+     */
+    boolean enabled();
+}
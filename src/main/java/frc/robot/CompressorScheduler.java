@@ -0,0 +1,230 @@
+package frc.robot;
+
+/** Methods:
+ * public CompressorScheduler(Clock clock, Telemetry telemetry)
+ * public void setDriveLoad(double current, double demand)
+ * public boolean update(double pressure, Plunger.plungerState state, boolean allowed)
+ * public boolean isRunning()
+ * public boolean isDeferred()
+ * public double getReservePressure()
+ * public double getAirPerHatch()
+ * public double getRunTime()
+ * public double getDeferredTime()
+ * public double getDutyCycle()
+ * private void trackHatchCycle(double pressure, Plunger.plungerState state)
+ */
+
+/**
+ * Decides when the compressor should run instead of leaving it on all the
+ * time. It runs on a hysteresis band of tank pressure, and while it is only
+ * topping up it waits out hard driving (high current or fast changes in drive
+ * command) so it doesn't add to the load when the battery is already working.
+ *
+ * It also learns how much tank pressure a hatch cycle (suction on until the
+ * hatch is dropped) uses. If the tank falls below what RESERVE_HATCHES cycles
+ * need, the compressor runs regardless of driving, so there is always air for
+ * the next hatch. The PowerManager's veto still wins over that.
+ */
+public class CompressorScheduler {
+    // Hysteresis band (psi). The PCM's pressure switch still stops it at 120.
+    public static final double START_PRESSURE = 90;
+    public static final double STOP_PRESSURE = 115;
+
+    // The plunger won't start suction below this pressure (psi)
+    public static final double MIN_WORKING_PRESSURE = 20;
+
+    // Hatch cycles of air always kept in the tank, and the first guess of a cycle's use (psi)
+    public static final int RESERVE_HATCHES = 2;
+    public static final double DEFAULT_AIR_PER_HATCH = 8;
+    private static final double AIR_PER_HATCH_WEIGHT = 0.3;
+
+    // Driving that the compressor waits out while topping up. The acceleration
+    // is the drive demand change per second, low-pass filtered so one cycle's
+    // stick movement doesn't count as hard driving. Measured on FakeRobot
+    // through every response curve: slamming both sticks to full reads 15,
+    // to 0.8 reads 8 to 11, a 0.3 s ramp to full 8 to 9 and weaving at 0.6
+    // stick 2 to 4.
+    public static final double HIGH_DRIVE_CURRENT = 120;
+    public static final double HIGH_DRIVE_ACCELERATION = 10;
+    private static final double DEMAND_RATE_TIME_CONSTANT = 0.1; // s
+
+    // Rate the metrics are sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 2;
+
+    private final Clock clock;
+    private final Telemetry telemetry;
+
+    // Drive load from the control loop
+    private double driveCurrent, driveDemand, lastDemand;
+    private double demandRate;
+
+    // Scheduling state
+    private boolean running = false;
+    private boolean deferred = false;
+    private double lastTime;
+    private double startTime;
+    private double runTime = 0, deferredTime = 0;
+
+    // Hatch cycle air tracking
+    private double airPerHatch = DEFAULT_AIR_PER_HATCH;
+    private boolean inHatchCycle = false;
+    private double cycleAirUsed, lastPressure = -1;
+
+    // Telemetry keys
+    private int dutyKey, runKey, deferredKey, reserveKey;
+
+    /**
+     * Constructs a new CompressorScheduler.
+     * @param clock
+     * @param telemetry
+     */
+    public CompressorScheduler(Clock clock, Telemetry telemetry)
+    {
+        this.clock = clock;
+        this.telemetry = telemetry;
+        lastTime = clock.getTimestamp();
+        startTime = lastTime;
+
+        dutyKey = telemetry.register("Compressor Duty", TELEMETRY_RATE);
+        runKey = telemetry.register("Compressor Run Time", TELEMETRY_RATE);
+        deferredKey = telemetry.register("Compressor Deferred Time", TELEMETRY_RATE);
+        reserveKey = telemetry.register("Air Reserve", TELEMETRY_RATE);
+    }
+
+    /**
+     * Sets this cycle's drive load.
+     * @param current Total robot current in amps.
+     * @param demand Sum of the drive output magnitudes.
+     */
+    public void setDriveLoad(double current, double demand)
+    {
+        driveCurrent = current;
+        driveDemand = demand;
+    }
+
+    /**
+     * Decides whether the compressor runs this cycle and updates the metrics.
+     * @param pressure Tank pressure in psi.
+     * @param state Plunger state, for tracking hatch cycles.
+     * @param allowed False if the compressor has been vetoed (by the PowerManager).
+     * @return If the compressor should run.
+     */
+    public boolean update(double pressure, Plunger.plungerState state, boolean allowed)
+    {
+        double now = clock.getTimestamp();
+        double dt = now - lastTime;
+        lastTime = now;
+
+        double rate = dt > 0 ? Math.abs(driveDemand - lastDemand) / dt : 0;
+        demandRate += (rate - demandRate) * dt / (DEMAND_RATE_TIME_CONSTANT + dt);
+        lastDemand = driveDemand;
+        trackHatchCycle(pressure, state);
+
+        // Hysteresis band
+        boolean wanted = pressure < START_PRESSURE || (running || deferred) && pressure < STOP_PRESSURE;
+
+        // Below the reserve the compressor runs through hard driving
+        boolean critical = pressure < getReservePressure();
+        boolean hardDriving = driveCurrent > HIGH_DRIVE_CURRENT || demandRate > HIGH_DRIVE_ACCELERATION;
+
+        if (running) runTime += dt;
+        else if (deferred) deferredTime += dt;
+
+        running = wanted && allowed && (critical || !hardDriving);
+        deferred = wanted && !running;
+
+        telemetry.put(dutyKey, getDutyCycle());
+        telemetry.put(runKey, runTime);
+        telemetry.put(deferredKey, deferredTime);
+        telemetry.put(reserveKey, getReservePressure());
+        return running;
+    }
+
+    /**
+     * Accessor method for the last decision.
+     * @return If the compressor is scheduled to run.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Accessor method for whether the compressor wants to run but is waiting.
+     * @return
+     */
+    public boolean isDeferred()
+    {
+        return deferred;
+    }
+
+    /**
+     * Calculates the tank pressure needed for RESERVE_HATCHES more hatch cycles.
+     * @return Pressure in psi.
+     */
+    public double getReservePressure()
+    {
+        return MIN_WORKING_PRESSURE + RESERVE_HATCHES * airPerHatch;
+    }
+
+    /**
+     * Accessor method for the learned air use of one hatch cycle.
+     * @return Tank pressure drop in psi.
+     */
+    public double getAirPerHatch()
+    {
+        return airPerHatch;
+    }
+
+    /**
+     * Accessor method for the total time the compressor was scheduled to run.
+     * @return Time in seconds.
+     */
+    public double getRunTime()
+    {
+        return runTime;
+    }
+
+    /**
+     * Accessor method for the total time the compressor waited out hard driving or a veto.
+     * @return Time in seconds.
+     */
+    public double getDeferredTime()
+    {
+        return deferredTime;
+    }
+
+    /**
+     * Calculates the fraction of time the compressor has run.
+     * @return Duty cycle from 0 to 1.
+     */
+    public double getDutyCycle()
+    {
+        double elapsed = lastTime - startTime;
+        return elapsed > 0 ? runTime / elapsed : 0;
+    }
+
+    /**
+     * Adds up the tank pressure lost between suction starting and the hatch
+     * being dropped, and folds it into the air per hatch estimate.
+     */
+    private void trackHatchCycle(double pressure, Plunger.plungerState state)
+    {
+        if (lastPressure >= 0 && inHatchCycle)
+        {
+            cycleAirUsed += Math.max(0, lastPressure - pressure);
+        }
+        lastPressure = pressure;
+
+        if (!inHatchCycle && state == Plunger.plungerState.VACUUM_ON)
+        {
+            inHatchCycle = true;
+            cycleAirUsed = 0;
+        }
+        else if (inHatchCycle && (state == Plunger.plungerState.DROP_STATE || state == Plunger.plungerState.CLOSED))
+        {
+            inHatchCycle = false;
+            airPerHatch += AIR_PER_HATCH_WEIGHT * (cycleAirUsed - airPerHatch);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package frc.robot;
+
+/**
+ * Destination for values shown to the drivers, normally the SmartDashboard.
+ */
+public interface Dashboard {
+    /**
+     * Publishes a number.
+     * @param key
+     * @param value
+     */
+    void putNumber(String key, double value);
+
+    /**
+     * Publishes a boolean.
+     * @param key
+     * @param value
+     */
+    void putBoolean(String key, boolean value);
+
+    /**
+     * Publishes a string.
+     * @param key
+     * @param value
+     */
+    void putString(String key, String value);
+}
@@ -0,0 +1,380 @@
+package frc.robot;
+
+// Imports for the Devices class
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.AnalogTrigger;
+import edu.wpi.first.wpilibj.AnalogTriggerOutput;
+import edu.wpi.first.wpilibj.AnalogTriggerType;
+import edu.wpi.first.wpilibj.Compressor;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.I2C;
+import edu.wpi.first.wpilibj.InterruptHandlerFunction;
+import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Solenoid;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import java.util.function.LongConsumer;
+
+/** Methods:
+ * public static MotorOutput talon(int port)
+ * public static SolenoidOutput solenoid(int channel)
+ * public static DoubleSolenoidOutput doubleSolenoid(int forwardChannel, int reverseChannel)
+ * public static AnalogSensor analogInput(int channel)
+ * public static AnalogSensor analogInput(int channel, int oversampleBits, int averageBits)
+ * public static AnalogTriggerSensor analogTriggerInput(int channel, int oversampleBits, int averageBits)
+ * public static DigitalSensor digitalInput(int channel)
+ * public static InterruptSensor digitalInterrupt(int channel)
+ * public static I2CBus i2c(I2C.Port port, int address)
+ * public static CompressorControl compressor()
+ * public static PowerSource powerSource()
+ * public static Clock fpgaClock()
+ * public static JoystickInput joystick(int port)
+ * public static Dashboard smartDashboard()
+ * private static int toAnalogValue(AnalogInput input, double volts)
+ */
+
+/**
+ * Creates the real robot hardware behind the device interfaces. Only this
+ * class constructs WPILib and CTRE device objects; everything else works
+ * through the interfaces so it can be run against FakeDevices.
+ */
+public final class Devices {
+    // Bits of the interrupt mask WPILib passes to an interrupt handler
+    private static final int RISING_EDGE_MASK = 0x1;
+    private static final int FALLING_EDGE_MASK = 0x100;
+
+    private Devices()
+    {
+    }
+
+    /**
+     * Creates a TalonSRX on the CAN bus.
+     * @param port CAN id of the talon.
+     */
+    public static MotorOutput talon(int port)
+    {
+        TalonSRX talon = new TalonSRX(port);
+        return new MotorOutput() {
+            public void set(double percentOutput)
+            {
+                talon.set(ControlMode.PercentOutput, percentOutput);
+            }
+
+            public void follow(int masterPort)
+            {
+                talon.set(ControlMode.Follower, masterPort);
+            }
+
+            public void setInverted(boolean inverted)
+            {
+                talon.setInverted(inverted);
+            }
+
+            public double getOutputCurrent()
+            {
+                return talon.getOutputCurrent();
+            }
+
+            public double getSensorPosition()
+            {
+                return talon.getSelectedSensorPosition(0);
+            }
+
+            public double getSensorVelocity()
+            {
+                return talon.getSelectedSensorVelocity(0);
+            }
+        };
+    }
+
+    /**
+     * Creates a solenoid on the pneumatics control module.
+     * @param channel
+     */
+    public static SolenoidOutput solenoid(int channel)
+    {
+        Solenoid solenoid = new Solenoid(channel);
+        return new SolenoidOutput() {
+            public void set(boolean on)
+            {
+                solenoid.set(on);
+            }
+
+            public boolean get()
+            {
+                return solenoid.get();
+            }
+        };
+    }
+
+    /**
+     * Creates a double solenoid on the pneumatics control module.
+     * @param forwardChannel
+     * @param reverseChannel
+     */
+    public static DoubleSolenoidOutput doubleSolenoid(int forwardChannel, int reverseChannel)
+    {
+        DoubleSolenoid solenoid = new DoubleSolenoid(forwardChannel, reverseChannel);
+        return new DoubleSolenoidOutput() {
+            public void set(DoubleSolenoid.Value value)
+            {
+                solenoid.set(value);
+            }
+
+            public DoubleSolenoid.Value get()
+            {
+                return solenoid.get();
+            }
+        };
+    }
+
+    /**
+     * Creates an analog input on the roboRIO.
+     * @param channel
+     */
+    public static AnalogSensor analogInput(int channel)
+    {
+        AnalogInput input = new AnalogInput(channel);
+        return input::getVoltage;
+    }
+
+    /**
+     * Creates an analog input that is oversampled and averaged in the FPGA.
+     * Each read returns the mean of the last 2^(oversampleBits + averageBits)
+     * conversions, with no extra cost to the caller.
+     * @param channel
+     * @param oversampleBits
+     * @param averageBits
+     */
+    public static AnalogSensor analogInput(int channel, int oversampleBits, int averageBits)
+    {
+        AnalogInput input = new AnalogInput(channel);
+        input.setOversampleBits(oversampleBits);
+        input.setAverageBits(averageBits);
+        return input::getAverageVoltage;
+    }
+
+    /**
+     * Creates an analog input that FPGA analog triggers can be added to. Each
+     * trigger compares the averaged value, and its state output raises an
+     * interrupt on the edges that have a handler.
+     * @param channel
+     * @param oversampleBits
+     * @param averageBits
+     */
+    public static AnalogTriggerSensor analogTriggerInput(int channel, int oversampleBits, int averageBits)
+    {
+        AnalogInput input = new AnalogInput(channel);
+        input.setOversampleBits(oversampleBits);
+        input.setAverageBits(averageBits);
+
+        return new AnalogTriggerSensor() {
+            public double getVoltage()
+            {
+                return input.getAverageVoltage();
+            }
+
+            public void addTrigger(double lowerVoltage, double upperVoltage, LongConsumer below, LongConsumer above)
+            {
+                // setLimitsVoltage() converts to raw 12 bit counts and ignores the averaging, but the
+                // averaged value the trigger compares keeps the oversample bits, so it would never drop
+                // below a voltage limit. The limits are converted and shifted to match here instead.
+                AnalogTrigger trigger = new AnalogTrigger(input);
+                trigger.setAveraged(true);
+                trigger.setLimitsRaw(toAnalogValue(input, lowerVoltage) << oversampleBits,
+                        toAnalogValue(input, upperVoltage) << oversampleBits);
+                AnalogTriggerOutput output = trigger.createOutput(AnalogTriggerType.kState);
+
+                output.requestInterrupts(new InterruptHandlerFunction<Object>() {
+                    public void interruptFired(int interruptAssertedMask, Object param)
+                    {
+                        if ((interruptAssertedMask & FALLING_EDGE_MASK) != 0)
+                            below.accept(Math.round(output.readFallingTimestamp() * 1e6));
+                        if ((interruptAssertedMask & RISING_EDGE_MASK) != 0)
+                            above.accept(Math.round(output.readRisingTimestamp() * 1e6));
+                    }
+                });
+                output.setUpSourceEdge(above != null, below != null);
+                output.enableInterrupts();
+            }
+        };
+    }
+
+    /**
+     * Creates a digital input on the roboRIO.
+     * @param channel
+     */
+    public static DigitalSensor digitalInput(int channel)
+    {
+        DigitalInput input = new DigitalInput(channel);
+        return input::get;
+    }
+
+    /**
+     * Creates a digital input on the roboRIO that can report falling edges
+     * through an FPGA interrupt. The edge is timestamped by the FPGA when it
+     * happens, so the handler's time doesn't include the interrupt thread's
+     * wakeup.
+     * @param channel
+     */
+    public static InterruptSensor digitalInterrupt(int channel)
+    {
+        DigitalInput input = new DigitalInput(channel);
+        return new InterruptSensor() {
+            public boolean get()
+            {
+                return input.get();
+            }
+
+            public void onFallingEdge(LongConsumer handler)
+            {
+                input.requestInterrupts(new InterruptHandlerFunction<Object>() {
+                    public void interruptFired(int interruptAssertedMask, Object param)
+                    {
+                        handler.accept(Math.round(input.readFallingTimestamp() * 1e6));
+                    }
+                });
+                input.setUpSourceEdge(false, true);
+                input.enableInterrupts();
+            }
+        };
+    }
+
+    /**
+     * Creates a device on an I2C port.
+     * @param port
+     * @param address
+     */
+    public static I2CBus i2c(I2C.Port port, int address)
+    {
+        I2C i2c = new I2C(port, address);
+        return new I2CBus() {
+            public boolean read(int register, int count, byte[] buffer)
+            {
+                return i2c.read(register, count, buffer);
+            }
+
+            public boolean write(int register, int data)
+            {
+                return i2c.write(register, data);
+            }
+        };
+    }
+
+    /**
+     * Creates the compressor on the default pneumatics control module.
+     */
+    public static CompressorControl compressor()
+    {
+        Compressor compressor = new Compressor();
+        return new CompressorControl() {
+            public void start()
+            {
+                compressor.start();
+            }
+
+            public void stop()
+            {
+                compressor.stop();
+            }
+
+            public boolean enabled()
+            {
+                return compressor.enabled();
+            }
+        };
+    }
+
+    /**
+     * Creates the power distribution panel and reads the battery through it
+     * and the roboRIO.
+     */
+    public static PowerSource powerSource()
+    {
+        PowerDistributionPanel pdp = new PowerDistributionPanel();
+        return new PowerSource() {
+            public double getTotalCurrent()
+            {
+                return pdp.getTotalCurrent();
+            }
+
+            public double getBatteryVoltage()
+            {
+                return RobotController.getBatteryVoltage();
+            }
+        };
+    }
+
+    /**
+     * Gets the FPGA clock.
+     */
+    public static Clock fpgaClock()
+    {
+        return RobotController::getFPGATime;
+    }
+
+    /**
+     * Creates a driver station joystick.
+     * @param port USB port on the driver station.
+     */
+    public static JoystickInput joystick(int port)
+    {
+        Joystick joystick = new Joystick(port);
+        return new JoystickInput() {
+            public double getRawAxis(int axis)
+            {
+                return joystick.getRawAxis(axis);
+            }
+
+            public boolean getRawButton(int button)
+            {
+                return joystick.getRawButton(button);
+            }
+
+            public boolean getRawButtonPressed(int button)
+            {
+                return joystick.getRawButtonPressed(button);
+            }
+        };
+    }
+
+    /**
+     * Gets the SmartDashboard.
+     */
+    public static Dashboard smartDashboard()
+    {
+        return new Dashboard() {
+            public void putNumber(String key, double value)
+            {
+                SmartDashboard.putNumber(key, value);
+            }
+
+            public void putBoolean(String key, boolean value)
+            {
+                SmartDashboard.putBoolean(key, value);
+            }
+
+            public void putString(String key, String value)
+            {
+                SmartDashboard.putString(key, value);
+            }
+        };
+    }
+
+    /**
+     * Converts a voltage to the raw 12 bit value of an analog input, using
+     * the input's calibration.
+     * @param input
+     * @param volts
+     */
+    private static int toAnalogValue(AnalogInput input, double volts)
+    {
+        return (int) Math.round((volts + input.getOffset() * 1e-9) / (input.getLSBWeight() * 1e-9));
+    }
+}
@@ -0,0 +1,12 @@
+package frc.robot;
+
+/**
+ * A digital input channel, such as a limit switch.
+ */
+public interface DigitalSensor {
+    /**
+     * Accessor method for the input value.
+     * @return The value of the channel (high = true).
+     */
+    boolean get();
+}
@@ -0,0 +1,21 @@
+package frc.robot;
+
+// Imports for the DoubleSolenoidOutput interface
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * A double acting solenoid valve.
+ */
+public interface DoubleSolenoidOutput {
+    /**
+     * Sets the valve to forward, reverse or off.
+     * @param value
+     */
+    void set(DoubleSolenoid.Value value);
+
+    /**
+     * Accessor method for the commanded valve state.
+     * @return The current value.
+     */
+    DoubleSolenoid.Value get();
+}
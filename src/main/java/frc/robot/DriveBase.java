@@ -1,43 +1,71 @@
 package frc.robot;
 
-// Imports for the "DriveBase.java" class.
-import com.ctre.phoenix.motorcontrol.can.TalonSRX;
-
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-
-import com.ctre.phoenix.motorcontrol.ControlMode;
-
 /** Methods:
- * public DriveBase()
+ * public DriveBase(Telemetry telemetry)
+ * public DriveBase(MotorOutput lm, MotorOutput lf, MotorOutput rm, MotorOutput rf, MotorOutput c, Clock clock, Telemetry telemetry)
  * public void setLeft(double v)
  * public void setRight(double v)
  * public void setCenter(double v)
  * public void moveForward()
  * public double[] formatDriveJoystick(double x, double y)
  * public void teleopDrive(double[] joyR, double[] joyL)
+ * public void log(FlightRecord record)
+ * public double getSavedWritesPerSecond()
+ * public void setProfile(int profile)
+ * public void nextProfile()
+ * public ResponseCurve getProfile()
+ * public synchronized void setHeadingCorrection(double correction)
+ * public synchronized double getRotationCommand()
+ * public synchronized void setOutputScale(double scale)
+ * public synchronized double getDriveDemand()
+ * public double getLeftDistance()
+ * public double getRightDistance()
+ * public double getCenterDistance()
+ * public double getForwardVelocity()
+ * public double getStrafeVelocity()
+ * private double limit(double v)
  */
 /**
  * Framework for our slide drive base and associated methods.
  */
 public class DriveBase {
     // Object declaraction
-    private TalonSRX talLM, talLF, talRM, talRF, talC;
+    private CachedMotorOutput talLM, talLF, talRM, talRF, talC;
+    private final Clock clock;
+
+    // Last outputs sent to each side, for the flight log
+    private double leftOutput, rightOutput, centerOutput;
+
+    // Talon currents from the last telemetry poll, for the flight log
+    private volatile double currentLM, currentLF, currentRM, currentRF, currentC;
+
+    // Heading correction added to both sides by the HeadingController thread
+    private double headingCorrection;
+
+    // Factor every output is scaled by, lowered by the PowerManager near brownout
+    private double outputScale = 1;
     
     // Constant inititalization
     // Talon Port values
-    private final int RIGHT_MASTER_PORT = 7;
-    private final int RIGHT_FOLLOWER_PORT = 4;
-    private final int LEFT_MASTER_PORT = 5;
-    private final int LEFT_FOLLWER_PORT = 1;
-    private final int CENTER_PORT = 6;
-
-    // Parabolic Drive Constants
-    private final double A = 0;
-    private final double B = 0;
-    private final double C = 0;
+    public static final int RIGHT_MASTER_PORT = 7;
+    public static final int RIGHT_FOLLOWER_PORT = 4;
+    public static final int LEFT_MASTER_PORT = 5;
+    public static final int LEFT_FOLLWER_PORT = 1;
+    public static final int CENTER_PORT = 6;
 
     // Minimum joystick movement required for robot control
-    private final double JOYSTICK_DEADZONE = 0.1;
+    private static final double JOYSTICK_DEADZONE = 0.1;
+
+    // Joystick response curves the drivers can switch between. The first is
+    // the default, a cubic like the original drive.
+    private final ResponseCurve[] profiles = {
+        ResponseCurve.cubic("Cubic", JOYSTICK_DEADZONE),
+        ResponseCurve.parabolic("Parabolic", JOYSTICK_DEADZONE, 0.6, 0.4, 0),
+        ResponseCurve.exponential("Exponential", JOYSTICK_DEADZONE, 3),
+        ResponseCurve.piecewise("Precision", JOYSTICK_DEADZONE,
+                new double[] { 0, 0.7, 1 }, new double[] { 0, 0.3, 1 })
+    };
+    private int profile = 0;
 
     //forward drive speeds
     private final double SPEED_LEFT = 0.3;
@@ -47,19 +75,87 @@ public class DriveBase {
     private final double AUTO_DRIVE_SPEED = 0.1;
 
     // Maximum speed at which the drive train is allowed to move
-    private final double MAXIMUM_DRIVE_TALON_INPUT = 0.9;
+    public static final double MAXIMUM_DRIVE_TALON_INPUT = 0.9;
+
+    // Rate the talon currents are read and sent to the dashboard (Hz)
+    private static final double CURRENT_TELEMETRY_RATE = 10;
+
+    // Talon commands smaller than this change aren't re-sent over CAN
+    private static final double OUTPUT_TOLERANCE = 0.001;
+
+    // Unchanged talon commands are still re-sent this often (seconds)
+    private static final double KEEP_ALIVE_INTERVAL = 0.1;
+
+    // Odometry geometry. The mag encoders on the master talons count 4096 per
+    // encoder turn, and the ratios are encoder turns per wheel turn: 1 with the
+    // encoders on the wheel shafts. The diameters are the nominal 6 inch side
+    // and 4 inch center wheels. PoseEstimator and TrajectoryFollower distances
+    // scale with them, so check them by pushing the robot a measured distance
+    // and comparing getLeftDistance(), getRightDistance() and
+    // getCenterDistance(), and correct the diameters for tread wear.
+    public static final double DRIVE_WHEEL_DIAMETER = 0.1524; // m
+    public static final double CENTER_WHEEL_DIAMETER = 0.1016; // m
+    public static final double ENCODER_COUNTS_PER_REV = 4096;
+    public static final double DRIVE_ENCODER_RATIO = 1;
+    public static final double CENTER_ENCODER_RATIO = 1;
+
+    // Wheel travel per encoder count (m)
+    public static final double DRIVE_METERS_PER_TICK =
+            Math.PI * DRIVE_WHEEL_DIAMETER / (ENCODER_COUNTS_PER_REV * DRIVE_ENCODER_RATIO);
+    public static final double CENTER_METERS_PER_TICK =
+            Math.PI * CENTER_WHEEL_DIAMETER / (ENCODER_COUNTS_PER_REV * CENTER_ENCODER_RATIO);
+
+    // CAN writes saved since getSavedWritesPerSecond() last ran
+    private long lastSavedWrites, lastSavedTime;
 
     /**
-     * Constructs a new DriveBase object.
+     * Constructs a new DriveBase object using the robot's talons.
+     * 
+     * @param telemetry
      */
-    public DriveBase()
+    public DriveBase(Telemetry telemetry)
     {
         // Drive Talon Initialization
-        talLM = new TalonSRX(LEFT_MASTER_PORT);
-        talLF = new TalonSRX(LEFT_FOLLWER_PORT);
-        talRM = new TalonSRX(RIGHT_MASTER_PORT);
-        talRF = new TalonSRX(RIGHT_FOLLOWER_PORT);
-        talC = new TalonSRX(CENTER_PORT);
+        this(Devices.talon(LEFT_MASTER_PORT), Devices.talon(LEFT_FOLLWER_PORT),
+                Devices.talon(RIGHT_MASTER_PORT), Devices.talon(RIGHT_FOLLOWER_PORT),
+                Devices.talon(CENTER_PORT), Devices.fpgaClock(), telemetry);
+    }
+
+    /**
+     * Constructs a new DriveBase object using the given motor outputs.
+     * 
+     * @param lm Left master
+     * @param lf Left follower
+     * @param rm Right master
+     * @param rf Right follower
+     * @param c Center
+     * @param clock
+     * @param telemetry
+     */
+    public DriveBase(MotorOutput lm, MotorOutput lf, MotorOutput rm, MotorOutput rf, MotorOutput c,
+            Clock clock, Telemetry telemetry)
+    {
+        this.clock = clock;
+        talLM = new CachedMotorOutput(lm, clock, OUTPUT_TOLERANCE, KEEP_ALIVE_INTERVAL);
+        talLF = new CachedMotorOutput(lf, clock, OUTPUT_TOLERANCE, KEEP_ALIVE_INTERVAL);
+        talRM = new CachedMotorOutput(rm, clock, OUTPUT_TOLERANCE, KEEP_ALIVE_INTERVAL);
+        talRF = new CachedMotorOutput(rf, clock, OUTPUT_TOLERANCE, KEEP_ALIVE_INTERVAL);
+        talC = new CachedMotorOutput(c, clock, OUTPUT_TOLERANCE, KEEP_ALIVE_INTERVAL);
+
+        // The followers only need to be told once
+        talLF.follow(LEFT_MASTER_PORT);
+        talRF.follow(RIGHT_MASTER_PORT);
+        lastSavedTime = clock.getMicros();
+
+        // Talon currents are read on the telemetry thread, not in the control
+        // loop, and kept for the flight log
+        telemetry.registerPolled("Center", CURRENT_TELEMETRY_RATE, () -> currentC = talC.getOutputCurrent());
+        telemetry.registerPolled("LM", CURRENT_TELEMETRY_RATE, () -> currentLM = talLM.getOutputCurrent());
+        telemetry.registerPolled("RM", CURRENT_TELEMETRY_RATE, () -> currentRM = talRM.getOutputCurrent());
+        telemetry.registerPolled("LF", CURRENT_TELEMETRY_RATE, () -> currentLF = talLF.getOutputCurrent());
+        telemetry.registerPolled("RF", CURRENT_TELEMETRY_RATE, () -> currentRF = talRF.getOutputCurrent());
+        telemetry.registerPolled("CAN Writes Saved", CURRENT_TELEMETRY_RATE, this::getSavedWritesPerSecond);
+        telemetry.registerPolled("Drive Profile", CURRENT_TELEMETRY_RATE, () -> profile);
     }
 
     /**
@@ -68,7 +164,7 @@ public class DriveBase {
      * 
      * @param v
      */
-    public void setLeft(double v)
+    public synchronized void setLeft(double v)
     {
         // Checks if the input is out of bounds, and returns out of the method if it is
         if (Math.abs(v) > 2) {
@@ -82,8 +178,8 @@ public class DriveBase {
         }
 
         // Set the left-side talons to the new adjusted velocity
-        talLM.set(ControlMode.PercentOutput, v);
-        talLF.set(ControlMode.Follower, LEFT_MASTER_PORT);
+        leftOutput = v;
+        talLM.set(limit((v + headingCorrection) * outputScale));
     }
 
     /**
@@ -92,7 +188,7 @@ public class DriveBase {
      * 
      * @param v
      */
-    public void setRight(double v)
+    public synchronized void setRight(double v)
     {
         // Checks if the input is out of bounds, and returns out of the method if it is
         if (Math.abs(v) > 2) {
@@ -106,8 +202,8 @@ public class DriveBase {
         }
 
         // Set the right-side talons to the new adjusted velocity
-        talRM.set(ControlMode.PercentOutput, v);
-        talRF.set(ControlMode.Follower, RIGHT_MASTER_PORT);
+        rightOutput = v;
+        talRM.set(limit((v + headingCorrection) * outputScale));
     }
 
     /**
@@ -116,7 +212,7 @@ public class DriveBase {
      * 
      * @param v
      */
-    public void setCenter(double v)
+    public synchronized void setCenter(double v)
     {
         // Checks if the input is out of bounds, and returns out of the method if it is
         if (Math.abs(v) > 2) {
@@ -130,7 +226,8 @@ public class DriveBase {
         }
 
         // Set the center talon to the new adjusted velocity
-        talC.set(ControlMode.PercentOutput, v);
+        centerOutput = v;
+        talC.set(v * outputScale);
     }
 
     /**
@@ -166,54 +263,191 @@ public class DriveBase {
      */
     public void teleopDrive(double[] joyR, double[] joyL)
     {
-        // Insert appropriate values into a new array for driving
-        double[] spinReturn = { joyL[1], joyR[1], ((joyR[0] + joyL[0]) / 2) };
-
-        // Parabolic functions for given values (use if needed)
-        // spinReturn[0] = (Math.pow(spinReturn[0], 2) * A
-        // + spinReturn[0] * B + C) * (Math.abs(spinReturn[0])/spinReturn[0]);
-        // spinReturn[1] = (Math.pow(spinReturn[1], 2) * A
-        // + spinReturn[1] * B + C) * (Math.abs(spinReturn[1])/spinReturn[1]);
-        // spinReturn[2] = (Math.pow(spinReturn[2], 2) * A
-        // + spinReturn[2] * B + C) * (Math.abs(spinReturn[2])/spinReturn[2]);
-
-        // If the joystick input is within the deadzone, set the input
-        // velocity to the modified joystick input
-        if (Math.abs(spinReturn[0]) > JOYSTICK_DEADZONE) {
-            spinReturn[0] = Math.pow(spinReturn[0], 3);
-        }
-        // Otherwise, set the input velocity to 0
-        else spinReturn[0] = 0;
+        // Shape each axis with the selected response curve
+        ResponseCurve curve = profiles[profile];
+        double left = curve.apply(joyL[1]);
+        double right = curve.apply(joyR[1]);
+        double center = curve.apply((joyR[0] + joyL[0]) / 2);
 
-        // If the joystick input is within the deadzone, set the input
-        // velocity to the modified joystick input
-        if (Math.abs(spinReturn[1]) > JOYSTICK_DEADZONE) {
-            spinReturn[1] = Math.pow(spinReturn[1], 3);
-        }
-        // Otherwise, set the input velocity to 0
-        else spinReturn[1] = 0;
+        // Run motors according to the shaped outputs
+        setLeft(left);
+        setRight(right);
+        setCenter(center);
+    }
 
-        // If the joystick input is within the deadzone, set the input
-        // velocity to the modified joystick input
-        if (Math.abs(spinReturn[2]) > JOYSTICK_DEADZONE) {
-            spinReturn[2] = Math.pow(spinReturn[2], 3);
+    /**
+     * Writes the drive outputs and talon currents into this cycle's flight
+     * record. The currents are the ones last read by the telemetry poller, so
+     * no CAN reads happen in the control loop.
+     * 
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        record.set(FlightRecord.Field.LEFT_OUTPUT, leftOutput);
+        record.set(FlightRecord.Field.RIGHT_OUTPUT, rightOutput);
+        record.set(FlightRecord.Field.CENTER_OUTPUT, centerOutput);
+        record.set(FlightRecord.Field.CURRENT_LM, currentLM);
+        record.set(FlightRecord.Field.CURRENT_LF, currentLF);
+        record.set(FlightRecord.Field.CURRENT_RM, currentRM);
+        record.set(FlightRecord.Field.CURRENT_RF, currentRF);
+        record.set(FlightRecord.Field.CURRENT_C, currentC);
+    }
+
+    /**
+     * Selects the joystick response curve used by teleopDrive.
+     * 
+     * @param profile Index into the profile list. Out of range values are ignored.
+     */
+    public void setProfile(int profile)
+    {
+        if (profile < 0 || profile >= profiles.length) {
+            System.out.println("Drive profile " + profile + " out of range for setProfile() in DriveBase.java");
+            return;
         }
-        // Otherwise, set the input velocity to 0
-        else spinReturn[2] = 0;
-
-        System.out.println("Left Drive = " + spinReturn[0]);
-        System.out.println("Right Drive = " + spinReturn[1]);
-        System.out.println("Center Drive = " + spinReturn[2]);
-
-        // Run motors according to new parabolic outputs
-        setLeft(spinReturn[0]);
-        setRight(spinReturn[1]);
-        setCenter(spinReturn[2]);
-
-        SmartDashboard.putNumber("Center", talC.getOutputCurrent());
-        SmartDashboard.putNumber("LM", talLM.getOutputCurrent());
-        SmartDashboard.putNumber("RM", talRM.getOutputCurrent());
-        SmartDashboard.putNumber("LF", talLF.getOutputCurrent());
-        SmartDashboard.putNumber("RF", talRF.getOutputCurrent());
+        this.profile = profile;
+    }
+
+    /**
+     * Switches to the next joystick response curve, wrapping around.
+     */
+    public void nextProfile()
+    {
+        profile = (profile + 1) % profiles.length;
+    }
+
+    /**
+     * Accessor method for the selected joystick response curve.
+     * 
+     * @return The ResponseCurve used by teleopDrive.
+     */
+    public ResponseCurve getProfile()
+    {
+        return profiles[profile];
+    }
+
+    /**
+     * Adds a heading correction to both sides and resends them. A positive
+     * correction turns the robot clockwise. Called from the HeadingController
+     * thread, so it shares a lock with setLeft() and setRight().
+     * 
+     * @param correction
+     */
+    public synchronized void setHeadingCorrection(double correction)
+    {
+        headingCorrection = correction;
+        talLM.set(limit((leftOutput + correction) * outputScale));
+        talRM.set(limit((rightOutput + correction) * outputScale));
+    }
+
+    /**
+     * Scales every drive output, for example to keep the battery out of
+     * brownout. Takes effect on the next output set.
+     * 
+     * @param scale Factor from 0 to 1.
+     */
+    public synchronized void setOutputScale(double scale)
+    {
+        outputScale = Math.max(0, Math.min(1, scale));
+    }
+
+    /**
+     * Calculates how hard the drive is being asked to work.
+     * 
+     * @return The sum of the output magnitudes of the three sides.
+     */
+    public synchronized double getDriveDemand()
+    {
+        return Math.abs(leftOutput) + Math.abs(rightOutput) + Math.abs(centerOutput);
+    }
+
+    /**
+     * Calculates how much the driver is asking the robot to turn. Forward is
+     * left positive and right negative, so the sum of the sides is the turn.
+     * 
+     * @return The turn command, positive clockwise.
+     */
+    public synchronized double getRotationCommand()
+    {
+        return leftOutput + rightOutput;
+    }
+
+    /**
+     * Accessor method for the distance the left wheels have travelled. Talon
+     * sensor values come from status frames, so this doesn't wait on CAN.
+     * 
+     * @return The distance in meters, forward positive.
+     */
+    public double getLeftDistance()
+    {
+        return talLM.getSensorPosition() * DRIVE_METERS_PER_TICK;
+    }
+
+    /**
+     * Accessor method for the distance the right wheels have travelled. The
+     * right side drives forward on negative output, so its sensor is flipped.
+     * 
+     * @return The distance in meters, forward positive.
+     */
+    public double getRightDistance()
+    {
+        return -talRM.getSensorPosition() * DRIVE_METERS_PER_TICK;
+    }
+
+    /**
+     * Accessor method for the distance the center wheel has travelled.
+     * 
+     * @return The distance in meters, right positive.
+     */
+    public double getCenterDistance()
+    {
+        return talC.getSensorPosition() * CENTER_METERS_PER_TICK;
+    }
+
+    /**
+     * Calculates the robot's forward speed from the side wheel sensors.
+     * 
+     * @return The speed in meters per second.
+     */
+    public double getForwardVelocity()
+    {
+        // Talon velocities are per 100 ms
+        return (talLM.getSensorVelocity() - talRM.getSensorVelocity()) / 2 * DRIVE_METERS_PER_TICK * 10;
+    }
+
+    /**
+     * Calculates the robot's sideways speed from the center wheel sensor.
+     * 
+     * @return The speed in meters per second, right positive.
+     */
+    public double getStrafeVelocity()
+    {
+        return talC.getSensorVelocity() * CENTER_METERS_PER_TICK * 10;
+    }
+
+    /**
+     * Calculates how many talon commands per second were skipped because they
+     * wouldn't have changed anything, since the last time this was called.
+     * Called from the telemetry thread.
+     * 
+     * @return Saved CAN writes per second.
+     */
+    public double getSavedWritesPerSecond()
+    {
+        long saved = talLM.getSavedWrites() + talLF.getSavedWrites() + talRM.getSavedWrites()
+                + talRF.getSavedWrites() + talC.getSavedWrites();
+        long now = clock.getMicros();
+        double rate = now > lastSavedTime ? (saved - lastSavedWrites) * 1e6 / (now - lastSavedTime) : 0;
+        lastSavedWrites = saved;
+        lastSavedTime = now;
+        return rate;
+    }
+
+    /**
+     * Limits an output to the maximum allowed talon input.
+     */
+    private double limit(double v)
+    {
+        return Math.max(-MAXIMUM_DRIVE_TALON_INPUT, Math.min(MAXIMUM_DRIVE_TALON_INPUT, v));
     }
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package frc.robot;
+
+// Imports for the FlightRecord class
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/** Methods:
+ * public void set(Field field, double value)
+ * public double get(Field field)
+ * public void clear()
+ * public void write(ByteBuffer buffer)
+ * public boolean read(ByteBuffer buffer)
+ * public static void writeHeader(ByteBuffer buffer)
+ * public static void readHeader(ByteBuffer buffer) throws IOException
+ * public static int getHeaderSize()
+ */
+
+/**
+ * The fixed schema of one control loop cycle in a flight recorder file. Both
+ * the robot-side FlightRecorder and the desktop log decoder read and write
+ * records through this class, and every file starts with a header listing
+ * the fields, so a file written with a different schema is rejected instead
+ * of being decoded wrong.
+ *
+ * File layout: header, then back to back records. Each record starts with a
+ * marker byte so a reader can tell where a preallocated file stops being used.
+ */
+public class FlightRecord {
+    /**
+     * Storage types of the fields.
+     */
+    public enum Type
+    {
+        BYTE(1), INT(4), LONG(8), FLOAT(4);
+
+        public final int size;
+
+        Type(int size)
+        {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Every value recorded per cycle, in file order.
+     */
+    public enum Field
+    {
+        TIMESTAMP(Type.LONG), // FPGA time in microseconds
+        LOOP(Type.INT), // Cycle number since the file was opened
+        JOY_R_X(Type.FLOAT), JOY_R_Y(Type.FLOAT), JOY_L_X(Type.FLOAT), JOY_L_Y(Type.FLOAT),
+        LEFT_OUTPUT(Type.FLOAT), RIGHT_OUTPUT(Type.FLOAT), CENTER_OUTPUT(Type.FLOAT),
+        CURRENT_LM(Type.FLOAT), CURRENT_LF(Type.FLOAT), CURRENT_RM(Type.FLOAT), CURRENT_RF(Type.FLOAT),
+        CURRENT_C(Type.FLOAT),
+        PLUNGER_STATE(Type.BYTE), // Plunger.plungerState ordinal
+        PRESSURE(Type.FLOAT), VACUUM(Type.FLOAT), LEAK_RATE(Type.FLOAT),
+        COMPRESSOR(Type.BYTE), // 0 off, 1 running, 2 deferred
+        HEADING(Type.FLOAT), HEADING_CORRECTION(Type.FLOAT),
+        // Durations in microseconds. LOOP_TIME is the previous cycle, since
+        // this one is still running when it is logged.
+        DRIVE_TIME(Type.INT), PILLOW_TIME(Type.INT), PLUNGER_TIME(Type.INT), LOOP_TIME(Type.INT),
+        LOOP_OVERRUNS(Type.INT), // Total since boot
+        BATTERY_VOLTAGE(Type.FLOAT), TOTAL_CURRENT(Type.FLOAT), PREDICTED_VOLTAGE(Type.FLOAT),
+        LOADS_SHED(Type.BYTE), DRIVE_SCALE(Type.FLOAT),
+        POSE_X(Type.FLOAT), POSE_Y(Type.FLOAT), // Meters from where the PoseEstimator was reset
+        // TrajectoryFollower errors in the robot frame, 0 when not following
+        FORWARD_ERROR(Type.FLOAT), LATERAL_ERROR(Type.FLOAT), TRACKING_HEADING_ERROR(Type.FLOAT),
+        DOOR_CLOSED_TIME(Type.LONG), // FPGA time of the last Pillow close in microseconds, 0 if none
+        DOOR_STOP_LATENCY(Type.INT); // Microseconds from that close to the motor cut
+
+        public final Type type;
+        private int offset;
+
+        Field(Type type)
+        {
+            this.type = type;
+        }
+
+        static
+        {
+            // Lay out the fields back to back after the marker byte
+            int offset = 1;
+            for (Field field : values())
+            {
+                field.offset = offset;
+                offset += field.type.size;
+            }
+        }
+
+        /**
+         * Accessor method for the position of the field in a record.
+         * @return The byte offset from the start of the record.
+         */
+        public int getOffset()
+        {
+            return offset;
+        }
+    }
+
+    // File identification
+    public static final int MAGIC = 0x46524543; // "FREC"
+    public static final int VERSION = 9;
+    public static final byte RECORD_MARKER = (byte) 0xA5;
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // Cached so the hot path never calls values(), which allocates
+    public static final Field[] FIELDS = Field.values();
+    public static final int RECORD_SIZE = FIELDS[FIELDS.length - 1].getOffset()
+            + FIELDS[FIELDS.length - 1].type.size;
+
+    private final double[] values = new double[FIELDS.length];
+
+    /**
+     * Sets a field of this record.
+     * @param field
+     * @param value
+     */
+    public void set(Field field, double value)
+    {
+        values[field.ordinal()] = value;
+    }
+
+    /**
+     * Accessor method for a field of this record.
+     * @param field
+     * @return The value, converted to a double.
+     */
+    public double get(Field field)
+    {
+        return values[field.ordinal()];
+    }
+
+    /**
+     * Sets every field back to 0.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = 0;
+        }
+    }
+
+    /**
+     * Writes this record at the buffer's position and advances the position by
+     * RECORD_SIZE. The buffer must use ORDER and have room for a record.
+     * @param buffer
+     */
+    public void write(ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        buffer.put(start, RECORD_MARKER);
+        for (Field field : FIELDS)
+        {
+            int index = start + field.offset;
+            double value = values[field.ordinal()];
+            switch (field.type)
+            {
+            case BYTE:
+                buffer.put(index, (byte) value);
+                break;
+            case INT:
+                buffer.putInt(index, (int) value);
+                break;
+            case LONG:
+                buffer.putLong(index, (long) value);
+                break;
+            case FLOAT:
+                buffer.putFloat(index, (float) value);
+                break;
+            }
+        }
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    /**
+     * Reads a record at the buffer's position into this object.
+     * @param buffer
+     * @return False (without moving the position) if there is no complete record there.
+     */
+    public boolean read(ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_SIZE || buffer.get(start) != RECORD_MARKER)
+        {
+            return false;
+        }
+
+        for (Field field : FIELDS)
+        {
+            int index = start + field.offset;
+            double value = 0;
+            switch (field.type)
+            {
+            case BYTE:
+                value = buffer.get(index);
+                break;
+            case INT:
+                value = buffer.getInt(index);
+                break;
+            case LONG:
+                value = buffer.getLong(index);
+                break;
+            case FLOAT:
+                value = buffer.getFloat(index);
+                break;
+            }
+            values[field.ordinal()] = value;
+        }
+        buffer.position(start + RECORD_SIZE);
+        return true;
+    }
+
+    /**
+     * Writes the file header describing this schema.
+     * @param buffer
+     */
+    public static void writeHeader(ByteBuffer buffer)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(FIELDS.length);
+        buffer.putInt(RECORD_SIZE);
+        for (Field field : FIELDS)
+        {
+            byte[] name = field.name().getBytes(StandardCharsets.US_ASCII);
+            buffer.put((byte) field.type.ordinal());
+            buffer.put((byte) name.length);
+            buffer.put(name);
+        }
+    }
+
+    /**
+     * Reads a file header and checks that it matches this schema.
+     * @param buffer
+     * @throws IOException If the file isn't a flight log or was written with a different schema.
+     */
+    public static void readHeader(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new IOException("Not a flight recorder file");
+        }
+        int version = buffer.getInt();
+        int fieldCount = buffer.getInt();
+        int recordSize = buffer.getInt();
+        if (version != VERSION || fieldCount != FIELDS.length || recordSize != RECORD_SIZE)
+        {
+            throw new IOException("Flight log schema version " + version + " (" + fieldCount
+                    + " fields) doesn't match this build's version " + VERSION);
+        }
+
+        for (Field field : FIELDS)
+        {
+            int type = buffer.get();
+            byte[] name = new byte[buffer.get()];
+            buffer.get(name);
+            if (type != field.type.ordinal() || !field.name().equals(new String(name, StandardCharsets.US_ASCII)))
+            {
+                throw new IOException("Flight log field " + new String(name, StandardCharsets.US_ASCII)
+                        + " doesn't match " + field.name());
+            }
+        }
+    }
+
+    /**
+     * Calculates the size of the file header.
+     * @return The header size in bytes.
+     */
+    public static int getHeaderSize()
+    {
+        int size = 16;
+        for (Field field : FIELDS)
+        {
+            size += 2 + field.name().length();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,141 @@
+package frc.robot;
+
+// Imports for the FlightRecorder class
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/** Methods:
+ * public FlightRecorder(File directory, Clock clock)
+ * public boolean open(String name)
+ * public FlightRecord getRecord()
+ * public void commit()
+ * public void force()
+ * public void close()
+ * public boolean isOpen()
+ * public long getDroppedRecords()
+ */
+
+/**
+ * Records one FlightRecord per control loop cycle into a memory-mapped file.
+ * The file is allocated to its full size when it is opened, so committing a
+ * record is only a few buffer writes with no allocation or system call. A new
+ * file is opened for every match; the last one is trimmed to its used size
+ * when it is closed. A file that is never closed keeps its zero tail, which
+ * readers skip since it has no record markers.
+ */
+public class FlightRecorder {
+    // Space preallocated for each file, about 36 minutes of 152 byte records at 50 Hz
+    private static final long FILE_SIZE = 16L * 1024 * 1024;
+    public static final String EXTENSION = ".frec";
+
+    private final MappedLogFile log;
+    private final Clock clock;
+    private final FlightRecord record = new FlightRecord();
+
+    private MappedByteBuffer buffer;
+    private int loop = 0;
+    private long dropped = 0;
+
+    /**
+     * Constructs a new FlightRecorder. No file is written until open() is called.
+     * @param directory Where log files are created.
+     * @param clock Time source for the record timestamps.
+     */
+    public FlightRecorder(File directory, Clock clock)
+    {
+        log = new MappedLogFile(directory, EXTENSION, FILE_SIZE, FlightRecord.ORDER);
+        this.clock = clock;
+    }
+
+    /**
+     * Closes the current file and starts a new one.
+     * @param name File name without extension, usually the match name.
+     * @return True if the file was opened.
+     */
+    public boolean open(String name)
+    {
+        close();
+
+        try {
+            buffer = log.open(name);
+            FlightRecord.writeHeader(buffer);
+        }
+        catch (IOException e) {
+            System.out.println("Unable to open flight log " + name + " in FlightRecorder.java: " + e);
+            close();
+            return false;
+        }
+
+        loop = 0;
+        return true;
+    }
+
+    /**
+     * Accessor method for the record being filled in this cycle.
+     * @return The record commit() writes.
+     */
+    public FlightRecord getRecord()
+    {
+        return record;
+    }
+
+    /**
+     * Stamps the current record with the time and cycle number and writes it
+     * to the file. Does nothing if no file is open.
+     */
+    public void commit()
+    {
+        if (buffer == null) return;
+
+        if (buffer.remaining() < FlightRecord.RECORD_SIZE)
+        {
+            dropped++;
+            return;
+        }
+
+        record.set(FlightRecord.Field.TIMESTAMP, clock.getMicros());
+        record.set(FlightRecord.Field.LOOP, loop++);
+        record.write(buffer);
+    }
+
+    /**
+     * Writes the records so far out to the file without closing it.
+     */
+    public void force()
+    {
+        log.force();
+    }
+
+    /**
+     * Flushes and closes the current file, trimming it to the records written.
+     */
+    public void close()
+    {
+        try {
+            log.close();
+        }
+        catch (IOException e) {
+            System.out.println("Unable to close flight log in FlightRecorder.java: " + e);
+        }
+        buffer = null;
+    }
+
+    /**
+     * Accessor method for the recorder state.
+     * @return If a file is open for recording.
+     */
+    public boolean isOpen()
+    {
+        return buffer != null;
+    }
+
+    /**
+     * Accessor method for the number of records lost because the file was full.
+     * @return The dropped record count.
+     */
+    public long getDroppedRecords()
+    {
+        return dropped;
+    }
+}
@@ -2,10 +2,14 @@ package frc.robot;
 
 /** Methods:
  * public Gyroscope()
+ * public Gyroscope(BNO055 imu)
  * public double getOffsetHeading()
  * public void reset()
  * public double getRawHeading()
  * public double getOffset()
+ * public ImuSnapshot getSnapshot()
+ * public void readSnapshot(ImuSnapshot out)
+ * public void log(FlightRecord record)
  * private double normalizeHeadingVal(double heading)
  */
 
@@ -14,17 +18,31 @@ package frc.robot;
  */
 public class Gyroscope {
 	// Defines the variable imu from the class BNO055
-	public static BNO055 imu = BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS, BNO055.vector_type_t.VECTOR_EULER);
+	private final BNO055 imu;
+
+	// Snapshot reused every time the heading is read
+	private final ImuSnapshot snapshot = new ImuSnapshot();
 
 	// Defines the variable for the angle offset.
 	// Leave as a class variable so that each instance can have it's own angleOffset
 	private double angleOffset;
 
 	/**
-	 * Constructs a new Gyroscope object.
+	 * Constructs a new Gyroscope object using the BNO055 on the onboard I2C port.
 	 */
 	public Gyroscope()
 	{
+		this(BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS, BNO055.vector_type_t.VECTOR_EULER));
+	}
+
+	/**
+	 * Constructs a new Gyroscope object that reads from the given sensor.
+	 * @param imu
+	 */
+	public Gyroscope(BNO055 imu)
+	{
+		this.imu = imu;
+
 		// Resets the gyro
 		reset();
 	}
@@ -61,7 +79,9 @@ public class Gyroscope {
 	 */
 	public double getRawHeading()
 	{
-		return normalizeHeadingVal(imu.getVector()[0]);
+		// Take the heading from a single consistent sensor sample
+		imu.getSnapshot(snapshot);
+		return normalizeHeadingVal(snapshot.getHeading());
 	}
 	
 	/**
@@ -73,6 +93,34 @@ public class Gyroscope {
 		return angleOffset;
 	}
 
+	/**
+	 * Accessor method for the sensor sample used by the last heading read.
+	 * @return The snapshot that getRawHeading() last filled in.
+	 */
+	public ImuSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+
+	/**
+	 * Fills in a snapshot with the latest sensor sample. Unlike the other
+	 * methods this is safe to call from threads other than the control loop.
+	 * @param out
+	 */
+	public void readSnapshot(ImuSnapshot out)
+	{
+		imu.getSnapshot(out);
+	}
+
+	/**
+	 * Writes the offset heading into this cycle's flight record.
+	 * @param record
+	 */
+	public void log(FlightRecord record)
+	{
+		record.set(FlightRecord.Field.HEADING, getOffsetHeading());
+	}
+
 	/**
 	 * Normalizes a heading value to the range of (-180, 180) degrees.
 	 * @return
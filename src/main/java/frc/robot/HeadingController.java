@@ -0,0 +1,276 @@
+package frc.robot;
+
+/** Methods:
+ * public HeadingController(DriveBase driveBase, Gyroscope gyro, Clock clock, Telemetry telemetry)
+ * public synchronized void start()
+ * public synchronized void stop()
+ * public void setEnabled(boolean enabled)
+ * public void turnTo(double heading)
+ * public void hold()
+ * public Mode getMode()
+ * public double getCorrection()
+ * public void update()
+ * public Sampler getSampler()
+ * private double pid(double error, double yawRate)
+ * private void setCorrection(double output)
+ */
+
+/**
+ * Keeps the robot's heading steady while it drives and strafes, and turns it
+ * to a requested heading. It runs at 200 Hz on its own Sampler thread instead
+ * of in the 50 Hz TimedRobot loop. Each tick it reads the latest IMU snapshot
+ * and sends a correction to DriveBase, which adds it to both sides.
+ *
+ * In HOLD the target heading follows the robot while the driver is turning
+ * and until the robot stops spinning, so the controller never fights the
+ * driver. A positive correction turns the robot clockwise, the direction the
+ * BNO055 heading increases.
+ */
+public class HeadingController {
+    /**
+     * What the controller is doing.
+     */
+    public enum Mode
+    {
+        HOLD, TURN
+    }
+
+    // Loop rate (Hz), twice the BNO055's fusion output rate
+    public static final double RATE = 200;
+    private static final double PERIOD = 1.0 / RATE;
+
+    // PID gains, per degree of error
+    private static final double KP = 0.02;
+    private static final double KI = 0.01;
+    private static final double KD = 0.001;
+
+    // Largest correction added to the drive sides, and the integral's share of it
+    private static final double MAX_CORRECTION = 0.3;
+    private static final double MAX_INTEGRAL = 0.1;
+
+    // Driver rotation command above which heading hold lets go
+    private static final double ROTATION_DEADBAND = 0.05;
+
+    // Yaw rate (deg/s) below which the robot counts as stopped turning
+    private static final double SETTLE_RATE = 10;
+
+    // A turn is done once the error and yaw rate are both this small
+    private static final double TURN_TOLERANCE = 2;
+    private static final double TURN_RATE_TOLERANCE = 5;
+
+    // Rate the heading error is sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 10;
+
+    private final DriveBase driveBase;
+    private final Gyroscope gyro;
+    private final Clock clock;
+    private Sampler sampler;
+    private final ImuSnapshot snapshot = new ImuSnapshot();
+
+    // Commands from the control loop
+    private volatile boolean enabled = false;
+    private volatile Mode mode = Mode.HOLD;
+    private volatile double requestedHeading;
+    private volatile boolean turnRequested = false;
+
+    // Controller state, only touched by update()
+    private double target;
+    private double integral;
+    private boolean holding = false;
+    private volatile double correction;
+    private volatile double error;
+
+    /**
+     * Constructs a new HeadingController. It doesn't run until start() is
+     * called, and doesn't correct until it is enabled.
+     * @param driveBase
+     * @param gyro
+     * @param clock
+     * @param telemetry
+     */
+    public HeadingController(DriveBase driveBase, Gyroscope gyro, Clock clock, Telemetry telemetry)
+    {
+        this.driveBase = driveBase;
+        this.gyro = gyro;
+        this.clock = clock;
+
+        telemetry.registerPolled("Heading Error", TELEMETRY_RATE, () -> error);
+        telemetry.registerPolled("Heading Correction", TELEMETRY_RATE, () -> correction);
+    }
+
+    /**
+     * Starts running the controller on its own thread. The Sampler is only
+     * created here, so desktop runs that step update() themselves never need
+     * the Notifier's native library.
+     */
+    public synchronized void start()
+    {
+        if (sampler == null)
+        {
+            sampler = new Sampler(this::update, RATE, clock);
+        }
+        sampler.start();
+    }
+
+    /**
+     * Stops the controller thread.
+     */
+    public synchronized void stop()
+    {
+        if (sampler != null)
+        {
+            sampler.stop();
+        }
+    }
+
+    /**
+     * Enables or disables the correction. While disabled the correction is 0.
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Turns the robot to a heading, then holds it.
+     * @param heading Target in the Gyroscope's offset heading, from -180 to 180 degrees.
+     */
+    public void turnTo(double heading)
+    {
+        requestedHeading = heading;
+        turnRequested = true;
+    }
+
+    /**
+     * Cancels a turn and holds the current heading.
+     */
+    public void hold()
+    {
+        turnRequested = false;
+        mode = Mode.HOLD;
+    }
+
+    /**
+     * Accessor method for the controller mode.
+     * @return
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Accessor method for the correction last sent to DriveBase.
+     * @return
+     */
+    public double getCorrection()
+    {
+        return correction;
+    }
+
+    /**
+     * Runs one controller tick. Called by the sampler thread, or directly
+     * at RATE when the controller isn't started.
+     */
+    public void update()
+    {
+        gyro.readSnapshot(snapshot);
+        double heading = snapshot.getContinuousHeading();
+        double yawRate = snapshot.getYawRate();
+
+        if (!enabled)
+        {
+            // Track the robot so a hold starts from where it is when re-enabled
+            holding = false;
+            target = heading;
+            integral = 0;
+            error = 0;
+            setCorrection(0);
+            return;
+        }
+
+        // Convert a requested offset heading into the continuous heading
+        if (turnRequested)
+        {
+            turnRequested = false;
+            double offsetHeading = snapshot.getHeading() - gyro.getOffset();
+            double delta = (requestedHeading - offsetHeading) % 360;
+            if (delta > 180) delta -= 360;
+            else if (delta <= -180) delta += 360;
+            target = heading + delta;
+            integral = 0;
+            mode = Mode.TURN;
+        }
+
+        // The driver turning always takes over
+        boolean driverTurning = Math.abs(driveBase.getRotationCommand()) > ROTATION_DEADBAND;
+        if (driverTurning && mode == Mode.TURN) mode = Mode.HOLD;
+
+        double output = 0;
+        switch (mode)
+        {
+        case HOLD:
+            if (driverTurning || (!holding && Math.abs(yawRate) > SETTLE_RATE))
+            {
+                // Follow the robot until it settles, then hold where it stopped
+                holding = false;
+                target = heading;
+                integral = 0;
+            }
+            else
+            {
+                holding = true;
+                output = pid(target - heading, yawRate);
+            }
+            break;
+        case TURN:
+            output = pid(target - heading, yawRate);
+            if (Math.abs(target - heading) < TURN_TOLERANCE && Math.abs(yawRate) < TURN_RATE_TOLERANCE)
+            {
+                holding = true;
+                mode = Mode.HOLD;
+            }
+            break;
+        }
+
+        error = target - heading;
+        setCorrection(output);
+    }
+
+    /**
+     * Accessor method for the sampler running the controller.
+     * @return The Sampler, for its timing histograms, or null if the
+     *         controller was never started.
+     */
+    public Sampler getSampler()
+    {
+        return sampler;
+    }
+
+    /**
+     * Calculates the correction for a heading error. The yaw rate from the
+     * gyro is used for the D term instead of differentiating the error.
+     * @param error Degrees, positive to turn clockwise.
+     * @param yawRate Degrees per second.
+     * @return The correction, limited to MAX_CORRECTION.
+     */
+    private double pid(double error, double yawRate)
+    {
+        integral += KI * error * PERIOD;
+        integral = Math.max(-MAX_INTEGRAL, Math.min(MAX_INTEGRAL, integral));
+
+        double output = KP * error + integral - KD * yawRate;
+        return Math.max(-MAX_CORRECTION, Math.min(MAX_CORRECTION, output));
+    }
+
+    private void setCorrection(double output)
+    {
+        // DriveBase resends both sides with each correction, so only send a
+        // change. While disabled this sends the zero once instead of pushing
+        // the last loop outputs to the talons every tick.
+        if (output == correction) return;
+        correction = output;
+        driveBase.setHeadingCorrection(output);
+    }
+}
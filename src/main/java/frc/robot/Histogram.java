@@ -0,0 +1,156 @@
+package frc.robot;
+
+/** Methods:
+ * public Histogram(int bucketCount, long bucketWidth)
+ * public void record(long value)
+ * public long getCount()
+ * public long getMax()
+ * public double getMean()
+ * public long getPercentile(double percentile)
+ * public long getBucketWidth()
+ * public int getBucketCount()
+ * public long getBucket(int index)
+ * public void reset()
+ */
+
+/**
+ * Fixed bucket histogram for timing measurements. All storage is allocated in
+ * the constructor so values can be recorded from a control loop without
+ * creating garbage. Values past the last bucket are counted in that bucket,
+ * and the exact maximum is kept separately.
+ *
+ * Recording is meant to happen on a single thread. Reading from another
+ * thread is safe but may see a histogram that is one sample behind.
+ */
+public class Histogram {
+    private final long bucketWidth;
+    private final long[] buckets;
+    private volatile long count;
+    private volatile long max;
+    private volatile long sum;
+
+    /**
+     * Constructs a new histogram.
+     * @param bucketCount Number of buckets (the last one also holds overflow).
+     * @param bucketWidth Width of each bucket in the recorded unit.
+     */
+    public Histogram(int bucketCount, long bucketWidth)
+    {
+        if (bucketCount < 1 || bucketWidth < 1)
+        {
+            throw new IllegalArgumentException("Histogram needs at least one bucket of non-zero width");
+        }
+        this.bucketWidth = bucketWidth;
+        buckets = new long[bucketCount];
+    }
+
+    /**
+     * Adds a value to the histogram. Negative values are counted as 0.
+     * @param value
+     */
+    public void record(long value)
+    {
+        if (value < 0) value = 0;
+
+        int index = (int) Math.min(value / bucketWidth, buckets.length - 1);
+        buckets[index]++;
+        sum += value;
+        if (value > max) max = value;
+        count++;
+    }
+
+    /**
+     * Accessor method for the number of recorded values.
+     * @return The total count.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Accessor method for the largest recorded value.
+     * @return The exact maximum, or 0 if nothing has been recorded.
+     */
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Calculates the mean of all recorded values.
+     * @return The mean, or 0 if nothing has been recorded.
+     */
+    public double getMean()
+    {
+        long n = count;
+        return n == 0 ? 0 : (double) sum / n;
+    }
+
+    /**
+     * Estimates a percentile from the buckets.
+     * @param percentile A value from 0 to 100.
+     * @return The upper edge of the bucket holding the percentile, capped at the maximum.
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = count;
+        if (n == 0) return 0;
+
+        long target = (long) Math.ceil(n * percentile / 100.0);
+        if (target < 1) target = 1;
+
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            seen += buckets[i];
+            if (seen >= target)
+            {
+                return Math.min((i + 1) * bucketWidth, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Accessor method for the bucket width.
+     * @return The width of each bucket.
+     */
+    public long getBucketWidth()
+    {
+        return bucketWidth;
+    }
+
+    /**
+     * Accessor method for the number of buckets.
+     * @return The bucket count.
+     */
+    public int getBucketCount()
+    {
+        return buckets.length;
+    }
+
+    /**
+     * Accessor method for a single bucket.
+     * @param index
+     * @return The number of values recorded in the bucket.
+     */
+    public long getBucket(int index)
+    {
+        return buckets[index];
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            buckets[i] = 0;
+        }
+        count = 0;
+        max = 0;
+        sum = 0;
+    }
+}
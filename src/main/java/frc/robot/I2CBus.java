@@ -0,0 +1,24 @@
+package frc.robot;
+
+/**
+ * A device on the I2C bus, addressed by register. Return values follow the
+ * WPILib I2C class: true means the transfer was aborted.
+ */
+public interface I2CBus {
+    /**
+     * Reads consecutive registers from the device.
+     * @param register The first register to read.
+     * @param count Number of bytes to read.
+     * @param buffer Buffer the bytes are stored in.
+     * @return True if the transfer was aborted.
+     */
+    boolean read(int register, int count, byte[] buffer);
+
+    /**
+     * Writes a byte to a register on the device.
+     * @param register
+     * @param data
+     * @return True if the transfer was aborted.
+     */
+    boolean write(int register, int data);
+}
@@ -0,0 +1,137 @@
+package frc.robot;
+
+/** Methods:
+ * public double getHeading()
+ * public double getRoll()
+ * public double getPitch()
+ * public long getTurns()
+ * public double getContinuousHeading()
+ * public double getYawRate()
+ * public double getAccelX()
+ * public double getAccelY()
+ * public double getAccelZ()
+ * public double getTimestamp()
+ * public long getSequence()
+ */
+
+/**
+ * A consistent copy of the BNO055 outputs taken from a single sensor update.
+ * Every value in a snapshot comes from the same I2C read, so the heading and
+ * turn count can never be mixed between two samples. Callers should keep one
+ * snapshot object and refill it with BNO055.getSnapshot() each loop.
+ */
+public class ImuSnapshot {
+    // Values copied out of the BNO055 by getSnapshot()
+    double heading;
+    double roll;
+    double pitch;
+    long turns;
+    double yawRate;
+    double accelX;
+    double accelY;
+    double accelZ;
+    double timestamp;
+    long sequence;
+
+    /**
+     * Accessor method for the heading.
+     * @return The heading from 0 to 360 degrees.
+     */
+    public double getHeading()
+    {
+        return heading;
+    }
+
+    /**
+     * Accessor method for the roll.
+     * @return The roll from -90 to 90 degrees.
+     */
+    public double getRoll()
+    {
+        return roll;
+    }
+
+    /**
+     * Accessor method for the pitch.
+     * @return The pitch from -180 to 180 degrees.
+     */
+    public double getPitch()
+    {
+        return pitch;
+    }
+
+    /**
+     * Accessor method for the number of full turns past the zero heading.
+     * @return The turn count (clockwise positive).
+     */
+    public long getTurns()
+    {
+        return turns;
+    }
+
+    /**
+     * Gets the heading in continuous format (doesn't roll over between 360 and 0).
+     * @return The heading plus 360 degrees per turn.
+     */
+    public double getContinuousHeading()
+    {
+        return heading + turns * 360;
+    }
+
+    /**
+     * Accessor method for the rotation rate about the heading axis.
+     * @return The gyro z rate from the same update as the heading, in degrees
+     *         per second, clockwise positive like the heading.
+     */
+    public double getYawRate()
+    {
+        return yawRate;
+    }
+
+    /**
+     * Accessor method for the linear acceleration along the sensor x axis.
+     * @return The acceleration in m/s^2 with gravity removed.
+     */
+    public double getAccelX()
+    {
+        return accelX;
+    }
+
+    /**
+     * Accessor method for the linear acceleration along the sensor y axis.
+     * @return The acceleration in m/s^2 with gravity removed.
+     */
+    public double getAccelY()
+    {
+        return accelY;
+    }
+
+    /**
+     * Accessor method for the linear acceleration along the sensor z axis.
+     * @return The acceleration in m/s^2 with gravity removed.
+     */
+    public double getAccelZ()
+    {
+        return accelZ;
+    }
+
+    /**
+     * Accessor method for the time the sample was read.
+     * @return The FPGA timestamp of the sensor read in seconds.
+     */
+    public double getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Accessor method for the sample number. This increases by one every time
+     * the BNO055 publishes new data, so a caller can tell if it has seen a
+     * sample already.
+     * @return The sequence number (0 before the first sample).
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+}
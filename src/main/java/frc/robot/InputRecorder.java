@@ -0,0 +1,200 @@
+package frc.robot;
+
+// Imports for the InputRecorder class
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/** Methods:
+ * public InputRecorder(File directory, Clock clock, RecordedJoystick joyR, RecordedJoystick joyL)
+ * public boolean open(String name)
+ * public void record(Mode mode)
+ * public void force()
+ * public void close()
+ * public boolean isOpen()
+ * public long getDroppedRecords()
+ * public static void writeHeader(ByteBuffer buffer)
+ * public static void readHeader(ByteBuffer buffer) throws IOException
+ * public static boolean hasRecord(ByteBuffer buffer)
+ */
+
+/**
+ * Records the driver inputs of every cycle into a memory-mapped file, so a
+ * match can be replayed through RobotLoop off the robot. Each record is the
+ * FPGA time, the robot mode and the snapshot of both RecordedJoysticks the
+ * cycle ran with, after a marker byte. Like FlightRecorder, the file is
+ * allocated when it is opened and a record is only a few buffer writes, and
+ * a reader stops at the first record without a marker, so the zero tail of a
+ * file that was never closed isn't read as records.
+ */
+public class InputRecorder {
+    /**
+     * The robot mode a record was taken in. DISABLED is recorded once when
+     * the robot is disabled so a replay knows to call disabledInit().
+     */
+    public enum Mode
+    {
+        DISABLED, AUTONOMOUS, TELEOP, TEST
+    }
+
+    // File identification
+    public static final int MAGIC = 0x48494453; // "HIDS"
+    public static final int VERSION = 2;
+    public static final byte RECORD_MARKER = (byte) 0xA5;
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final String EXTENSION = ".hid";
+
+    // Header and record sizes in bytes: marker, time, mode, right joystick, left joystick
+    public static final int HEADER_SIZE = 12;
+    public static final int RECORD_SIZE = 1 + 8 + 1 + 2 * RecordedJoystick.SIZE;
+
+    // Space preallocated for each file, about 110 minutes of 50 byte records at 50 Hz
+    private static final long FILE_SIZE = 16L * 1024 * 1024;
+
+    private final MappedLogFile log;
+    private final Clock clock;
+    private final RecordedJoystick joyR, joyL;
+
+    private MappedByteBuffer buffer;
+    private long dropped = 0;
+
+    /**
+     * Constructs a new InputRecorder. No file is written until open() is called.
+     * @param directory Where input files are created.
+     * @param clock Time source for the record timestamps.
+     * @param joyR
+     * @param joyL
+     */
+    public InputRecorder(File directory, Clock clock, RecordedJoystick joyR, RecordedJoystick joyL)
+    {
+        log = new MappedLogFile(directory, EXTENSION, FILE_SIZE, ORDER);
+        this.clock = clock;
+        this.joyR = joyR;
+        this.joyL = joyL;
+    }
+
+    /**
+     * Closes the current file and starts a new one.
+     * @param name File name without extension, usually the match name.
+     * @return True if the file was opened.
+     */
+    public boolean open(String name)
+    {
+        close();
+
+        try {
+            buffer = log.open(name);
+            writeHeader(buffer);
+        }
+        catch (IOException e) {
+            System.out.println("Unable to open input log " + name + " in InputRecorder.java: " + e);
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the joysticks' current snapshots. Call after capturing them and
+     * before the cycle reads any presses. Does nothing if no file is open.
+     * @param mode
+     */
+    public void record(Mode mode)
+    {
+        if (buffer == null) return;
+
+        if (buffer.remaining() < RECORD_SIZE)
+        {
+            dropped++;
+            return;
+        }
+
+        buffer.put(RECORD_MARKER);
+        buffer.putLong(clock.getMicros());
+        buffer.put((byte) mode.ordinal());
+        joyR.write(buffer);
+        joyL.write(buffer);
+    }
+
+    /**
+     * Writes the records so far out to the file without closing it.
+     */
+    public void force()
+    {
+        log.force();
+    }
+
+    /**
+     * Flushes and closes the current file, trimming it to the records written.
+     */
+    public void close()
+    {
+        try {
+            log.close();
+        }
+        catch (IOException e) {
+            System.out.println("Unable to close input log in InputRecorder.java: " + e);
+        }
+        buffer = null;
+    }
+
+    /**
+     * Accessor method for the recorder state.
+     * @return If a file is open for recording.
+     */
+    public boolean isOpen()
+    {
+        return buffer != null;
+    }
+
+    /**
+     * Accessor method for the number of records lost because the file was full.
+     * @return
+     */
+    public long getDroppedRecords()
+    {
+        return dropped;
+    }
+
+    /**
+     * Writes the file header.
+     * @param buffer
+     */
+    public static void writeHeader(ByteBuffer buffer)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(RECORD_SIZE);
+    }
+
+    /**
+     * Reads a file header and checks that it matches this build.
+     * @param buffer
+     * @throws IOException If the file isn't an input log or was written with a different layout.
+     */
+    public static void readHeader(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new IOException("Not an input log");
+        }
+        int version = buffer.getInt();
+        int recordSize = buffer.getInt();
+        if (version != VERSION || recordSize != RECORD_SIZE)
+        {
+            throw new IOException("Input log version " + version + " doesn't match this build's version " + VERSION);
+        }
+    }
+
+    /**
+     * Checks for a complete record at the buffer's position.
+     * @param buffer
+     * @return False at the end of the file or at the unwritten tail of one that wasn't closed.
+     */
+    public static boolean hasRecord(ByteBuffer buffer)
+    {
+        return buffer.remaining() >= RECORD_SIZE && buffer.get(buffer.position()) == RECORD_MARKER;
+    }
+}
@@ -0,0 +1,17 @@
+package frc.robot;
+
+// Imports for the InterruptSensor interface
+import java.util.function.LongConsumer;
+
+/**
+ * A digital input that can also report edges as they happen, instead of
+ * waiting for the next time it is read.
+ */
+public interface InterruptSensor extends DigitalSensor {
+    /**
+     * Calls the handler each time the input goes from high to low. The
+     * handler runs on the interrupt thread, not the caller's.
+     * @param handler Receives the FPGA time of the edge in microseconds.
+     */
+    void onFallingEdge(LongConsumer handler);
+}
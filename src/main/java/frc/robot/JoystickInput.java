@@ -0,0 +1,27 @@
+package frc.robot;
+
+/**
+ * A driver station joystick.
+ */
+public interface JoystickInput {
+    /**
+     * Accessor method for an axis.
+     * @param axis
+     * @return The axis value from -1 to 1.
+     */
+    double getRawAxis(int axis);
+
+    /**
+     * Accessor method for a button.
+     * @param button
+     * @return If the button is held.
+     */
+    boolean getRawButton(int button);
+
+    /**
+     * Checks if a button was pressed since the last check.
+     * @param button
+     * @return If the button was pressed.
+     */
+    boolean getRawButtonPressed(int button);
+}
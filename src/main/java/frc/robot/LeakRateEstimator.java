@@ -0,0 +1,134 @@
+package frc.robot;
+
+/** Methods:
+ * public LeakRateEstimator(int capacity)
+ * public void add(double time, double value)
+ * public void reset()
+ * public int getCount()
+ * public double getRate()
+ * public double getTimeToReach(double threshold)
+ * private void fit()
+ */
+
+/**
+ * Estimates how fast a value is drifting from its recent samples, by fitting
+ * a least squares line through a ring buffer of (time, value) pairs. The
+ * plunger uses it to track how fast the suction cup loses vacuum while it
+ * holds a hatch. Storage is preallocated, so adding samples doesn't allocate.
+ */
+public class LeakRateEstimator {
+    private final double[] times;
+    private final double[] values;
+    private int next = 0;
+    private int count = 0;
+
+    // Fitted line through the samples, valid when fitted is true
+    private boolean fitted = false;
+    private double slope, latestFit;
+
+    /**
+     * Constructs a new LeakRateEstimator.
+     * @param capacity Number of most recent samples the fit uses.
+     */
+    public LeakRateEstimator(int capacity)
+    {
+        if (capacity < 2)
+        {
+            throw new IllegalArgumentException("Leak rate estimator needs at least two samples");
+        }
+        times = new double[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one once the buffer is full.
+     * @param time Sample time in seconds.
+     * @param value
+     */
+    public void add(double time, double value)
+    {
+        times[next] = time;
+        values[next] = value;
+        next = (next + 1) % times.length;
+        if (count < times.length) count++;
+        fitted = false;
+    }
+
+    /**
+     * Forgets every sample.
+     */
+    public void reset()
+    {
+        next = 0;
+        count = 0;
+        fitted = false;
+    }
+
+    /**
+     * Accessor method for the number of samples in the fit.
+     * @return
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Calculates the slope of the samples.
+     * @return Change in value per second, or 0 with fewer than two samples.
+     */
+    public double getRate()
+    {
+        fit();
+        return slope;
+    }
+
+    /**
+     * Predicts when the fitted line reaches a threshold.
+     * @param threshold
+     * @return Seconds from the latest sample, or infinity if the line is
+     *         flat or moving away from the threshold (including once past it).
+     */
+    public double getTimeToReach(double threshold)
+    {
+        fit();
+        if (count < 2 || slope == 0) return Double.POSITIVE_INFINITY;
+
+        double time = (threshold - latestFit) / slope;
+        return time < 0 ? Double.POSITIVE_INFINITY : time;
+    }
+
+    /**
+     * Fits a line through the samples, centered on their mean time so large
+     * timestamps don't cost precision.
+     */
+    private void fit()
+    {
+        if (fitted) return;
+        fitted = true;
+        slope = 0;
+        latestFit = 0;
+        if (count == 0) return;
+
+        double meanTime = 0, meanValue = 0;
+        for (int i = 0; i < count; i++)
+        {
+            meanTime += times[i];
+            meanValue += values[i];
+        }
+        meanTime /= count;
+        meanValue /= count;
+
+        double covariance = 0, variance = 0;
+        for (int i = 0; i < count; i++)
+        {
+            double dt = times[i] - meanTime;
+            covariance += dt * (values[i] - meanValue);
+            variance += dt * dt;
+        }
+        if (variance > 0) slope = covariance / variance;
+
+        int latest = (next + times.length - 1) % times.length;
+        latestFit = meanValue + slope * (times[latest] - meanTime);
+    }
+}
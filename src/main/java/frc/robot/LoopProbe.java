@@ -0,0 +1,106 @@
+package frc.robot;
+
+/** Methods:
+ * public LoopProbe(String name, double budget, Telemetry telemetry)
+ * public void start()
+ * public long stop()
+ * public long getLast()
+ * public void countOverrun()
+ * public long getOverruns()
+ * public Histogram getHistogram()
+ */
+
+/**
+ * Times one section of the control loop with System.nanoTime and records the
+ * durations in microseconds into a fixed bucket histogram. start() and stop()
+ * don't allocate, so probes can stay in the loop during matches.
+ *
+ * A probe counts an overrun when a section runs longer than its budget.
+ * RobotLoop also charges loop overruns to the slowest subsystem probe through
+ * countOverrun(), which shows which mechanism was to blame. The p50, p99,
+ * maximum and overrun count are read by the telemetry thread.
+ */
+public class LoopProbe {
+    // Histogram layout: 25 us buckets up to 25 ms
+    private static final int HISTOGRAM_BUCKETS = 1000;
+    private static final long HISTOGRAM_BUCKET_WIDTH = 25;
+
+    // Rate the statistics are sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 2;
+
+    private final Histogram histogram = new Histogram(HISTOGRAM_BUCKETS, HISTOGRAM_BUCKET_WIDTH);
+    private final long budgetMicros;
+    private long startTime;
+    private long last;
+    private volatile long overruns;
+
+    /**
+     * Constructs a new LoopProbe and registers its statistics with telemetry.
+     * @param name Dashboard key prefix.
+     * @param budget Longest the section may take before it counts as an overrun (seconds).
+     * @param telemetry
+     */
+    public LoopProbe(String name, double budget, Telemetry telemetry)
+    {
+        budgetMicros = (long) (budget * 1e6);
+        telemetry.registerPolled(name + " p50 (us)", TELEMETRY_RATE, () -> histogram.getPercentile(50));
+        telemetry.registerPolled(name + " p99 (us)", TELEMETRY_RATE, () -> histogram.getPercentile(99));
+        telemetry.registerPolled(name + " Max (us)", TELEMETRY_RATE, histogram::getMax);
+        telemetry.registerPolled(name + " Overruns", TELEMETRY_RATE, this::getOverruns);
+    }
+
+    /**
+     * Marks the start of the timed section.
+     */
+    public void start()
+    {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the timed section and records its duration.
+     * @return The duration in microseconds.
+     */
+    public long stop()
+    {
+        last = (System.nanoTime() - startTime) / 1000;
+        histogram.record(last);
+        if (last > budgetMicros) overruns++;
+        return last;
+    }
+
+    /**
+     * Accessor method for the most recent duration.
+     * @return The duration in microseconds.
+     */
+    public long getLast()
+    {
+        return last;
+    }
+
+    /**
+     * Counts an overrun caused by this section outside of its own budget.
+     */
+    public void countOverrun()
+    {
+        overruns++;
+    }
+
+    /**
+     * Accessor method for the number of overruns.
+     * @return
+     */
+    public long getOverruns()
+    {
+        return overruns;
+    }
+
+    /**
+     * Accessor method for the duration histogram.
+     * @return Durations in microseconds.
+     */
+    public Histogram getHistogram()
+    {
+        return histogram;
+    }
+}
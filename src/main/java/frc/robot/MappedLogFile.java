@@ -0,0 +1,167 @@
+package frc.robot;
+
+// Imports for the MappedLogFile class
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Methods:
+ * public MappedLogFile(File directory, String extension, long size, ByteOrder order)
+ * public MappedByteBuffer open(String name) throws IOException
+ * public void force()
+ * public void close() throws IOException
+ * public static String unusedName(File directory, String name, String... extensions)
+ * public static int lastNumber(File directory, String name, String... extensions)
+ * public static int logNumber(String fileName, String name, String... extensions)
+ */
+
+/**
+ * A log file that is memory-mapped at a fixed size, shared by FlightRecorder
+ * and InputRecorder. open() allocates the whole file up front, so writing a
+ * record is only a few buffer writes. close() flushes it and trims it to the
+ * bytes written. Until then the unused tail reads as zeros, so each log's
+ * records start with a marker byte that readers stop at.
+ *
+ * An existing file is never overwritten. If the robot reboots or the code
+ * restarts mid-match, the match name is opened again, so a number is added
+ * to it: match, then match_2, match_3 and so on.
+ */
+public class MappedLogFile {
+    private final File directory;
+    private final String extension;
+    private final long size;
+    private final ByteOrder order;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Constructs a new MappedLogFile. No file is created until open() is called.
+     * @param directory Where the files are created.
+     * @param extension File name extension, including the dot.
+     * @param size Bytes mapped for each file.
+     * @param order Byte order of the mapped buffer.
+     */
+    public MappedLogFile(File directory, String extension, long size, ByteOrder order)
+    {
+        this.directory = directory;
+        this.extension = extension;
+        this.size = size;
+        this.order = order;
+    }
+
+    /**
+     * Creates a file and maps it. Call close() first if one is already open,
+     * and again if this throws.
+     * @param name File name without extension. A number is added if the file
+     *             already exists, see unusedName().
+     * @return The buffer to write records into, positioned at the start of the file.
+     * @throws IOException If the file can't be created or mapped.
+     */
+    public MappedByteBuffer open(String name) throws IOException
+    {
+        directory.mkdirs();
+        file = new RandomAccessFile(new File(directory, unusedName(directory, name, extension) + extension), "rw");
+        channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(order);
+        return buffer;
+    }
+
+    /**
+     * Writes what has been recorded so far out to the file, so it survives
+     * the power being cut before close().
+     */
+    public void force()
+    {
+        if (buffer != null) buffer.force();
+    }
+
+    /**
+     * Flushes and closes the file, trimming it to the buffer's position.
+     * Does nothing if no file is open.
+     * @throws IOException If the file can't be trimmed or closed.
+     */
+    public void close() throws IOException
+    {
+        try {
+            if (buffer != null)
+            {
+                buffer.force();
+                channel.truncate(buffer.position());
+            }
+            if (file != null) file.close();
+        }
+        finally {
+            buffer = null;
+            channel = null;
+            file = null;
+        }
+    }
+
+    /**
+     * Finds a name that no log with any of the extensions uses yet. Pass
+     * every extension a match is logged with, so its logs get the same name.
+     * @param directory
+     * @param name File name without extension.
+     * @param extensions
+     * @return The name if it is free, otherwise the name with one more than
+     *         the highest number already used.
+     */
+    public static String unusedName(File directory, String name, String... extensions)
+    {
+        int last = lastNumber(directory, name, extensions);
+        return last == 0 ? name : name + "_" + (last + 1);
+    }
+
+    /**
+     * Finds the highest number used by the logs of a name.
+     * @param directory
+     * @param name File name without extension.
+     * @param extensions
+     * @return 0 if there are none, 1 if only the unnumbered name is used.
+     */
+    public static int lastNumber(File directory, String name, String... extensions)
+    {
+        int last = 0;
+        String[] files = directory.list();
+        if (files == null) return last;
+
+        for (String fileName : files)
+        {
+            last = Math.max(last, logNumber(fileName, name, extensions));
+        }
+        return last;
+    }
+
+    /**
+     * Works out which of a name's logs a file is.
+     * @param fileName
+     * @param name File name without extension.
+     * @param extensions
+     * @return 1 for the unnumbered name, n for name_n, or 0 if the file isn't
+     *         a log of that name.
+     */
+    public static int logNumber(String fileName, String name, String... extensions)
+    {
+        for (String extension : extensions)
+        {
+            if (!fileName.startsWith(name) || !fileName.endsWith(extension)) continue;
+
+            String number = fileName.substring(name.length(), fileName.length() - extension.length());
+            if (number.isEmpty()) return 1;
+            if (number.length() < 2 || number.charAt(0) != '_') continue;
+            try {
+                return Math.max(0, Integer.parseInt(number.substring(1)));
+            }
+            catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,44 @@
+package frc.robot;
+
+/**
+ * A motor controller driven in percent output, such as a TalonSRX. Subsystems
+ * take these instead of constructing controllers so they can run against
+ * FakeDevices off the robot.
+ */
+public interface MotorOutput {
+    /**
+     * Sets the motor to a percent output from -1 to 1.
+     * @param percentOutput
+     */
+    void set(double percentOutput);
+
+    /**
+     * Makes the motor follow the output of another controller.
+     * @param masterPort CAN id of the controller to follow.
+     */
+    void follow(int masterPort);
+
+    /**
+     * Inverts the direction of the motor.
+     * @param inverted
+     */
+    void setInverted(boolean inverted);
+
+    /**
+     * Accessor method for the motor current.
+     * @return The output current in amps.
+     */
+    double getOutputCurrent();
+
+    /**
+     * Accessor method for the position of the controller's selected sensor.
+     * @return The position in sensor units, 0 if no sensor is attached.
+     */
+    double getSensorPosition();
+
+    /**
+     * Accessor method for the velocity of the controller's selected sensor.
+     * @return The velocity in sensor units per 100 ms, 0 if no sensor is attached.
+     */
+    double getSensorVelocity();
+}
@@ -1,33 +1,41 @@
 package frc.robot;
 
-// Imports for the Pillow class
-import com.ctre.phoenix.motorcontrol.can.TalonSRX;
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import com.ctre.phoenix.motorcontrol.ControlMode;
-
 /** Methods:
  * public Pillow()
+ * public Pillow(MotorOutput door, InterruptSensor closedSwitch, Clock clock)
  * public boolean isOpen()
  * public boolean isClosed()
- * public void runDoor(int direction)
+ * public synchronized void runDoor(int direction)
+ * public void setMotorAllowed(boolean allowed)
  * public void run(boolean openingButton, boolean closingButton)
  * public boolean closedState()
  * public void reset()
- * public void changeState(PillowStates newState)
+ * public synchronized void changeState(PillowStates newState)
+ * public long getClosedTime()
+ * public Histogram getStopLatency()
+ * public void log(FlightRecord record)
+ * private synchronized void doorClosed(long edgeTime)
  */
 
 /**
  * Framework for an object that controls the relevant devices to the Pillow
  * mechanism (Door Talon and Limit Swtiches).
+ *
+ * The closed limit switch also raises an FPGA interrupt when the door closes.
+ * If the door is being driven closed, the interrupt thread cuts the talon
+ * right away instead of waiting up to a loop for run() to poll the switch,
+ * and the motor isn't driven closed again until the door is moved. The edge
+ * time and how long the cut took are kept for the flight log.
  */
 public class Pillow {
     // Object declaration
-    private TalonSRX talOpen;
-    private DigitalInput limClosed;
+    private MotorOutput talOpen;
+    private InterruptSensor limClosed;
+    private Clock clock;
 
     // Variable initialization
-    private final int PILLOW_TALON_PORT = 3;
+    private static final int PILLOW_TALON_PORT = 3;
+    private static final int LIMIT_CLOSED_CHANNEL = 1;
     private final double PILLOW_TALON_SPEED = 0.7;
     private final int STOP = 0;
     private final int FORWARDS = 1;
@@ -41,15 +49,46 @@ public class Pillow {
     private PillowStates state;
     private String stateValue;
 
+    // Cleared by the PowerManager to defer the door near brownout
+    private boolean motorAllowed = true;
+
+    // Direction the door was last driven, and set once the interrupt has
+    // stopped it closing. Both guarded by this.
+    private int direction = 0;
+    private boolean closeLatched = false;
+
+    // Stop latency histogram layout: 10 us buckets up to 5 ms
+    private static final int LATENCY_BUCKETS = 500;
+    private static final long LATENCY_BUCKET_WIDTH = 10;
+
+    // FPGA time of the last closing edge, and how long after it the motor was cut (microseconds)
+    private volatile long closedTime = 0;
+    private volatile long lastStopLatency = 0;
+    private final Histogram stopLatency = new Histogram(LATENCY_BUCKETS, LATENCY_BUCKET_WIDTH);
+
     /**
-     * Constructs and intitalizes a new Pillow object.
+     * Constructs and intitalizes a new Pillow object using the robot's devices.
      */
     public Pillow()
+    {
+        this(Devices.talon(PILLOW_TALON_PORT), Devices.digitalInterrupt(LIMIT_CLOSED_CHANNEL), Devices.fpgaClock());
+    }
+
+    /**
+     * Constructs and intitalizes a new Pillow object using the given devices.
+     * 
+     * @param door Motor that opens and closes the door
+     * @param closedSwitch Limit switch that is low when the door is closed
+     * @param clock Time source matching the switch's edge timestamps
+     */
+    public Pillow(MotorOutput door, InterruptSensor closedSwitch, Clock clock)
     {
         // Object initialization
-        talOpen = new TalonSRX(PILLOW_TALON_PORT);
+        talOpen = door;
         talOpen.setInverted(true);
-        limClosed = new DigitalInput(1);
+        limClosed = closedSwitch;
+        this.clock = clock;
+        limClosed.onFallingEdge(this::doorClosed);
         
         reset();
     }
@@ -82,18 +121,38 @@ public class Pillow {
      * 
      * @param direction
      */
-    public void runDoor(int direction)
+    public synchronized void runDoor(int direction)
     {
-        if (direction == 0)
-            talOpen.set(ControlMode.PercentOutput, 0);
-        else if (direction == 1 || direction == -1)
-            talOpen.set(ControlMode.PercentOutput, direction * PILLOW_TALON_SPEED);
+        // Once the interrupt has stopped the door closing, don't drive it into the stop again
+        if (direction == BACKWARDS && closeLatched)
+            direction = STOP;
+
+        if (direction == 0 || !motorAllowed) {
+            talOpen.set(0);
+            this.direction = STOP;
+        }
+        else if (direction == 1 || direction == -1) {
+            talOpen.set(direction * PILLOW_TALON_SPEED);
+            this.direction = direction;
+        }
         else {
             System.out.println("Invalid input for runDoor(direction) in Pillow.java.");
-            talOpen.set(ControlMode.PercentOutput, 0);
+            talOpen.set(0);
+            this.direction = STOP;
         }
     }
 
+    /**
+     * Allows or defers the door motor. While deferred the door stays where it
+     * is, and carries on when allowed again if its button is still held.
+     * 
+     * @param allowed
+     */
+    public void setMotorAllowed(boolean allowed)
+    {
+        motorAllowed = allowed;
+    }
+
     /**
      * Runs the Pillow based various states of the mechanical device.
      * 
@@ -217,9 +276,65 @@ public class Pillow {
      * Changes the state of the Pillow and resets the necessary sensors/devices.
      * @param newState
      */
-    public void changeState(PillowStates newState)
+    public synchronized void changeState(PillowStates newState)
     {
         state = newState;
+
+        // Moving the door again starts a new close
+        if (newState == PillowStates.OPENING || newState == PillowStates.CLOSING)
+            closeLatched = false;
         runDoor(STOP);
     }
+
+    /**
+     * Accessor method for when the door last closed.
+     * 
+     * @return FPGA time of the limit switch edge in microseconds, 0 if it hasn't closed.
+     */
+    public long getClosedTime()
+    {
+        return closedTime;
+    }
+
+    /**
+     * Accessor method for how long the motor kept running after the door
+     * closed while it was being driven closed.
+     * 
+     * @return Histogram in microseconds from the switch edge to the motor cut.
+     */
+    public Histogram getStopLatency()
+    {
+        return stopLatency;
+    }
+
+    /**
+     * Writes the last door close into this cycle's flight record.
+     * 
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        record.set(FlightRecord.Field.DOOR_CLOSED_TIME, closedTime);
+        record.set(FlightRecord.Field.DOOR_STOP_LATENCY, lastStopLatency);
+    }
+
+    /**
+     * Called from the interrupt thread when the closed limit switch trips.
+     * Cuts the motor if it is driving the door closed.
+     * 
+     * @param edgeTime FPGA time of the edge in microseconds.
+     */
+    private synchronized void doorClosed(long edgeTime)
+    {
+        closedTime = edgeTime;
+        if (direction != BACKWARDS) return;
+
+        talOpen.set(0);
+        direction = STOP;
+        closeLatched = true;
+
+        long latency = clock.getMicros() - edgeTime;
+        lastStopLatency = latency;
+        stopLatency.record(latency);
+    }
 }
\ No newline at end of file
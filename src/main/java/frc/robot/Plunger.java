@@ -2,40 +2,87 @@ package frc.robot;
 
 // Imports for the Plunger Class
 import edu.wpi.first.wpilibj.DoubleSolenoid;
-import edu.wpi.first.wpilibj.Solenoid;
-import edu.wpi.first.wpilibj.AnalogInput;
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj.Compressor;
 
 /** Methods:
- * public Plunger()
+ * public Plunger(Telemetry telemetry)
+ * public Plunger(SolenoidOutput upstream, SolenoidOutput downstream, DoubleSolenoidOutput piston,
+ *         AnalogSensor pressureSensor, AnalogTriggerSensor vacuumSensor, CompressorControl compressor,
+ *         Clock clock, Telemetry telemetry)
  * public double getPressure()
  * public double getVacuum()
+ * public PlungerSensors getSensors()
+ * public double getLeakRate()
+ * public int getPredictiveRefreshes()
+ * public int getReactiveRefreshes()
+ * public void setPredictiveRefresh(boolean enabled)
+ * public void setCompressorAllowed(boolean allowed)
+ * public CompressorScheduler getCompressorScheduler()
  * public void runCompressor()
  * public boolean getCompressor()
  * public boolean[] getSolenoidStates()
  * public void runPiston(boolean pistonButton)
  * public void setSolenoids(boolean upstream, boolean downstream)
- * public void regulateState(boolean buttonPress)
- * public void runSolenoid()
+ * public synchronized void regulateState(boolean buttonPress)
+ * public synchronized void runSolenoid()
  * public void run(boolean pistonButton, boolean suctionButton)
  * public void reset()
+ * public plungerState getState()
+ * public long getTransitionCount()
+ * public long getTransitionTime(long index)
+ * public plungerState getTransitionFrom(long index)
+ * public plungerState getTransitionTo(long index)
+ * public double getTransitionVacuum(long index)
+ * public Histogram getAcquireLatency()
+ * public Histogram getReleaseLatency()
+ * public int getTriggeredTransitions()
+ * public void log(FlightRecord record)
+ * private Transition[][] buildTransitions()
+ * private synchronized void onVacuumTrigger(plungerState from, plungerState to, double vacuum, long time)
+ * private void enterState(plungerState next, double vacuum)
+ * private boolean deadlinePassed()
+ * private void startAcquire()
+ * private void startRelease()
+ * private static void setSolenoidTable(plungerState state, boolean upstream, boolean downstream)
  */
 
 /**
  * Framework for an object that controls the plunger mechanism.
+ *
+ * The suction state machine runs from a transition table indexed by state
+ * ordinal. Each state has its transitions in priority order, each with a
+ * guard and an optional action, and the solenoids open in each state come
+ * from two more tables. Timed states set a deadline in FPGA microseconds
+ * when they are entered. Every transition is written into a preallocated
+ * log, and the time from a suction button press to HOLD, and from a drop
+ * press to the cup venting, go into latency histograms for tuning WAIT_TIME
+ * and DROP_TIME.
+ *
+ * The vacuum sensor also has an analog trigger at each threshold, with a
+ * little hysteresis. Their interrupts take VACUUM_ON to VACUUM_TO_HOLD at
+ * VACUUM_SENSOR_IDEAL_VAC and HOLD to HOLD_TO_VACUUM at
+ * VACUUM_SENSOR_MIN_VAC, and set the solenoids as soon as the cup crosses a
+ * threshold, instead of on the next loop. The polled guards stay in the
+ * table as a fallback. The state machine is synchronized since the
+ * interrupt thread runs it too.
  */
 public class Plunger {
     // Object declaration
-    Solenoid upstreamSolenoid;
-    Solenoid downstreamSolenoid;
-    DoubleSolenoid piston;
-    AnalogInput pressureSensor;
-    AnalogInput vacuumSensor;
-    Timer timer;
-    Compressor compressor;
+    SolenoidOutput upstreamSolenoid;
+    SolenoidOutput downstreamSolenoid;
+    DoubleSolenoidOutput piston;
+    PlungerSensors sensors;
+    CompressorControl compressor;
+    Clock clock;
+    Telemetry telemetry;
+
+    // Telemetry keys
+    private int pressureKey, vacuumKey, upstreamKey, downstreamKey, stateKey;
+
+    // Time the current state's wait ends, FPGA microseconds
+    private long deadline;
+
+    // Time regulateState() is running at, FPGA microseconds
+    private long now;
 
     /**
      * Enum values for the different plunger states.
@@ -45,7 +92,43 @@ public class Plunger {
         VACUUM_ON, DROP_STATE, CLOSED, VACUUM_TO_HOLD, HOLD, HOLD_TO_VACUUM
     }
 
-    plungerState state;
+    volatile plungerState state;
+
+    /**
+     * A guard on a transition, checked with this cycle's button press.
+     */
+    private interface Guard
+    {
+        boolean test(boolean buttonPress);
+    }
+
+    /**
+     * A way out of a state: the first transition whose guard passes moves
+     * the plunger to its target and runs its action.
+     */
+    private static final class Transition
+    {
+        final Guard guard;
+        final plungerState target;
+        final Runnable action;
+
+        Transition(Guard guard, plungerState target, Runnable action)
+        {
+            this.guard = guard;
+            this.target = target;
+            this.action = action;
+        }
+    }
+
+    // Transitions out of each state, indexed by ordinal
+    private final Transition[][] transitions;
+
+    // Solenoids open in each state, indexed by ordinal
+    private static final boolean[] UPSTREAM_OPEN = new boolean[plungerState.values().length];
+    private static final boolean[] DOWNSTREAM_OPEN = new boolean[plungerState.values().length];
+
+    // How long each timed state waits, indexed by ordinal (microseconds)
+    private static final long[] STATE_WAIT = new long[plungerState.values().length];
 
     // Solenoid channels
     public static final int UPSTREAM_SOLENOID_CHANNEL = 2;
@@ -55,56 +138,251 @@ public class Plunger {
     public static final int PISTON_FWD_SOLENOID_CHANNEL = 0;
     public static final int PISTON_RVS_SOLENOID_CHANNEL = 3;
 
+    // The transducers are oversampled and averaged over 2^(2 + 4) samples in the FPGA
+    public static final int SENSOR_OVERSAMPLE_BITS = 2;
+    public static final int SENSOR_AVERAGE_BITS = 4;
+
     // Variables for the solenoid sensor
     public static final double VACUUM_SENSOR_IDEAL_VAC = -6;
     public static final double VACUUM_SENSOR_MIN_VAC = -5;
 
+    // How far past a threshold the vacuum must go back before its trigger fires again (psi)
+    public static final double VACUUM_TRIGGER_HYSTERESIS = 0.25;
+
+    // Leak rate fit over the last 0.5 s of HOLD, trusted after 0.2 s
+    public static final int LEAK_RATE_SAMPLES = 25;
+    public static final int LEAK_RATE_MIN_SAMPLES = 10;
+
+    // Start a refresh this long before the leak is predicted to reach
+    // VACUUM_SENSOR_MIN_VAC: about one loop plus the HOLD_TO_VACUUM wait, so
+    // the generator is pulling again just as the threshold would be hit. It
+    // is the same full pull to VACUUM_SENSOR_IDEAL_VAC as a reactive refresh,
+    // only started early. Shorter timed pulses used more air in the
+    // VacuumModel, since every refresh runs the generator against the sealed
+    // cup through the HOLD_TO_VACUUM and VACUUM_TO_HOLD waits.
+    public static final double REFRESH_LEAD_TIME = 0.05;
+
     // Variables for timing while running the plunger
     public static final double WAIT_TIME = 0.01;
     public static final double DROP_TIME = 1;
 
+    // Tank pressure needed to start pulling vacuum (psi)
+    public static final double MIN_START_PRESSURE = 20;
+
+    // The cup counts as vented, and the hatch released, above this vacuum (psi)
+    public static final double VENTED_VACUUM = -0.5;
+
+    // Transitions kept in the log, the oldest are overwritten
+    public static final int TRANSITION_LOG_LENGTH = 256;
+
+    // Latency histogram layout: 10 ms buckets up to 3 s
+    private static final int LATENCY_BUCKETS = 300;
+    private static final long LATENCY_BUCKET_WIDTH = 10000;
+
+    static {
+        // Which solenoids are open in each state (upstream, downstream)
+        // Closed: vent through the vacuum generator, ready for the next hatch
+        setSolenoidTable(plungerState.CLOSED, false, true);
+        // Vacuum on: both open so the generator pulls on the cup
+        setSolenoidTable(plungerState.VACUUM_ON, true, true);
+        // Close downstream to retain vacuum in the suction cup
+        setSolenoidTable(plungerState.VACUUM_TO_HOLD, true, false);
+        // Close upstream too, conserve air until a refresh is needed
+        setSolenoidTable(plungerState.HOLD, false, false);
+        // Prepare to refresh the vacuum, open upstream first
+        setSolenoidTable(plungerState.HOLD_TO_VACUUM, true, false);
+        // Close upstream, open downstream, release pressure through the vac gen
+        setSolenoidTable(plungerState.DROP_STATE, false, true);
+
+        STATE_WAIT[plungerState.VACUUM_TO_HOLD.ordinal()] = Math.round(WAIT_TIME * 1e6);
+        STATE_WAIT[plungerState.HOLD_TO_VACUUM.ordinal()] = Math.round(WAIT_TIME * 1e6);
+        STATE_WAIT[plungerState.DROP_STATE.ordinal()] = Math.round(DROP_TIME * 1e6);
+    }
+
+    // Rate the plunger values are sent to the dashboard (Hz)
+    public static final double TELEMETRY_RATE = 10;
+
     // Test variables
     public int iteration = 0;
 
+    // Vacuum leak tracking while holding a hatch
+    private final LeakRateEstimator leakRate = new LeakRateEstimator(LEAK_RATE_SAMPLES);
+    private boolean predictiveRefresh = true;
+    private int predictiveRefreshes = 0;
+    private int reactiveRefreshes = 0;
+    private int leakRateKey;
+
+    // Cleared by the PowerManager to defer the compressor near brownout
+    private boolean compressorAllowed = true;
+
+    // Decides when the compressor runs; it is only commanded when that changes
+    private CompressorScheduler scheduler;
+    private boolean compressorRunning = false;
+
+    // Transition log
+    private final long[] transitionTimes = new long[TRANSITION_LOG_LENGTH];
+    private final byte[] transitionFrom = new byte[TRANSITION_LOG_LENGTH];
+    private final byte[] transitionTo = new byte[TRANSITION_LOG_LENGTH];
+    private final float[] transitionVacuum = new float[TRANSITION_LOG_LENGTH];
+    private long transitionCount = 0;
+
+    // Button to HOLD and button to vented times, and the press being timed (-1 if none)
+    private final Histogram acquireLatency = new Histogram(LATENCY_BUCKETS, LATENCY_BUCKET_WIDTH);
+    private final Histogram releaseLatency = new Histogram(LATENCY_BUCKETS, LATENCY_BUCKET_WIDTH);
+    private long acquireStart = -1;
+    private long releaseStart = -1;
+    private double lastAcquire, lastRelease;
+    private int acquireKey, releaseKey;
+
+    // Transitions taken by the vacuum trigger interrupt rather than the loop
+    private int triggeredTransitions = 0;
+
     /**
-     * Constructs a new plunger object.
+     * Constructs a new plunger object using the robot's devices.
      */
-    public Plunger()
+    public Plunger(Telemetry telemetry)
     {
         // Object initialization
-        upstreamSolenoid = new Solenoid(UPSTREAM_SOLENOID_CHANNEL);
-        downstreamSolenoid = new Solenoid(DOWNSTREAM_SOLENOID_CHANNEL);
-        piston = new DoubleSolenoid(PISTON_FWD_SOLENOID_CHANNEL, PISTON_RVS_SOLENOID_CHANNEL);
-        pressureSensor = new AnalogInput(PRESSURE_SENSOR_CHANNEL);
-        vacuumSensor = new AnalogInput(VACUUM_SENSOR_CHANNEL);
-        compressor = new Compressor();
-        timer = new Timer();
+        this(Devices.solenoid(UPSTREAM_SOLENOID_CHANNEL), Devices.solenoid(DOWNSTREAM_SOLENOID_CHANNEL),
+                Devices.doubleSolenoid(PISTON_FWD_SOLENOID_CHANNEL, PISTON_RVS_SOLENOID_CHANNEL),
+                Devices.analogInput(PRESSURE_SENSOR_CHANNEL, SENSOR_OVERSAMPLE_BITS, SENSOR_AVERAGE_BITS),
+                Devices.analogTriggerInput(VACUUM_SENSOR_CHANNEL, SENSOR_OVERSAMPLE_BITS, SENSOR_AVERAGE_BITS),
+                Devices.compressor(), Devices.fpgaClock(), telemetry);
+    }
 
+    /**
+     * Constructs a new plunger object using the given devices.
+     */
+    public Plunger(SolenoidOutput upstream, SolenoidOutput downstream, DoubleSolenoidOutput piston,
+            AnalogSensor pressureSensor, AnalogTriggerSensor vacuumSensor, CompressorControl compressor,
+            Clock clock, Telemetry telemetry)
+    {
+        upstreamSolenoid = upstream;
+        downstreamSolenoid = downstream;
+        this.piston = piston;
+        this.compressor = compressor;
+        this.clock = clock;
+        this.telemetry = telemetry;
+        sensors = new PlungerSensors(pressureSensor, vacuumSensor, clock);
+        scheduler = new CompressorScheduler(clock, telemetry);
+        compressor.stop();
+
+        pressureKey = telemetry.register("Pressure", TELEMETRY_RATE);
+        vacuumKey = telemetry.register("Vacuum", TELEMETRY_RATE);
+        upstreamKey = telemetry.registerBoolean("upstream", TELEMETRY_RATE);
+        downstreamKey = telemetry.registerBoolean("downstream", TELEMETRY_RATE);
+        stateKey = telemetry.registerEnum("State", TELEMETRY_RATE, plungerState.values());
+        leakRateKey = telemetry.register("Leak Rate", TELEMETRY_RATE);
+        acquireKey = telemetry.register("Acquire Latency", TELEMETRY_RATE);
+        releaseKey = telemetry.register("Release Latency", TELEMETRY_RATE);
+
+        transitions = buildTransitions();
         reset();
+
+        // Each trigger fires at its threshold and re-arms once the vacuum is back past the hysteresis
+        vacuumSensor.addTrigger(PlungerSensors.toVacuumVolts(VACUUM_SENSOR_IDEAL_VAC),
+                PlungerSensors.toVacuumVolts(VACUUM_SENSOR_IDEAL_VAC + VACUUM_TRIGGER_HYSTERESIS),
+                time -> onVacuumTrigger(plungerState.VACUUM_ON, plungerState.VACUUM_TO_HOLD,
+                        VACUUM_SENSOR_IDEAL_VAC, time), null);
+        vacuumSensor.addTrigger(PlungerSensors.toVacuumVolts(VACUUM_SENSOR_MIN_VAC - VACUUM_TRIGGER_HYSTERESIS),
+                PlungerSensors.toVacuumVolts(VACUUM_SENSOR_MIN_VAC), null,
+                time -> onVacuumTrigger(plungerState.HOLD, plungerState.HOLD_TO_VACUUM,
+                        VACUUM_SENSOR_MIN_VAC, time));
     }
 
     /**
-     * Converts the pressure sensor volts to psi using a predetermined function.
+     * Accessor method for the tank pressure read at the start of this cycle.
      */
     public double getPressure()
     {
-        return ((pressureSensor.getVoltage() * 50.0) - 25.0);
+        return sensors.getPressure();
     }
 
     /**
-     * Converts the vacuum sensor volts to psi using a predetermined function.
+     * Accessor method for the suction cup vacuum read at the start of this cycle.
      */
     public double getVacuum()
     {
-        return ((vacuumSensor.getVoltage()* 11.125) - 20.0625);
+        return sensors.getVacuum();
+    }
+
+    /**
+     * Accessor method for this cycle's sensor reading.
+     * @return The PlungerSensors shared by the state machine and the logs.
+     */
+    public PlungerSensors getSensors()
+    {
+        return sensors;
+    }
+
+    /**
+     * Accessor method for the vacuum leak rate measured while holding.
+     * @return Vacuum change in psi per second, positive when leaking.
+     */
+    public double getLeakRate()
+    {
+        return leakRate.getRate();
+    }
+
+    /**
+     * Accessor method for the number of refreshes started before the vacuum got too weak.
+     * @return
+     */
+    public int getPredictiveRefreshes()
+    {
+        return predictiveRefreshes;
+    }
+
+    /**
+     * Accessor method for the number of refreshes started because the vacuum got too weak.
+     * @return
+     */
+    public int getReactiveRefreshes()
+    {
+        return reactiveRefreshes;
     }
 
     /**
-     * Runs compressor if the system is below max pressure (120 psi).
+     * Enables or disables refreshing the vacuum ahead of the predicted leak.
+     * When disabled the plunger only refreshes once the vacuum is too weak.
+     * @param enabled
+     */
+    public void setPredictiveRefresh(boolean enabled)
+    {
+        predictiveRefresh = enabled;
+    }
+
+    /**
+     * Allows or defers the compressor.
+     * @param allowed
+     */
+    public void setCompressorAllowed(boolean allowed)
+    {
+        compressorAllowed = allowed;
+    }
+
+    /**
+     * Accessor method for the compressor scheduler.
+     * @return The CompressorScheduler deciding when the compressor runs.
+     */
+    public CompressorScheduler getCompressorScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * Runs the compressor when the scheduler asks for it. The compressor is
+     * only commanded when the decision changes.
      */
     public void runCompressor()
     {
-        compressor.start();
+        boolean run = scheduler.update(sensors.getPressure(), state, compressorAllowed);
+        if (run != compressorRunning)
+        {
+            if (run) compressor.start();
+            else compressor.stop();
+            compressorRunning = run;
+        }
     }
 
     /**
@@ -158,143 +436,54 @@ public class Plunger {
      * Change the state of the plunger based on the press of a button.
      * @param buttonPress
      */
-    public void regulateState(boolean buttonPress)
+    public synchronized void regulateState(boolean buttonPress)
     {
-        switch (state) {
-        case CLOSED:
-            // On button press, switch to vacuum on
-            if (buttonPress && getPressure() >= 20)
-            {
-                state = plungerState.VACUUM_ON;
-            }
-            // Otherwise, maintain the current state
-            break;
+        now = clock.getMicros();
 
-        case VACUUM_ON:
-            // If the plunger button is pressed, go to drop state
-            if (buttonPress)
-            {
-                state = plungerState.DROP_STATE;
-                timer.reset();
-            }
-            // At the ideal pressure, switch state to hold the hatch
-            else if (getVacuum() <= VACUUM_SENSOR_IDEAL_VAC)
-            {
-                state = plungerState.VACUUM_TO_HOLD;
-                timer.reset();
-            }
-            // Otherwise, maintain the current state
-            break;
-            
-        case VACUUM_TO_HOLD:
-            // If the plunger button is pressed, switch to drop state
-            if (buttonPress) 
-            {
-                state = plungerState.DROP_STATE;
-                timer.reset();
-            }
-            // After a short waiting period, switch to hold the hatch
-            else if (timer.hasPeriodPassed(WAIT_TIME)) 
-            {
-                state = plungerState.HOLD;
-            }
-            // Otherwise, maintain the current state
-            break;
+        // Only fit the leak over an unbroken stretch of HOLD
+        if (state == plungerState.HOLD) leakRate.add(sensors.getTimestamp(), sensors.getVacuum());
+        else leakRate.reset();
 
-        
-        case HOLD:
-            // If the plunger button is pressed, switch to drop state
-            if (buttonPress) 
-            {
-                state = plungerState.DROP_STATE;
-                timer.reset();
-            }
-            // If the vacuum isn't strong enough, switch to holding the hatch to the vacuum
-            else if (getVacuum() >= VACUUM_SENSOR_MIN_VAC)
-            {
-                state = plungerState.HOLD_TO_VACUUM;
-                timer.reset();
-            }
-            // Otherwise, maintain the current state
-            break;
-       
-        case HOLD_TO_VACUUM:
-            // If the plunger button is pressed, switch to drop state
-            if (buttonPress)
-            {
-                state = plungerState.DROP_STATE;
-                timer.reset();
-            }
-            // After a short waiting period, switch to turning the vacuum on
-            else if (timer.hasPeriodPassed(WAIT_TIME)) 
-            {
-                state = plungerState.VACUUM_ON;
-                timer.reset();
-            }
-            // Otherwise, maintain the current state
-            break;
+        // The hatch is released once the cup has vented
+        if (state == plungerState.DROP_STATE && releaseStart >= 0 && getVacuum() >= VENTED_VACUUM)
+        {
+            releaseLatency.record(now - releaseStart);
+            lastRelease = (now - releaseStart) / 1e6;
+            releaseStart = -1;
+        }
 
-        case DROP_STATE:
-            // After a short waiting period, switch to the closed state to reset the cycle
-            if (timer.hasPeriodPassed(DROP_TIME)) 
+        // Take the first transition whose guard passes, otherwise maintain the current state
+        for (Transition transition : transitions[state.ordinal()])
+        {
+            if (transition.guard.test(buttonPress))
             {
-                state = plungerState.CLOSED;
-                timer.reset();
+                enterState(transition.target, getVacuum());
+                if (transition.action != null) transition.action.run();
+                break;
             }
-            // Otherwise, maintain the current state
-            break;
-
         }
     }
 
     /**
      * Run the solenoid based on the current state.
      */
-    public void runSolenoid()
+    public synchronized void runSolenoid()
     {
-        // this swich governs which solenoids are open based on the state
-        switch (state)
-        {
-        // all solenoids closed
-        case CLOSED:
-            setSolenoids(false, true);
-            break;
-
-        // all solenoids open
-        case VACUUM_ON:
-            setSolenoids(true, true);
-            break;
-
-        // close downstream solenoid to retain vacuum in suction cup
-        case VACUUM_TO_HOLD:
-            setSolenoids(true, false);
-            break;
-
-        // close upstream (downstream already closed), conserve air to refresh required
-        case HOLD:
-            setSolenoids(false, false);
-            break;
-
-        // prepare to refresh vacuum, open upstream solenoid
-        case HOLD_TO_VACUUM:
-            setSolenoids(true, false);
-            break;
-
-        // close upstream, open downstream, release pressure through vac gen
-        case DROP_STATE:
-            setSolenoids(false, true);
-            break;
-        }
+        setSolenoids(UPSTREAM_OPEN[state.ordinal()], DOWNSTREAM_OPEN[state.ordinal()]);
     }
+
     /**
-     * printing values to smart dash
+     * Queues values for the smart dash.
      */
     public void printValues() {
-        SmartDashboard.putNumber("Pressure", getPressure());
-        SmartDashboard.putNumber("Vacuum", getVacuum());
-        SmartDashboard.putBoolean("upstream", upstreamSolenoid.get());
-        SmartDashboard.putBoolean("downstream", downstreamSolenoid.get());
-        SmartDashboard.putString("State", state.toString());
+        telemetry.put(pressureKey, sensors.getPressure());
+        telemetry.put(vacuumKey, sensors.getVacuum());
+        telemetry.putBoolean(upstreamKey, upstreamSolenoid.get());
+        telemetry.putBoolean(downstreamKey, downstreamSolenoid.get());
+        telemetry.putEnum(stateKey, state);
+        telemetry.put(leakRateKey, leakRate.getRate());
+        telemetry.put(acquireKey, lastAcquire);
+        telemetry.put(releaseKey, lastRelease);
 
         // SmartDashboard.putBoolean("Piston", piston.get() == DoubleSolenoid.Value.kForward);
     }
@@ -306,17 +495,253 @@ public class Plunger {
      */
     public void run(boolean pistonButton, boolean suctionButton)
     {
+        // Read the sensors once for everything this cycle
+        sensors.sample();
         printValues();
         runPiston(pistonButton);
         regulateState(suctionButton);
         runSolenoid();
         runCompressor();
-        System.out.println(state.toString());
     }
 
     public void reset() {
         state = plungerState.CLOSED;
-        timer.reset();
-        timer.start();
+        deadline = clock.getMicros();
+        acquireStart = -1;
+        releaseStart = -1;
+    }
+
+    /**
+     * Accessor method for the suction state.
+     * @return
+     */
+    public plungerState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Accessor method for the number of transitions since the plunger was
+     * made. The last TRANSITION_LOG_LENGTH of them can be read back.
+     * @return
+     */
+    public long getTransitionCount()
+    {
+        return transitionCount;
+    }
+
+    /**
+     * Accessor method for when a transition happened.
+     * @param index From getTransitionCount() - TRANSITION_LOG_LENGTH up to getTransitionCount() - 1.
+     * @return FPGA time in microseconds.
+     */
+    public long getTransitionTime(long index)
+    {
+        return transitionTimes[(int) (index % TRANSITION_LOG_LENGTH)];
+    }
+
+    /**
+     * Accessor method for the state a transition left.
+     * @param index
+     * @return
+     */
+    public plungerState getTransitionFrom(long index)
+    {
+        return plungerState.values()[transitionFrom[(int) (index % TRANSITION_LOG_LENGTH)]];
+    }
+
+    /**
+     * Accessor method for the state a transition entered.
+     * @param index
+     * @return
+     */
+    public plungerState getTransitionTo(long index)
+    {
+        return plungerState.values()[transitionTo[(int) (index % TRANSITION_LOG_LENGTH)]];
+    }
+
+    /**
+     * Accessor method for the cup vacuum when a transition happened.
+     * @param index
+     * @return Vacuum in psi.
+     */
+    public double getTransitionVacuum(long index)
+    {
+        return transitionVacuum[(int) (index % TRANSITION_LOG_LENGTH)];
+    }
+
+    /**
+     * Accessor method for the time from a suction button press to HOLD.
+     * @return Histogram in microseconds.
+     */
+    public Histogram getAcquireLatency()
+    {
+        return acquireLatency;
+    }
+
+    /**
+     * Accessor method for the time from a drop press to the cup venting.
+     * @return Histogram in microseconds.
+     */
+    public Histogram getReleaseLatency()
+    {
+        return releaseLatency;
+    }
+
+    /**
+     * Accessor method for the number of transitions the vacuum trigger took
+     * before the loop saw the threshold.
+     * @return
+     */
+    public int getTriggeredTransitions()
+    {
+        return triggeredTransitions;
+    }
+
+    /**
+     * Writes the plunger state and sensor values into this cycle's flight record.
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        record.set(FlightRecord.Field.PLUNGER_STATE, state.ordinal());
+        record.set(FlightRecord.Field.PRESSURE, sensors.getPressure());
+        record.set(FlightRecord.Field.VACUUM, sensors.getVacuum());
+        record.set(FlightRecord.Field.LEAK_RATE, leakRate.getRate());
+        record.set(FlightRecord.Field.COMPRESSOR, scheduler.isRunning() ? 1 : scheduler.isDeferred() ? 2 : 0);
+    }
+
+    /**
+     * Builds the transition table. Guards and actions are bound once here so
+     * regulateState() doesn't allocate.
+     */
+    private Transition[][] buildTransitions()
+    {
+        Guard dropPressed = button -> button;
+        Guard waited = button -> deadlinePassed();
+        Runnable release = this::startRelease;
+        Transition[][] table = new Transition[plungerState.values().length][];
+
+        // On button press, switch to vacuum on
+        table[plungerState.CLOSED.ordinal()] = new Transition[] {
+            new Transition(button -> button && getPressure() >= MIN_START_PRESSURE, plungerState.VACUUM_ON,
+                    this::startAcquire)
+        };
+
+        // Drop on button press, or hold the hatch once at the ideal vacuum
+        table[plungerState.VACUUM_ON.ordinal()] = new Transition[] {
+            new Transition(dropPressed, plungerState.DROP_STATE, release),
+            new Transition(button -> getVacuum() <= VACUUM_SENSOR_IDEAL_VAC, plungerState.VACUUM_TO_HOLD, null)
+        };
+
+        // Drop on button press, or hold after a short wait
+        table[plungerState.VACUUM_TO_HOLD.ordinal()] = new Transition[] {
+            new Transition(dropPressed, plungerState.DROP_STATE, release),
+            new Transition(waited, plungerState.HOLD, () -> {
+                if (acquireStart >= 0)
+                {
+                    acquireLatency.record(now - acquireStart);
+                    lastAcquire = (now - acquireStart) / 1e6;
+                    acquireStart = -1;
+                }
+            })
+        };
+
+        // Drop on button press, refresh if the vacuum is too weak or the leak will make it so soon
+        table[plungerState.HOLD.ordinal()] = new Transition[] {
+            new Transition(dropPressed, plungerState.DROP_STATE, release),
+            new Transition(button -> getVacuum() >= VACUUM_SENSOR_MIN_VAC, plungerState.HOLD_TO_VACUUM,
+                    () -> reactiveRefreshes++),
+            new Transition(button -> predictiveRefresh && leakRate.getCount() >= LEAK_RATE_MIN_SAMPLES
+                    && leakRate.getTimeToReach(VACUUM_SENSOR_MIN_VAC) < REFRESH_LEAD_TIME,
+                    plungerState.HOLD_TO_VACUUM, () -> predictiveRefreshes++)
+        };
+
+        // Drop on button press, or turn the vacuum on after a short wait
+        table[plungerState.HOLD_TO_VACUUM.ordinal()] = new Transition[] {
+            new Transition(dropPressed, plungerState.DROP_STATE, release),
+            new Transition(waited, plungerState.VACUUM_ON, null)
+        };
+
+        // After the drop time, close to reset the cycle
+        table[plungerState.DROP_STATE.ordinal()] = new Transition[] {
+            new Transition(waited, plungerState.CLOSED, null)
+        };
+
+        return table;
+    }
+
+    /**
+     * Called from the interrupt thread when the vacuum crosses a trigger
+     * limit. Takes the table's transition between the two states, if the
+     * plunger is still in the first, and sets the solenoids right away.
+     * @param vacuum The limit crossed, logged with the transition.
+     * @param time FPGA time of the crossing in microseconds.
+     */
+    private synchronized void onVacuumTrigger(plungerState from, plungerState to, double vacuum, long time)
+    {
+        if (state != from) return;
+
+        now = time;
+        for (Transition transition : transitions[from.ordinal()])
+        {
+            if (transition.target == to)
+            {
+                enterState(to, vacuum);
+                if (transition.action != null) transition.action.run();
+                break;
+            }
+        }
+        triggeredTransitions++;
+        runSolenoid();
+    }
+
+    /**
+     * Moves to a state, starts its wait and logs the transition.
+     */
+    private void enterState(plungerState next, double vacuum)
+    {
+        int i = (int) (transitionCount % TRANSITION_LOG_LENGTH);
+        transitionTimes[i] = now;
+        transitionFrom[i] = (byte) state.ordinal();
+        transitionTo[i] = (byte) next.ordinal();
+        transitionVacuum[i] = (float) vacuum;
+        transitionCount++;
+
+        state = next;
+        deadline = now + STATE_WAIT[next.ordinal()];
+    }
+
+    /**
+     * Checks if the current state's wait is over.
+     */
+    private boolean deadlinePassed()
+    {
+        return now - deadline > 0;
+    }
+
+    /**
+     * Starts timing a pickup from the button press.
+     */
+    private void startAcquire()
+    {
+        acquireStart = now;
+        releaseStart = -1;
+    }
+
+    /**
+     * Starts timing a release from the button press. A pickup still under
+     * way is abandoned.
+     */
+    private void startRelease()
+    {
+        releaseStart = now;
+        acquireStart = -1;
+    }
+
+    private static void setSolenoidTable(plungerState state, boolean upstream, boolean downstream)
+    {
+        UPSTREAM_OPEN[state.ordinal()] = upstream;
+        DOWNSTREAM_OPEN[state.ordinal()] = downstream;
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package frc.robot;
+
+/** Methods:
+ * public PlungerSensors(AnalogSensor pressureSensor, AnalogSensor vacuumSensor, Clock clock)
+ * public void sample()
+ * public double getPressure()
+ * public double getVacuum()
+ * public double getTimestamp()
+ * public static double toPressure(double volts)
+ * public static double toVacuum(double volts)
+ * public static double toVacuumVolts(double vacuum)
+ */
+
+/**
+ * One reading of the plunger's pressure transducers per control cycle.
+ * sample() reads each sensor exactly once; the state machine, the dashboard
+ * and the flight log all use that reading, so they can't disagree about what
+ * the plunger saw in a cycle.
+ */
+public class PlungerSensors {
+    private final AnalogSensor pressureSensor;
+    private final AnalogSensor vacuumSensor;
+    private final Clock clock;
+
+    // Latest reading
+    private double pressure;
+    private double vacuum;
+    private double timestamp;
+
+    /**
+     * Constructs a new PlungerSensors object and takes a first reading.
+     * @param pressureSensor Tank pressure transducer.
+     * @param vacuumSensor Suction cup vacuum transducer.
+     * @param clock
+     */
+    public PlungerSensors(AnalogSensor pressureSensor, AnalogSensor vacuumSensor, Clock clock)
+    {
+        this.pressureSensor = pressureSensor;
+        this.vacuumSensor = vacuumSensor;
+        this.clock = clock;
+        sample();
+    }
+
+    /**
+     * Reads both sensors and stamps the reading with the current time.
+     */
+    public void sample()
+    {
+        pressure = toPressure(pressureSensor.getVoltage());
+        vacuum = toVacuum(vacuumSensor.getVoltage());
+        timestamp = clock.getTimestamp();
+    }
+
+    /**
+     * Accessor method for the tank pressure.
+     * @return Pressure in psi at the last sample.
+     */
+    public double getPressure()
+    {
+        return pressure;
+    }
+
+    /**
+     * Accessor method for the suction cup vacuum.
+     * @return Vacuum in psi (negative below atmosphere) at the last sample.
+     */
+    public double getVacuum()
+    {
+        return vacuum;
+    }
+
+    /**
+     * Accessor method for the time of the last sample.
+     * @return The time in seconds.
+     */
+    public double getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Converts the pressure sensor volts to psi using a predetermined function.
+     * @param volts
+     */
+    public static double toPressure(double volts)
+    {
+        return ((volts * 50.0) - 25.0);
+    }
+
+    /**
+     * Converts the vacuum sensor volts to psi using a predetermined function.
+     * @param volts
+     */
+    public static double toVacuum(double volts)
+    {
+        return ((volts * 11.125) - 20.0625);
+    }
+
+    /**
+     * Converts a vacuum in psi to the vacuum sensor volts, the inverse of toVacuum().
+     * @param vacuum
+     */
+    public static double toVacuumVolts(double vacuum)
+    {
+        return ((vacuum + 20.0625) / 11.125);
+    }
+}
@@ -0,0 +1,81 @@
+package frc.robot;
+
+/** Methods:
+ * public double getX()
+ * public double getY()
+ * public double getHeading()
+ * public double getVelocityX()
+ * public double getVelocityY()
+ * public double getTimestamp()
+ */
+
+/**
+ * The robot's position on the field at one instant, filled in by
+ * PoseEstimator. The field frame starts where the estimator was last reset:
+ * x is forward, y is to the right, and the heading is clockwise positive like
+ * the BNO055. Callers should keep one Pose and refill it instead of making a
+ * new one each loop.
+ */
+public class Pose {
+    // Values copied out of the PoseEstimator
+    double x;
+    double y;
+    double heading;
+    double velocityX;
+    double velocityY;
+    double timestamp;
+
+    /**
+     * Accessor method for the forward position.
+     * @return The x position in meters.
+     */
+    public double getX()
+    {
+        return x;
+    }
+
+    /**
+     * Accessor method for the sideways position.
+     * @return The y position in meters, right positive.
+     */
+    public double getY()
+    {
+        return y;
+    }
+
+    /**
+     * Accessor method for the heading.
+     * @return The heading in continuous degrees (doesn't roll over at 360).
+     */
+    public double getHeading()
+    {
+        return heading;
+    }
+
+    /**
+     * Accessor method for the field velocity along x.
+     * @return The velocity in meters per second.
+     */
+    public double getVelocityX()
+    {
+        return velocityX;
+    }
+
+    /**
+     * Accessor method for the field velocity along y.
+     * @return The velocity in meters per second.
+     */
+    public double getVelocityY()
+    {
+        return velocityY;
+    }
+
+    /**
+     * Accessor method for the time of the IMU sample the pose was computed from.
+     * @return The FPGA timestamp in seconds.
+     */
+    public double getTimestamp()
+    {
+        return timestamp;
+    }
+}
@@ -0,0 +1,328 @@
+package frc.robot;
+
+// Imports for the PoseEstimator class
+import java.lang.invoke.VarHandle;
+
+/** Methods:
+ * public PoseEstimator(DriveBase driveBase, Gyroscope gyro, Clock clock, Telemetry telemetry)
+ * public synchronized void start()
+ * public synchronized void stop()
+ * public synchronized void reset(double x, double y, double heading)
+ * public synchronized boolean isResetPending()
+ * public boolean getPose(Pose out)
+ * public boolean getPoseAt(double time, Pose out)
+ * public void update()
+ * public Sampler getSampler()
+ * public void log(FlightRecord record)
+ * private void publish(double time, double heading, double velocityX, double velocityY)
+ */
+
+/**
+ * Tracks the robot's position on the field by dead reckoning. Each new IMU
+ * sample, the change in the side and center wheel distances is turned into
+ * field motion using the BNO055 heading halfway between the two samples. The
+ * wheels are trusted for distance and the IMU for heading, since the side
+ * wheels slip when the H-drive turns or strafes.
+ *
+ * The estimator polls at the heading controller's rate on its own Sampler
+ * and only integrates when the IMU has a new sample. Poses are published with
+ * a seqlock like the BNO055 snapshot, so getPose() never blocks or allocates.
+ * The last HISTORY_LENGTH poses are kept in primitive arrays so a caller can
+ * look up where the robot was when, for example, a camera frame was taken.
+ */
+public class PoseEstimator {
+    // Poll rate (Hz), fast enough to see every BNO055 sample
+    public static final double RATE = HeadingController.RATE;
+
+    // Number of poses kept, 2.5 s at the BNO055's 100 Hz
+    private static final int HISTORY_LENGTH = 256;
+
+    // Rate the pose is sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 10;
+
+    private final DriveBase driveBase;
+    private final Gyroscope gyro;
+    private final Clock clock;
+    private Sampler sampler;
+    private final ImuSnapshot snapshot = new ImuSnapshot();
+
+    // Reset requested by another thread, applied by update()
+    private boolean resetRequested = true;
+    private double resetX, resetY, resetHeading;
+
+    // Integration state, only touched by update()
+    private long lastSequence = 0;
+    private double lastLeft, lastRight, lastCenter, lastHeading;
+    private double headingOffset;
+    private double x, y;
+
+    // Pose history published with a seqlock. The sequence is odd while
+    // update() is writing; readers retry until they see the same even value
+    // before and after copying out. The newest pose is at index count - 1.
+    private volatile long sequence = 0;
+    private long count = 0;
+    private final double[] times = new double[HISTORY_LENGTH];
+    private final double[] xs = new double[HISTORY_LENGTH];
+    private final double[] ys = new double[HISTORY_LENGTH];
+    private final double[] headings = new double[HISTORY_LENGTH];
+    private double velocityX, velocityY;
+
+    // Pose read by the telemetry thread, refreshed by each key's poller
+    private final Pose telemetryPose = new Pose();
+
+    // Pose read by the control loop for the flight log
+    private final Pose logPose = new Pose();
+
+    /**
+     * Constructs a new PoseEstimator. It doesn't run until start() is called,
+     * and starts at the origin facing along x.
+     * @param driveBase
+     * @param gyro
+     * @param clock
+     * @param telemetry
+     */
+    public PoseEstimator(DriveBase driveBase, Gyroscope gyro, Clock clock, Telemetry telemetry)
+    {
+        this.driveBase = driveBase;
+        this.gyro = gyro;
+        this.clock = clock;
+
+        telemetry.registerPolled("Pose X", TELEMETRY_RATE, () -> {
+            getPose(telemetryPose);
+            return telemetryPose.x;
+        });
+        telemetry.registerPolled("Pose Y", TELEMETRY_RATE, () -> {
+            getPose(telemetryPose);
+            return telemetryPose.y;
+        });
+        telemetry.registerPolled("Pose Heading", TELEMETRY_RATE, () -> {
+            getPose(telemetryPose);
+            return telemetryPose.heading;
+        });
+    }
+
+    /**
+     * Starts running the estimator on its own thread. The Sampler is only
+     * created here, so desktop runs that step update() themselves never need
+     * the Notifier's native library.
+     */
+    public synchronized void start()
+    {
+        if (sampler == null)
+        {
+            sampler = new Sampler(this::update, RATE, clock);
+        }
+        sampler.start();
+    }
+
+    /**
+     * Stops the estimator thread.
+     */
+    public synchronized void stop()
+    {
+        if (sampler != null)
+        {
+            sampler.stop();
+        }
+    }
+
+    /**
+     * Moves the estimate to a known pose. Takes effect on the next IMU sample.
+     * @param x Forward position in meters.
+     * @param y Sideways position in meters, right positive.
+     * @param heading Heading in degrees, clockwise positive.
+     */
+    public synchronized void reset(double x, double y, double heading)
+    {
+        resetX = x;
+        resetY = y;
+        resetHeading = heading;
+        resetRequested = true;
+    }
+
+    /**
+     * Accessor method for whether a reset is waiting for the next IMU sample.
+     * @return true until update() has moved the estimate.
+     */
+    public synchronized boolean isResetPending()
+    {
+        return resetRequested;
+    }
+
+    /**
+     * Copies the newest pose into out. Never blocks on the estimator thread
+     * and never allocates.
+     * @param out
+     * @return true if the estimator has produced at least one pose.
+     */
+    public boolean getPose(Pose out)
+    {
+        long before, after, n;
+
+        do {
+            before = sequence;
+            n = count;
+            int i = (int) ((n - 1) & (HISTORY_LENGTH - 1));
+            out.x = xs[i];
+            out.y = ys[i];
+            out.heading = headings[i];
+            out.timestamp = times[i];
+            out.velocityX = velocityX;
+            out.velocityY = velocityY;
+            VarHandle.loadLoadFence();
+            after = sequence;
+        } while ((before & 1) != 0 || before != after);
+
+        return n > 0;
+    }
+
+    /**
+     * Copies the pose at a past time into out, interpolating between the two
+     * nearest samples. Times outside the history get the oldest or newest pose.
+     * The velocity is always the newest.
+     * @param time FPGA timestamp in seconds.
+     * @param out
+     * @return true if the time was inside the history.
+     */
+    public boolean getPoseAt(double time, Pose out)
+    {
+        long before, after;
+        boolean inside;
+
+        do {
+            before = sequence;
+            long n = count;
+            long oldest = Math.max(0, n - HISTORY_LENGTH + 1);
+            long newest = n - 1;
+
+            // Binary search for the first sample at or after the time
+            long low = oldest, high = newest;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (times[(int) (mid & (HISTORY_LENGTH - 1))] < time) low = mid + 1;
+                else high = mid;
+            }
+
+            int i = (int) (low & (HISTORY_LENGTH - 1));
+            inside = n > 0 && low > oldest && times[i] >= time;
+            if (inside) {
+                int j = (int) ((low - 1) & (HISTORY_LENGTH - 1));
+                double t = (time - times[j]) / (times[i] - times[j]);
+                out.x = xs[j] + (xs[i] - xs[j]) * t;
+                out.y = ys[j] + (ys[i] - ys[j]) * t;
+                out.heading = headings[j] + (headings[i] - headings[j]) * t;
+                out.timestamp = time;
+            }
+            else {
+                if (n == 0) i = 0;
+                out.x = xs[i];
+                out.y = ys[i];
+                out.heading = headings[i];
+                out.timestamp = times[i];
+            }
+            out.velocityX = velocityX;
+            out.velocityY = velocityY;
+            VarHandle.loadLoadFence();
+            after = sequence;
+        } while ((before & 1) != 0 || before != after);
+
+        return inside;
+    }
+
+    /**
+     * Integrates the wheel motion since the last IMU sample. Called by the
+     * Sampler thread, or directly when running on a desktop.
+     */
+    public void update()
+    {
+        gyro.readSnapshot(snapshot);
+        long imuSequence = snapshot.getSequence();
+        if (imuSequence == 0 || imuSequence == lastSequence) return;
+        lastSequence = imuSequence;
+
+        double heading = snapshot.getContinuousHeading();
+        double left = driveBase.getLeftDistance();
+        double right = driveBase.getRightDistance();
+        double center = driveBase.getCenterDistance();
+
+        synchronized (this) {
+            if (resetRequested) {
+                x = resetX;
+                y = resetY;
+                headingOffset = heading - resetHeading;
+                resetRequested = false;
+                lastLeft = left;
+                lastRight = right;
+                lastCenter = center;
+                lastHeading = heading;
+            }
+        }
+
+        // Robot relative motion, rotated into the field by the average heading
+        double forward = (left - lastLeft + right - lastRight) / 2;
+        double strafe = center - lastCenter;
+        double angle = Math.toRadians((heading + lastHeading) / 2 - headingOffset);
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        x += forward * cos - strafe * sin;
+        y += forward * sin + strafe * cos;
+
+        lastLeft = left;
+        lastRight = right;
+        lastCenter = center;
+        lastHeading = heading;
+
+        // Velocity from the talons, which average over their own window
+        double vForward = driveBase.getForwardVelocity();
+        double vStrafe = driveBase.getStrafeVelocity();
+        angle = Math.toRadians(heading - headingOffset);
+        cos = Math.cos(angle);
+        sin = Math.sin(angle);
+        publish(snapshot.getTimestamp(), heading - headingOffset,
+                vForward * cos - vStrafe * sin, vForward * sin + vStrafe * cos);
+    }
+
+    /**
+     * Accessor method for the estimator's Sampler, for its latency and jitter.
+     * @return The Sampler, or null if the estimator was never started.
+     */
+    public Sampler getSampler()
+    {
+        return sampler;
+    }
+
+    /**
+     * Writes the newest position into this cycle's flight record.
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        getPose(logPose);
+        record.set(FlightRecord.Field.POSE_X, logPose.x);
+        record.set(FlightRecord.Field.POSE_Y, logPose.y);
+    }
+
+    /**
+     * Appends the current position to the history. Only called from update(),
+     * so there is a single writer.
+     */
+    private void publish(double time, double heading, double velocityX, double velocityY)
+    {
+        long s = sequence;
+
+        // Mark the history as being written before touching any slot
+        sequence = s + 1;
+        VarHandle.storeStoreFence();
+
+        int i = (int) (count & (HISTORY_LENGTH - 1));
+        times[i] = time;
+        xs[i] = x;
+        ys[i] = y;
+        headings[i] = heading;
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        count++;
+
+        // The volatile write releases the fields written above
+        sequence = s + 2;
+    }
+}
@@ -0,0 +1,244 @@
+package frc.robot;
+
+/** Methods:
+ * public PowerManager(PowerSource source, Clock clock, Telemetry telemetry)
+ * public void setShedOrder(Load... order)
+ * public void update()
+ * public boolean isAllowed(Load load)
+ * public double getDriveScale()
+ * public int getShedLevel()
+ * public double getPredictedVoltage()
+ * public double getTotalCurrent()
+ * public BatteryModel getBattery()
+ * public void log(FlightRecord record)
+ */
+
+/**
+ * Keeps the battery above the roboRIO's brownout voltage by cutting back the
+ * robot's loads before it gets there. Every cycle it samples the total
+ * current and battery voltage, fits a BatteryModel, and predicts the voltage
+ * a little ahead from how fast the current is rising.
+ *
+ * When the prediction drops below SHED_VOLTAGE the loads are shed one per
+ * cycle in the configured order: the compressor and pillow motor are
+ * deferred, and the drive is scaled down to what the battery can supply.
+ * Loads come back one at a time, in reverse order, once the prediction has
+ * stayed above RESTORE_VOLTAGE for RESTORE_TIME.
+ */
+public class PowerManager {
+    /**
+     * Loads the manager can cut back.
+     */
+    public enum Load
+    {
+        COMPRESSOR, PILLOW, DRIVE
+    }
+
+    // roboRIO brownout voltage, and the predicted voltages loads are shed and restored at
+    public static final double BROWNOUT_VOLTAGE = 6.8;
+    public static final double SHED_VOLTAGE = 7.5;
+    public static final double RESTORE_VOLTAGE = 8.5;
+
+    // Time the prediction must stay above RESTORE_VOLTAGE before a load comes back (seconds)
+    public static final double RESTORE_TIME = 0.5;
+
+    // How far ahead the rising current is extrapolated (seconds)
+    public static final double LOOKAHEAD = 0.1;
+
+    // Lowest drive scale, and how fast the scale recovers per cycle
+    public static final double MIN_DRIVE_SCALE = 0.4;
+    public static final double DRIVE_SCALE_RECOVERY = 0.05;
+
+    // Starting battery estimate: a charged battery and typical wiring
+    private static final double NOMINAL_VOLTAGE = 12.7;
+    private static final double NOMINAL_RESISTANCE = 0.02;
+
+    // Rate the power values are sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 10;
+
+    private final PowerSource source;
+    private final Clock clock;
+    private final Telemetry telemetry;
+    private final BatteryModel battery = new BatteryModel(NOMINAL_VOLTAGE, NOMINAL_RESISTANCE);
+
+    // Loads in the order they are shed, lowest priority first
+    private Load[] shedOrder = { Load.COMPRESSOR, Load.PILLOW, Load.DRIVE };
+    private int shedLevel = 0;
+
+    // Latest sample and prediction
+    private double current, voltage, predictedVoltage;
+    private double lastCurrent, lastTime, restoreStart;
+    private double driveScale = 1;
+
+    // Telemetry keys
+    private int voltageKey, currentKey, predictedKey, shedKey, scaleKey;
+
+    /**
+     * Constructs a new PowerManager with the default shed order: compressor,
+     * pillow, then drive.
+     * @param source
+     * @param clock
+     * @param telemetry
+     */
+    public PowerManager(PowerSource source, Clock clock, Telemetry telemetry)
+    {
+        this.source = source;
+        this.clock = clock;
+        this.telemetry = telemetry;
+        lastTime = clock.getTimestamp();
+        restoreStart = lastTime;
+
+        voltageKey = telemetry.register("Battery Voltage", TELEMETRY_RATE);
+        currentKey = telemetry.register("Total Current", TELEMETRY_RATE);
+        predictedKey = telemetry.register("Predicted Voltage", TELEMETRY_RATE);
+        shedKey = telemetry.register("Loads Shed", TELEMETRY_RATE);
+        scaleKey = telemetry.register("Drive Scale", TELEMETRY_RATE);
+    }
+
+    /**
+     * Sets the order loads are shed in, lowest priority first.
+     * @param order Every Load exactly once.
+     */
+    public void setShedOrder(Load... order)
+    {
+        boolean[] seen = new boolean[Load.values().length];
+        for (Load load : order)
+        {
+            if (seen[load.ordinal()])
+            {
+                throw new IllegalArgumentException("Load " + load + " listed twice in shed order");
+            }
+            seen[load.ordinal()] = true;
+        }
+        if (order.length != seen.length)
+        {
+            throw new IllegalArgumentException("Shed order must list every load");
+        }
+        shedOrder = order.clone();
+    }
+
+    /**
+     * Samples the battery, updates the prediction and decides which loads
+     * are allowed this cycle. Call once at the start of every cycle.
+     */
+    public void update()
+    {
+        double now = clock.getTimestamp();
+        current = source.getTotalCurrent();
+        voltage = source.getBatteryVoltage();
+        battery.update(current, voltage);
+
+        // Extrapolate a rising current over the lookahead
+        double dt = now - lastTime;
+        double rise = dt > 0 ? Math.max(0, (current - lastCurrent) / dt) : 0;
+        predictedVoltage = Math.min(voltage, battery.predictVoltage(current + rise * LOOKAHEAD));
+        lastCurrent = current;
+        lastTime = now;
+
+        // Shed one load per cycle while the prediction is low, restore slowly
+        if (predictedVoltage < SHED_VOLTAGE)
+        {
+            if (shedLevel < shedOrder.length) shedLevel++;
+            restoreStart = now;
+        }
+        else if (predictedVoltage < RESTORE_VOLTAGE || shedLevel == 0)
+        {
+            restoreStart = now;
+        }
+        else if (now - restoreStart >= RESTORE_TIME)
+        {
+            shedLevel--;
+            restoreStart = now;
+        }
+
+        // Scale the drive down until the current is what the battery can give
+        // above SHED_VOLTAGE. The drive draws most of the current, so scaling
+        // the present scale by limit / current converges on it over a few cycles.
+        if (!isAllowed(Load.DRIVE))
+        {
+            double limit = battery.getCurrentLimit(SHED_VOLTAGE);
+            double target = current > 1 ? driveScale * limit / current : 1;
+            target = Math.max(MIN_DRIVE_SCALE, Math.min(1, target));
+            driveScale = Math.min(target, driveScale + DRIVE_SCALE_RECOVERY);
+        }
+        else driveScale = Math.min(1, driveScale + DRIVE_SCALE_RECOVERY);
+
+        telemetry.put(voltageKey, voltage);
+        telemetry.put(currentKey, current);
+        telemetry.put(predictedKey, predictedVoltage);
+        telemetry.put(shedKey, shedLevel);
+        telemetry.put(scaleKey, driveScale);
+    }
+
+    /**
+     * Checks if a load may run this cycle.
+     * @param load
+     * @return False if the load has been shed.
+     */
+    public boolean isAllowed(Load load)
+    {
+        for (int i = 0; i < shedLevel; i++)
+        {
+            if (shedOrder[i] == load) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Accessor method for the factor drive outputs should be scaled by.
+     * @return A scale from MIN_DRIVE_SCALE to 1.
+     */
+    public double getDriveScale()
+    {
+        return driveScale;
+    }
+
+    /**
+     * Accessor method for the number of loads currently shed.
+     * @return
+     */
+    public int getShedLevel()
+    {
+        return shedLevel;
+    }
+
+    /**
+     * Accessor method for the voltage predicted LOOKAHEAD from now.
+     * @return
+     */
+    public double getPredictedVoltage()
+    {
+        return predictedVoltage;
+    }
+
+    /**
+     * Accessor method for this cycle's total current.
+     * @return Current in amps.
+     */
+    public double getTotalCurrent()
+    {
+        return current;
+    }
+
+    /**
+     * Accessor method for the fitted battery model.
+     * @return
+     */
+    public BatteryModel getBattery()
+    {
+        return battery;
+    }
+
+    /**
+     * Writes the battery sample, prediction and shedding into this cycle's flight record.
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        record.set(FlightRecord.Field.BATTERY_VOLTAGE, voltage);
+        record.set(FlightRecord.Field.TOTAL_CURRENT, current);
+        record.set(FlightRecord.Field.PREDICTED_VOLTAGE, predictedVoltage);
+        record.set(FlightRecord.Field.LOADS_SHED, shedLevel);
+        record.set(FlightRecord.Field.DRIVE_SCALE, driveScale);
+    }
+}
@@ -0,0 +1,18 @@
+package frc.robot;
+
+/**
+ * The robot's battery as seen by the power distribution panel and roboRIO.
+ */
+public interface PowerSource {
+    /**
+     * Accessor method for the current drawn from the battery.
+     * @return The total current in amps.
+     */
+    double getTotalCurrent();
+
+    /**
+     * Accessor method for the battery voltage.
+     * @return The voltage in volts.
+     */
+    double getBatteryVoltage();
+}
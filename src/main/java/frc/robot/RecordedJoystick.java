@@ -0,0 +1,116 @@
+package frc.robot;
+
+// Imports for the RecordedJoystick class
+import java.nio.ByteBuffer;
+
+/** Methods:
+ * public RecordedJoystick(JoystickInput source)
+ * public void capture()
+ * public double getRawAxis(int axis)
+ * public boolean getRawButton(int button)
+ * public boolean getRawButtonPressed(int button)
+ * public void write(ByteBuffer buffer)
+ * public void read(ByteBuffer buffer)
+ */
+
+/**
+ * A joystick whose state only changes when capture() is called, once at the
+ * start of each cycle. Everything the control code reads in a cycle then
+ * comes from one snapshot that InputRecorder can write out, and a replay can
+ * put the same snapshot back with read(). Built without a source it is a
+ * replay joystick that only changes through read().
+ *
+ * Presses follow the driver station: getRawButtonPressed() reports a press
+ * once. capture() collects every press since the last cycle, and presses the
+ * code didn't check by the next capture are dropped, the same way in a match
+ * and in a replay.
+ */
+public class RecordedJoystick implements JoystickInput {
+    // Inputs captured from each joystick
+    public static final int AXES = 4;
+    public static final int BUTTONS = 12;
+
+    // Bytes one joystick takes in a record: the axes as floats, then the held and pressed masks
+    public static final int SIZE = AXES * 4 + 2 + 2;
+
+    private final JoystickInput source;
+    private final double[] axes = new double[AXES];
+    private int held;
+    private int pressed;
+
+    /**
+     * Constructs a new RecordedJoystick. All axes read 0 and no buttons are
+     * held until the first capture() or read().
+     * @param source The joystick to capture, or null for replay.
+     */
+    public RecordedJoystick(JoystickInput source)
+    {
+        this.source = source;
+    }
+
+    /**
+     * Takes a new snapshot from the source joystick.
+     */
+    public void capture()
+    {
+        if (source == null) return;
+
+        // Rounded to the float precision they are recorded with, so a replay
+        // sees exactly the same values
+        for (int i = 0; i < AXES; i++) {
+            axes[i] = (float) source.getRawAxis(i);
+        }
+        held = 0;
+        pressed = 0;
+        for (int button = 1; button <= BUTTONS; button++) {
+            int bit = 1 << (button - 1);
+            if (source.getRawButton(button)) held |= bit;
+            if (source.getRawButtonPressed(button)) pressed |= bit;
+        }
+    }
+
+    public double getRawAxis(int axis)
+    {
+        return axis < AXES ? axes[axis] : 0;
+    }
+
+    public boolean getRawButton(int button)
+    {
+        return button >= 1 && button <= BUTTONS && (held & (1 << (button - 1))) != 0;
+    }
+
+    public boolean getRawButtonPressed(int button)
+    {
+        if (button < 1 || button > BUTTONS) return false;
+        int bit = 1 << (button - 1);
+        boolean wasPressed = (pressed & bit) != 0;
+        pressed &= ~bit;
+        return wasPressed;
+    }
+
+    /**
+     * Writes the snapshot. Call right after capture(), before any presses are read.
+     * @param buffer Buffer with room for SIZE bytes.
+     */
+    public void write(ByteBuffer buffer)
+    {
+        for (int i = 0; i < AXES; i++) {
+            buffer.putFloat((float) axes[i]);
+        }
+        buffer.putShort((short) held);
+        buffer.putShort((short) pressed);
+    }
+
+    /**
+     * Replaces the snapshot with one read from a recording.
+     * @param buffer Buffer positioned at a snapshot written by write().
+     */
+    public void read(ByteBuffer buffer)
+    {
+        for (int i = 0; i < AXES; i++) {
+            axes[i] = buffer.getFloat();
+        }
+        held = buffer.getShort() & 0xFFFF;
+        pressed = buffer.getShort() & 0xFFFF;
+    }
+}
@@ -0,0 +1,190 @@
+package frc.robot;
+
+/** Methods:
+ * public static ResponseCurve cubic(String name, double deadzone)
+ * public static ResponseCurve parabolic(String name, double deadzone, double a, double b, double c)
+ * public static ResponseCurve exponential(String name, double deadzone, double k)
+ * public static ResponseCurve piecewise(String name, double deadzone, double[] x, double[] y)
+ * public double apply(double input)
+ * public String getName()
+ * public Type getType()
+ */
+
+/**
+ * Shapes a joystick axis into a motor output. The deadzone is rescaled
+ * instead of cut off: inputs inside it give 0, and the rest of the stick
+ * travel is stretched over the whole curve, so the output rises smoothly from
+ * 0 at the deadzone edge instead of jumping.
+ *
+ * Every curve is compiled into a lookup table over the stick magnitude when it
+ * is constructed. apply() then costs two array reads and a linear
+ * interpolation no matter how expensive the curve is to evaluate. Curves are
+ * symmetric: the sign of the input is applied to the output.
+ */
+public class ResponseCurve {
+    /**
+     * Curve shapes, evaluated on the rescaled stick magnitude u from 0 to 1.
+     */
+    public enum Type
+    {
+        CUBIC, // u^3
+        PARABOLIC, // a*u^2 + b*u + c
+        EXPONENTIAL, // (e^(k*u) - 1) / (e^k - 1)
+        PIECEWISE // Straight lines between given points
+    }
+
+    // Number of intervals in the lookup table
+    private static final int TABLE_SIZE = 512;
+
+    private final String name;
+    private final Type type;
+    private final double[] table = new double[TABLE_SIZE + 1];
+
+    /**
+     * Creates a cubic curve, the drive's original response.
+     * @param name
+     * @param deadzone Stick magnitude below which the output is 0.
+     */
+    public static ResponseCurve cubic(String name, double deadzone)
+    {
+        return new ResponseCurve(name, Type.CUBIC, deadzone, 0, 0, 0, null, null);
+    }
+
+    /**
+     * Creates a parabolic curve a*u^2 + b*u + c. With c = 0 and a + b = 1 it
+     * runs from 0 to full output.
+     * @param name
+     * @param deadzone Stick magnitude below which the output is 0.
+     * @param a
+     * @param b
+     * @param c
+     */
+    public static ResponseCurve parabolic(String name, double deadzone, double a, double b, double c)
+    {
+        return new ResponseCurve(name, Type.PARABOLIC, deadzone, a, b, c, null, null);
+    }
+
+    /**
+     * Creates an exponential curve. Larger k gives finer control near the center.
+     * @param name
+     * @param deadzone Stick magnitude below which the output is 0.
+     * @param k Must not be 0.
+     */
+    public static ResponseCurve exponential(String name, double deadzone, double k)
+    {
+        if (k == 0)
+        {
+            throw new IllegalArgumentException("Exponential curve needs a non-zero k");
+        }
+        return new ResponseCurve(name, Type.EXPONENTIAL, deadzone, k, 0, 0, null, null);
+    }
+
+    /**
+     * Creates a curve from straight lines between points. Points before the
+     * first x or after the last one take the end values.
+     * @param name
+     * @param deadzone Stick magnitude below which the output is 0.
+     * @param x Rescaled stick magnitudes from 0 to 1, increasing.
+     * @param y Outputs at those magnitudes.
+     */
+    public static ResponseCurve piecewise(String name, double deadzone, double[] x, double[] y)
+    {
+        if (x.length < 2 || x.length != y.length)
+        {
+            throw new IllegalArgumentException("Piecewise curve needs at least two matching points");
+        }
+        for (int i = 1; i < x.length; i++)
+        {
+            if (x[i] <= x[i - 1])
+            {
+                throw new IllegalArgumentException("Piecewise curve points must increase in x");
+            }
+        }
+        return new ResponseCurve(name, Type.PIECEWISE, deadzone, 0, 0, 0, x.clone(), y.clone());
+    }
+
+    private ResponseCurve(String name, Type type, double deadzone, double a, double b, double c,
+            double[] x, double[] y)
+    {
+        if (deadzone < 0 || deadzone >= 1)
+        {
+            throw new IllegalArgumentException("Deadzone must be from 0 to just under 1");
+        }
+        this.name = name;
+        this.type = type;
+
+        // Compile the curve over the raw stick magnitude, deadzone included
+        for (int i = 0; i <= TABLE_SIZE; i++)
+        {
+            double input = (double) i / TABLE_SIZE;
+            double u = input <= deadzone ? 0 : (input - deadzone) / (1 - deadzone);
+            double output = 0;
+            switch (type)
+            {
+            case CUBIC:
+                output = u * u * u;
+                break;
+            case PARABOLIC:
+                output = u == 0 ? 0 : a * u * u + b * u + c;
+                break;
+            case EXPONENTIAL:
+                output = (Math.exp(a * u) - 1) / (Math.exp(a) - 1);
+                break;
+            case PIECEWISE:
+                output = interpolate(x, y, u);
+                break;
+            }
+            table[i] = Math.max(-1, Math.min(1, output));
+        }
+    }
+
+    /**
+     * Shapes an axis value.
+     * @param input Axis value from -1 to 1. Values outside are clamped.
+     * @return The output from -1 to 1.
+     */
+    public double apply(double input)
+    {
+        double magnitude = Math.min(Math.abs(input), 1) * TABLE_SIZE;
+        int index = (int) magnitude;
+        if (index >= TABLE_SIZE)
+        {
+            return Math.copySign(table[TABLE_SIZE], input);
+        }
+
+        double fraction = magnitude - index;
+        double output = table[index] + (table[index + 1] - table[index]) * fraction;
+        return Math.copySign(output, input);
+    }
+
+    /**
+     * Accessor method for the curve's name, shown on the dashboard.
+     * @return
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Accessor method for the curve's shape.
+     * @return
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    private static double interpolate(double[] x, double[] y, double u)
+    {
+        if (u <= x[0]) return y[0];
+        for (int i = 1; i < x.length; i++)
+        {
+            if (u <= x[i])
+            {
+                return y[i - 1] + (y[i] - y[i - 1]) * (u - x[i - 1]) / (x[i] - x[i - 1]);
+            }
+        }
+        return y[y.length - 1];
+    }
+}
@@ -8,11 +8,11 @@
 package frc.robot;
 
 // Imports for the Robot.java class
+import java.io.File;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.TimedRobot;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.cscore.UsbCamera;
-import edu.wpi.first.cameraserver.*;
 
 /** Methods:
  * public void robotInit()
@@ -23,6 +23,9 @@ import edu.wpi.first.cameraserver.*;
  * public void teleopInit()
  * public void teleopPeriodic()
  * public void testPeriodic()
+ * private void openMatchLog()
+ * private void deleteOldPracticeLogs(File directory)
+ * private void captureInputs(InputRecorder.Mode mode)
  */
 
 
@@ -35,20 +38,27 @@ import edu.wpi.first.cameraserver.*;
  */
 public class Robot extends TimedRobot {
   // Object Declaration
-  DriveBase driveBase;
-  Gyroscope gyro;
-  Joystick rawJoyR, rawJoyL;
-  Plunger plunger;
-  Pillow pillow;
+  RobotLoop loop;
+  Telemetry telemetry;
+  FlightRecorder recorder;
+  InputRecorder inputs;
+  CameraManager cameras;
+  TrajectoryLibrary trajectories;
+  RecordedJoystick joyR, joyL;
 
   // Variable Declaration
   private final int JOY_R_PORT = 1;
   private final int JOY_L_PORT = 0;
-  private double[] joyR = { 0, 0, 0 }, joyL = { 0, 0, 0 };
-  private final int SUCTION_BUTTON = 6;
-  private final int PISTON_BUTTON = 5;
-  private final int PILLOW_BUTTON_OPEN = 4;
-  private final int PILLOW_BUTTON_CLOSED = 3;
+  private final double TELEMETRY_PUBLISH_RATE = 50;
+  private final double CAMERA_BANDWIDTH = 375000; // 3 Mbps of the 4 Mbps FMS limit
+  private final int CAMERA_BUTTON = 8;
+  private final String FLIGHT_LOG_DIRECTORY = "/home/lvuser/logs";
+  private final String PRACTICE_LOG_NAME = "practice";
+  // Practice logs kept on the roboRIO's flash, at most 32 MB each if the robot lost power before closing them
+  private final int MAX_PRACTICE_LOGS = 6;
+  private final String TRAJECTORY_DIRECTORY = "trajectories";
+  private final String AUTO_TRAJECTORY = "hab_to_left_cargo";
+  private String logName = "";
 
   /**
    * This function is run when the robot is first started up and should be used
@@ -58,18 +68,35 @@ public class Robot extends TimedRobot {
   public void robotInit()
   {
     // Object initialization
-    rawJoyR = new Joystick(JOY_R_PORT);
-    rawJoyL = new Joystick(JOY_L_PORT);
-    gyro = new Gyroscope();
-    driveBase = new DriveBase();
-    pillow = new Pillow();
-    plunger = new Plunger();
-
-    // Starts automatic capture for the Sandstorm cameras
-    UsbCamera cam1 = CameraServer.getInstance().startAutomaticCapture(0);
-    UsbCamera cam2 = CameraServer.getInstance().startAutomaticCapture(1);
-    cam1.setFPS(10);
-    cam2.setFPS(10);
+    telemetry = new Telemetry(Devices.smartDashboard(), Devices.fpgaClock());
+    recorder = new FlightRecorder(new File(FLIGHT_LOG_DIRECTORY), Devices.fpgaClock());
+    trajectories = new TrajectoryLibrary(new File(Filesystem.getDeployDirectory(), TRAJECTORY_DIRECTORY));
+    joyR = new RecordedJoystick(Devices.joystick(JOY_R_PORT));
+    joyL = new RecordedJoystick(Devices.joystick(JOY_L_PORT));
+    inputs = new InputRecorder(new File(FLIGHT_LOG_DIRECTORY), Devices.fpgaClock(), joyR, joyL);
+    loop = new RobotLoop(new DriveBase(telemetry), new Gyroscope(), new Pillow(), new Plunger(telemetry),
+        new PowerManager(Devices.powerSource(), Devices.fpgaClock(), telemetry),
+        joyR, joyL, recorder, Devices.fpgaClock(), telemetry);
+    loop.setAutoTrajectory(trajectories.get(AUTO_TRAJECTORY));
+
+    // Streams one Sandstorm camera at a time within the bandwidth cap
+    cameras = new CameraManager(Devices.fpgaClock(), telemetry, CAMERA_BANDWIDTH);
+
+    // Send dashboard values from a background thread, every key is registered by now
+    telemetry.start(TELEMETRY_PUBLISH_RATE);
+
+    // Run heading hold and odometry on their own threads
+    loop.getHeadingController().start();
+    loop.getPoseEstimator().start();
+  }
+
+  /**
+   * Runs every loop in every mode, after the mode specific periodic function.
+   */
+  @Override
+  public void robotPeriodic()
+  {
+    cameras.update();
   }
 
   /**
@@ -80,6 +107,12 @@ public class Robot extends TimedRobot {
   @Override
   public void disabledInit()
   {
+    captureInputs(InputRecorder.Mode.DISABLED);
+    loop.disabledInit();
+
+    // The logs stay open in case the match resumes, but are written out in case the power is cut
+    recorder.force();
+    inputs.force();
   }
 
   /**
@@ -88,8 +121,9 @@ public class Robot extends TimedRobot {
   @Override
   public void autonomousInit()
   {
-    //gyro.reset();
-    plunger.reset();
+    openMatchLog();
+    cameras.select(CameraManager.FRONT_CAMERA);
+    loop.autonomousInit();
   }
 
   /**
@@ -98,21 +132,8 @@ public class Robot extends TimedRobot {
   @Override
   public void autonomousPeriodic()
   {
-    // Print the gyroscope value to the smartdashboard
-    //SmartDashboard.putNumber("Gyroscope Value", gyro.getOffsetHeading());
-   
-    // Format the joystick axes to be used for teleopDrive
-    joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
-    joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
-    
-    // Use the formatted joystick data to drive the robot
-    driveBase.teleopDrive(joyR, joyL);
-    
-    // Run the pillow according to open and closed buttons
-    pillow.run(rawJoyL.getRawButton(PILLOW_BUTTON_OPEN), rawJoyR.getRawButton(PILLOW_BUTTON_CLOSED));
-
-    // Run the plunger according to piston and suction buttons
-    plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
+    captureInputs(InputRecorder.Mode.AUTONOMOUS);
+    loop.autonomousPeriodic();
   }
 
   /**
@@ -121,6 +142,8 @@ public class Robot extends TimedRobot {
   @Override
   public void teleopInit()
   {
+    openMatchLog();
+    loop.teleopInit();
   }
 
   /**
@@ -129,21 +152,9 @@ public class Robot extends TimedRobot {
   @Override
   public void teleopPeriodic()
   {
-    // Format the joystick axes to be used for teleopDrive
-    joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
-    joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
-    
-    // Use the formatted joystick data to drive the robot
-    driveBase.teleopDrive(joyR, joyL);
-   
-    //use button 2 to move forward
-    driveBase.moveForward(rawJoyR.getRawButton(2));
-
-    // Run the pillow according to open and closed buttons
-    pillow.run(rawJoyL.getRawButton(PILLOW_BUTTON_OPEN), rawJoyR.getRawButton(PILLOW_BUTTON_CLOSED));
-
-    // Run the plunger according to piston and suction buttons
-    plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
+    captureInputs(InputRecorder.Mode.TELEOP);
+    if (joyR.getRawButtonPressed(CAMERA_BUTTON)) cameras.toggle();
+    loop.teleopPeriodic();
   }
 
   /**
@@ -152,12 +163,68 @@ public class Robot extends TimedRobot {
   @Override
   public void testPeriodic()
   {
-    plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
-    // Format the joystick axes to be used for teleopDrive
-    joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
-    joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
-    
-    // Use the formatted joystick data to drive the robot
-    driveBase.teleopDrive(joyR, joyL);
+    captureInputs(InputRecorder.Mode.TEST);
+    loop.testPeriodic();
+  }
+
+  /**
+   * Starts a new flight log and input log when a new match starts. Autonomous and teleop of
+   * the same FMS match share one file; without the FMS every enable gets its
+   * own file. If the code restarts mid-match the match's logs are kept and
+   * the rest of it goes into new numbered files. Practice logs are numbered
+   * the same way rather than by the clock, which the roboRIO doesn't keep
+   * across a reboot, and only the newest MAX_PRACTICE_LOGS are kept.
+   */
+  private void openMatchLog()
+  {
+    DriverStation ds = DriverStation.getInstance();
+    boolean fms = ds.isFMSAttached();
+    String name;
+    if (fms) {
+      name = ds.getEventName() + "_" + ds.getMatchType() + "_" + ds.getMatchNumber() + "_" + ds.getReplayNumber();
+    }
+    else name = PRACTICE_LOG_NAME;
+
+    if (!fms || !name.equals(logName) || !recorder.isOpen()) {
+      logName = name;
+      File directory = new File(FLIGHT_LOG_DIRECTORY);
+      if (!fms) deleteOldPracticeLogs(directory);
+
+      // Both logs get the same number even if only one of them was left behind
+      name = MappedLogFile.unusedName(directory, name, FlightRecorder.EXTENSION, InputRecorder.EXTENSION);
+      recorder.open(name);
+      inputs.open(name);
+    }
+  }
+
+  /**
+   * Deletes the oldest practice logs, leaving room for the one about to be
+   * opened within MAX_PRACTICE_LOGS.
+   */
+  private void deleteOldPracticeLogs(File directory)
+  {
+    int last = MappedLogFile.lastNumber(directory, PRACTICE_LOG_NAME, FlightRecorder.EXTENSION,
+        InputRecorder.EXTENSION);
+    File[] files = directory.listFiles();
+    if (files == null) return;
+
+    for (File file : files) {
+      int number = MappedLogFile.logNumber(file.getName(), PRACTICE_LOG_NAME, FlightRecorder.EXTENSION,
+          InputRecorder.EXTENSION);
+      if (number > 0 && number <= last + 1 - MAX_PRACTICE_LOGS && !file.delete()) {
+        System.out.println("Unable to delete old practice log " + file.getName() + " in Robot.java");
+      }
+    }
+  }
+
+  /**
+   * Takes this cycle's joystick snapshot and records it for replay. Runs
+   * before anything reads the joysticks.
+   */
+  private void captureInputs(InputRecorder.Mode mode)
+  {
+    joyR.capture();
+    joyL.capture();
+    inputs.record(mode);
   }
 }
\ No newline at end of file
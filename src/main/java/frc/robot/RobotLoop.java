@@ -0,0 +1,407 @@
+package frc.robot;
+
+/** Methods:
+ * public RobotLoop(DriveBase driveBase, Gyroscope gyro, Pillow pillow, Plunger plunger, PowerManager power,
+ *         JoystickInput rawJoyR, JoystickInput rawJoyL, FlightRecorder recorder, Clock clock, Telemetry telemetry)
+ * public void setAutoTrajectory(Trajectory trajectory)
+ * public void autonomousInit()
+ * public void teleopInit()
+ * public void disabledInit()
+ * public void autonomousPeriodic()
+ * public void teleopPeriodic()
+ * public void testPeriodic()
+ * public DriveBase getDriveBase()
+ * public Gyroscope getGyro()
+ * public Pillow getPillow()
+ * public Plunger getPlunger()
+ * public FlightRecorder getRecorder()
+ * public LoopProbe getLoopProbe()
+ * public HeadingController getHeadingController()
+ * public PoseEstimator getPoseEstimator()
+ * public TrajectoryFollower getTrajectoryFollower()
+ * public PowerManager getPowerManager()
+ * private void budgetPower()
+ * private void driveAutonomous()
+ * private void resumeHeadingHold()
+ * private void endCycle()
+ * private void recordCycle()
+ */
+
+/**
+ * The periodic control code of the robot, separated from Robot so it doesn't
+ * depend on TimedRobot. Robot builds this from the real devices and calls it
+ * every period; benchmarks and regression runs build it from FakeDevices and
+ * call it directly on a desktop JVM.
+ */
+public class RobotLoop {
+    // Object Declaration
+    private DriveBase driveBase;
+    private Gyroscope gyro;
+    private JoystickInput rawJoyR, rawJoyL;
+    private Plunger plunger;
+    private Pillow pillow;
+    private FlightRecorder recorder;
+    private HeadingController heading;
+    private PoseEstimator pose;
+    private TrajectoryFollower follower;
+    private Trajectory autoTrajectory;
+    private PowerManager power;
+
+    // Timing probes around each subsystem and the whole cycle
+    private LoopProbe driveProbe, pillowProbe, plungerProbe, loopProbe;
+
+    // Variable Declaration
+    private double[] joyR = { 0, 0, 0 }, joyL = { 0, 0, 0 };
+    private static final int SUCTION_BUTTON = 6;
+    private static final int PISTON_BUTTON = 5;
+    private static final int PILLOW_BUTTON_OPEN = 4;
+    private static final int PILLOW_BUTTON_CLOSED = 3;
+    private static final int FORWARD_BUTTON = 2;
+    private static final int PROFILE_BUTTON = 7;
+
+    // Stick movement that takes over from an autonomous trajectory
+    private static final double OVERRIDE_DEADZONE = 0.2;
+
+    // TimedRobot period, which a cycle overruns if it takes longer (seconds)
+    private static final double LOOP_PERIOD = 0.02;
+
+    /**
+     * Constructs a new RobotLoop from already constructed subsystems.
+     */
+    public RobotLoop(DriveBase driveBase, Gyroscope gyro, Pillow pillow, Plunger plunger, PowerManager power,
+            JoystickInput rawJoyR, JoystickInput rawJoyL, FlightRecorder recorder, Clock clock, Telemetry telemetry)
+    {
+        this.driveBase = driveBase;
+        this.gyro = gyro;
+        this.pillow = pillow;
+        this.plunger = plunger;
+        this.power = power;
+        this.rawJoyR = rawJoyR;
+        this.rawJoyL = rawJoyL;
+        this.recorder = recorder;
+
+        driveProbe = new LoopProbe("Drive", LOOP_PERIOD, telemetry);
+        pillowProbe = new LoopProbe("Pillow", LOOP_PERIOD, telemetry);
+        plungerProbe = new LoopProbe("Plunger", LOOP_PERIOD, telemetry);
+        loopProbe = new LoopProbe("Loop", LOOP_PERIOD, telemetry);
+
+        // Not started here, so desktop runs can step it themselves
+        heading = new HeadingController(driveBase, gyro, clock, telemetry);
+        pose = new PoseEstimator(driveBase, gyro, clock, telemetry);
+        follower = new TrajectoryFollower(driveBase, pose, clock, telemetry);
+    }
+
+    /**
+     * Selects the trajectory driven at the start of autonomous.
+     * @param trajectory The trajectory, or null to drive by hand.
+     */
+    public void setAutoTrajectory(Trajectory trajectory)
+    {
+        autoTrajectory = trajectory;
+    }
+
+    /**
+     * Runs during autonomous mode initialization.
+     */
+    public void autonomousInit()
+    {
+        //gyro.reset();
+        plunger.reset();
+
+        // The follower steers the heading itself while it runs
+        if (autoTrajectory != null) {
+            heading.setEnabled(false);
+            follower.start(autoTrajectory);
+        }
+        else resumeHeadingHold();
+    }
+
+    /**
+     * Runs during teleop mode initialization.
+     */
+    public void teleopInit()
+    {
+        if (follower.isFollowing()) follower.stop();
+        resumeHeadingHold();
+    }
+
+    /**
+     * Runs when the robot becomes disabled.
+     */
+    public void disabledInit()
+    {
+        if (follower.isFollowing()) follower.stop();
+        heading.setEnabled(false);
+
+        // Clear the last outputs so they aren't sent again before the next mode sets its own
+        driveBase.setLeft(0);
+        driveBase.setRight(0);
+        driveBase.setCenter(0);
+    }
+
+    /**
+     * Runs every period during autonomous.
+     */
+    public void autonomousPeriodic()
+    {
+        loopProbe.start();
+        budgetPower();
+
+        // Print the gyroscope value to the smartdashboard
+        //SmartDashboard.putNumber("Gyroscope Value", gyro.getOffsetHeading());
+
+        // Format the joystick axes to be used for teleopDrive
+        joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
+        joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
+
+        // Follow the trajectory, or use the formatted joystick data to drive the robot
+        driveProbe.start();
+        driveAutonomous();
+        driveProbe.stop();
+
+        // Run the pillow according to open and closed buttons
+        pillowProbe.start();
+        pillow.run(rawJoyL.getRawButton(PILLOW_BUTTON_OPEN), rawJoyR.getRawButton(PILLOW_BUTTON_CLOSED));
+        pillowProbe.stop();
+
+        // Run the plunger according to piston and suction buttons
+        plungerProbe.start();
+        plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
+        plungerProbe.stop();
+
+        endCycle();
+    }
+
+    /**
+     * Runs every period during operator control.
+     */
+    public void teleopPeriodic()
+    {
+        loopProbe.start();
+        budgetPower();
+
+        // Format the joystick axes to be used for teleopDrive
+        joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
+        joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
+
+        // Use the formatted joystick data to drive the robot
+        driveProbe.start();
+        driveBase.teleopDrive(joyR, joyL);
+
+        //use button 2 to move forward
+        driveBase.moveForward(rawJoyR.getRawButton(FORWARD_BUTTON));
+
+        // Switch joystick response curves with button 7
+        if (rawJoyR.getRawButtonPressed(PROFILE_BUTTON)) driveBase.nextProfile();
+        driveProbe.stop();
+
+        // Run the pillow according to open and closed buttons
+        pillowProbe.start();
+        pillow.run(rawJoyL.getRawButton(PILLOW_BUTTON_OPEN), rawJoyR.getRawButton(PILLOW_BUTTON_CLOSED));
+        pillowProbe.stop();
+
+        // Run the plunger according to piston and suction buttons
+        plungerProbe.start();
+        plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
+        plungerProbe.stop();
+
+        endCycle();
+    }
+
+    /**
+     * Runs every period during test mode.
+     */
+    public void testPeriodic()
+    {
+        loopProbe.start();
+        budgetPower();
+
+        plungerProbe.start();
+        plunger.run(rawJoyL.getRawButtonPressed(PISTON_BUTTON), rawJoyR.getRawButtonPressed(SUCTION_BUTTON));
+        plungerProbe.stop();
+        // Format the joystick axes to be used for teleopDrive
+        joyR = driveBase.formatDriveJoystick(rawJoyR.getRawAxis(0), rawJoyR.getRawAxis(1));
+        joyL = driveBase.formatDriveJoystick(rawJoyL.getRawAxis(0), -rawJoyL.getRawAxis(1));
+
+        // Use the formatted joystick data to drive the robot
+        driveProbe.start();
+        driveBase.teleopDrive(joyR, joyL);
+        driveProbe.stop();
+
+        endCycle();
+    }
+
+    /**
+     * Accessor method for the drive base.
+     * @return The DriveBase run by this loop.
+     */
+    public DriveBase getDriveBase()
+    {
+        return driveBase;
+    }
+
+    /**
+     * Accessor method for the gyroscope.
+     * @return The Gyroscope used by this loop.
+     */
+    public Gyroscope getGyro()
+    {
+        return gyro;
+    }
+
+    /**
+     * Accessor method for the pillow.
+     * @return The Pillow run by this loop.
+     */
+    public Pillow getPillow()
+    {
+        return pillow;
+    }
+
+    /**
+     * Accessor method for the plunger.
+     * @return The Plunger run by this loop.
+     */
+    public Plunger getPlunger()
+    {
+        return plunger;
+    }
+
+    /**
+     * Accessor method for the flight recorder.
+     * @return The FlightRecorder every cycle is logged to.
+     */
+    public FlightRecorder getRecorder()
+    {
+        return recorder;
+    }
+
+    /**
+     * Accessor method for the probe timing each whole cycle.
+     * @return The loop LoopProbe.
+     */
+    public LoopProbe getLoopProbe()
+    {
+        return loopProbe;
+    }
+
+    /**
+     * Accessor method for the trajectory follower.
+     * @return The TrajectoryFollower used in autonomous.
+     */
+    public TrajectoryFollower getTrajectoryFollower()
+    {
+        return follower;
+    }
+
+    /**
+     * Accessor method for the heading controller.
+     * @return The HeadingController correcting the drive base.
+     */
+    public HeadingController getHeadingController()
+    {
+        return heading;
+    }
+
+    /**
+     * Accessor method for the field position estimator.
+     * @return The PoseEstimator tracking the robot on the field.
+     */
+    public PoseEstimator getPoseEstimator()
+    {
+        return pose;
+    }
+
+    /**
+     * Accessor method for the power manager.
+     * @return The PowerManager budgeting the battery.
+     */
+    public PowerManager getPowerManager()
+    {
+        return power;
+    }
+
+    /**
+     * Samples the battery and applies this cycle's load shedding to the subsystems.
+     */
+    private void budgetPower()
+    {
+        power.update();
+        driveBase.setOutputScale(power.getDriveScale());
+        plunger.setCompressorAllowed(power.isAllowed(PowerManager.Load.COMPRESSOR));
+        plunger.getCompressorScheduler().setDriveLoad(power.getTotalCurrent(), driveBase.getDriveDemand());
+        pillow.setMotorAllowed(power.isAllowed(PowerManager.Load.PILLOW));
+    }
+
+    /**
+     * Logs the cycle and stops the loop probe. If the cycle overran, the
+     * slowest subsystem is charged with the overrun, unless it already counted
+     * one against its own budget.
+     */
+    private void endCycle()
+    {
+        recordCycle();
+
+        if (loopProbe.stop() > LOOP_PERIOD * 1e6)
+        {
+            LoopProbe slowest = driveProbe;
+            if (pillowProbe.getLast() > slowest.getLast()) slowest = pillowProbe;
+            if (plungerProbe.getLast() > slowest.getLast()) slowest = plungerProbe;
+            if (slowest.getLast() <= LOOP_PERIOD * 1e6) slowest.countOverrun();
+        }
+    }
+
+    /**
+     * Drives the autonomous trajectory until it finishes or a driver moves a
+     * stick, then hands the drive back to the joysticks.
+     */
+    private void driveAutonomous()
+    {
+        if (follower.isFollowing()) {
+            boolean sticksMoved = Math.abs(joyR[0]) > OVERRIDE_DEADZONE || Math.abs(joyR[1]) > OVERRIDE_DEADZONE
+                    || Math.abs(joyL[0]) > OVERRIDE_DEADZONE || Math.abs(joyL[1]) > OVERRIDE_DEADZONE;
+            if (sticksMoved) follower.stop();
+            else if (follower.update()) return;
+            resumeHeadingHold();
+        }
+        driveBase.teleopDrive(joyR, joyL);
+    }
+
+    /**
+     * Holds the current heading with the heading controller.
+     */
+    private void resumeHeadingHold()
+    {
+        heading.hold();
+        heading.setEnabled(true);
+    }
+
+    /**
+     * Fills in this cycle's flight record from the inputs and every subsystem,
+     * then commits it.
+     */
+    private void recordCycle()
+    {
+        if (!recorder.isOpen()) return;
+
+        FlightRecord record = recorder.getRecord();
+        record.set(FlightRecord.Field.JOY_R_X, joyR[0]);
+        record.set(FlightRecord.Field.JOY_R_Y, joyR[1]);
+        record.set(FlightRecord.Field.JOY_L_X, joyL[0]);
+        record.set(FlightRecord.Field.JOY_L_Y, joyL[1]);
+        driveBase.log(record);
+        pillow.log(record);
+        plunger.log(record);
+        gyro.log(record);
+        pose.log(record);
+        follower.log(record);
+        record.set(FlightRecord.Field.HEADING_CORRECTION, heading.getCorrection());
+        power.log(record);
+        record.set(FlightRecord.Field.DRIVE_TIME, driveProbe.getLast());
+        record.set(FlightRecord.Field.PILLOW_TIME, pillowProbe.getLast());
+        record.set(FlightRecord.Field.PLUNGER_TIME, plungerProbe.getLast());
+        record.set(FlightRecord.Field.LOOP_TIME, loopProbe.getLast());
+        record.set(FlightRecord.Field.LOOP_OVERRUNS, loopProbe.getOverruns());
+        recorder.commit();
+    }
+}
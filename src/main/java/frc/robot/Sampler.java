@@ -0,0 +1,177 @@
+package frc.robot;
+
+// Imports for the Sampler class
+import edu.wpi.first.wpilibj.Notifier;
+
+/** Methods:
+ * public Sampler(Runnable task, double rate, Clock clock)
+ * public void start()
+ * public void stop()
+ * public void close()
+ * public void setRate(double rate)
+ * public double getRate()
+ * public boolean isRunning()
+ * public long getTickCount()
+ * public Histogram getLatency()
+ * public Histogram getJitter()
+ */
+
+/**
+ * Runs a task at a fixed rate on its own thread using a WPILib Notifier, which
+ * is scheduled off the FPGA clock instead of the JVM's wall clock. Each tick
+ * records how long the task took (latency) and how far the tick started from
+ * its ideal period (jitter), both in microseconds of the given clock.
+ */
+public class Sampler {
+    // Histogram layout: 50 us buckets up to 10 ms
+    private static final int HISTOGRAM_BUCKETS = 200;
+    private static final long HISTOGRAM_BUCKET_WIDTH = 50;
+
+    private final Notifier notifier;
+    private final Runnable task;
+    private final Clock clock;
+    private final Histogram latency = new Histogram(HISTOGRAM_BUCKETS, HISTOGRAM_BUCKET_WIDTH);
+    private final Histogram jitter = new Histogram(HISTOGRAM_BUCKETS, HISTOGRAM_BUCKET_WIDTH);
+
+    private volatile double rate;
+    private volatile long periodMicros;
+    private volatile boolean running = false;
+    private volatile long tickCount = 0;
+    private long lastStart = 0;
+
+    /**
+     * Constructs a new sampler. The task doesn't run until start() is called.
+     * @param task The work to run every tick.
+     * @param rate The tick rate in Hz.
+     * @param clock Time source for the latency and jitter histograms.
+     */
+    public Sampler(Runnable task, double rate, Clock clock)
+    {
+        if (task == null)
+        {
+            throw new NullPointerException("Sampler task null");
+        }
+        this.task = task;
+        this.clock = clock;
+        setPeriod(rate);
+        notifier = new Notifier(this::tick);
+    }
+
+    /**
+     * Starts running the task at the configured rate.
+     */
+    public synchronized void start()
+    {
+        lastStart = 0;
+        running = true;
+        notifier.startPeriodic(1.0 / rate);
+    }
+
+    /**
+     * Stops running the task. A tick that is already running finishes, but no
+     * new ticks start after this returns.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        notifier.stop();
+    }
+
+    /**
+     * Stops the sampler and frees the notifier. The sampler can't be restarted.
+     */
+    public synchronized void close()
+    {
+        stop();
+        notifier.close();
+    }
+
+    /**
+     * Changes the tick rate, restarting the sampler if it is running.
+     * @param rate The new rate in Hz.
+     */
+    public synchronized void setRate(double rate)
+    {
+        setPeriod(rate);
+        if (running)
+        {
+            stop();
+            start();
+        }
+    }
+
+    /**
+     * Accessor method for the tick rate.
+     * @return The rate in Hz.
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Accessor method for the running state.
+     * @return If the sampler is currently scheduled.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Accessor method for the number of ticks run.
+     * @return The tick count since construction.
+     */
+    public long getTickCount()
+    {
+        return tickCount;
+    }
+
+    /**
+     * Accessor method for the task run time histogram.
+     * @return Microseconds from the start to the end of each tick.
+     */
+    public Histogram getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Accessor method for the tick jitter histogram.
+     * @return Microseconds between each tick's actual and ideal period.
+     */
+    public Histogram getJitter()
+    {
+        return jitter;
+    }
+
+    private void setPeriod(double rate)
+    {
+        if (rate <= 0)
+        {
+            throw new IllegalArgumentException("Sampler rate must be positive");
+        }
+        this.rate = rate;
+        periodMicros = Math.round(1e6 / rate);
+    }
+
+    /**
+     * Called by the notifier thread every period.
+     */
+    private void tick()
+    {
+        if (!running) return;
+
+        long start = clock.getMicros();
+        if (lastStart != 0)
+        {
+            jitter.record(Math.abs(start - lastStart - periodMicros));
+        }
+        lastStart = start;
+
+        task.run();
+
+        latency.record(clock.getMicros() - start);
+        tickCount++;
+    }
+}
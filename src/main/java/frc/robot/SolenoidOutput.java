@@ -0,0 +1,18 @@
+package frc.robot;
+
+/**
+ * A single acting solenoid valve.
+ */
+public interface SolenoidOutput {
+    /**
+     * Opens or closes the valve.
+     * @param on
+     */
+    void set(boolean on);
+
+    /**
+     * Accessor method for the commanded valve state.
+     * @return If the valve is on.
+     */
+    boolean get();
+}
@@ -0,0 +1,286 @@
+package frc.robot;
+
+// Imports for the Telemetry class
+import java.util.function.DoubleSupplier;
+
+/** Methods:
+ * public Telemetry(Dashboard dashboard, Clock clock)
+ * public int register(String name, double rate)
+ * public int registerBoolean(String name, double rate)
+ * public int registerEnum(String name, double rate, Enum<?>[] values)
+ * public int registerPolled(String name, double rate, DoubleSupplier source)
+ * public void put(int key, double value)
+ * public void putBoolean(int key, boolean value)
+ * public void putEnum(int key, Enum<?> value)
+ * public void publish()
+ * public void start(double rate)
+ * public void stop()
+ * public long getDroppedSamples()
+ * public Sampler getPublisher()
+ */
+
+/**
+ * Sends values to the dashboard from a background thread so the control loop
+ * never waits on NetworkTables. The control thread drops primitive samples
+ * into a preallocated ring buffer with put(); the publisher drains it, keeps
+ * the latest value of each key, and sends a key only when its value changed
+ * and its own publish period has passed.
+ *
+ * Keys are registered once at startup (before start() is called) and are
+ * referred to by the int handle register() returns. Polled keys read their
+ * source on the publisher thread, which keeps slow reads like talon currents
+ * out of the control loop entirely.
+ */
+public class Telemetry {
+    // Sizes of the preallocated tables. The ring must be a power of two.
+    private static final int MAX_KEYS = 64;
+    private static final int RING_SIZE = 1024;
+
+    // Key kinds
+    private static final int NUMBER = 0;
+    private static final int BOOLEAN = 1;
+    private static final int ENUM = 2;
+
+    private final Dashboard dashboard;
+    private final Clock clock;
+
+    // Key table, filled in by the register methods
+    private final String[] names = new String[MAX_KEYS];
+    private final int[] kinds = new int[MAX_KEYS];
+    private final long[] periods = new long[MAX_KEYS];
+    private final Enum<?>[][] enumValues = new Enum<?>[MAX_KEYS][];
+    private final DoubleSupplier[] sources = new DoubleSupplier[MAX_KEYS];
+    private int keyCount = 0;
+
+    // Single producer, single consumer ring buffer of (key, value) samples
+    private final int[] ringKeys = new int[RING_SIZE];
+    private final double[] ringValues = new double[RING_SIZE];
+    private volatile long head = 0;
+    private volatile long tail = 0;
+    private volatile long dropped = 0;
+
+    // Publisher state, only touched by the publisher thread
+    private final double[] latest = new double[MAX_KEYS];
+    private final boolean[] pending = new boolean[MAX_KEYS];
+    private final double[] published = new double[MAX_KEYS];
+    private final boolean[] everPublished = new boolean[MAX_KEYS];
+    private final long[] nextPublish = new long[MAX_KEYS];
+
+    private Sampler publisher;
+
+    /**
+     * Constructs a new Telemetry object.
+     * @param dashboard Where values are published.
+     * @param clock Time source for the per-key publish periods.
+     */
+    public Telemetry(Dashboard dashboard, Clock clock)
+    {
+        this.dashboard = dashboard;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a number key.
+     * @param name Dashboard key.
+     * @param rate Maximum publish rate in Hz.
+     * @return The handle to put() values with.
+     */
+    public int register(String name, double rate)
+    {
+        return addKey(name, rate, NUMBER, null, null);
+    }
+
+    /**
+     * Registers a boolean key.
+     * @param name Dashboard key.
+     * @param rate Maximum publish rate in Hz.
+     * @return The handle to putBoolean() values with.
+     */
+    public int registerBoolean(String name, double rate)
+    {
+        return addKey(name, rate, BOOLEAN, null, null);
+    }
+
+    /**
+     * Registers a key that shows the name of an enum constant.
+     * @param name Dashboard key.
+     * @param rate Maximum publish rate in Hz.
+     * @param values The constants of the enum, from values().
+     * @return The handle to putEnum() values with.
+     */
+    public int registerEnum(String name, double rate, Enum<?>[] values)
+    {
+        return addKey(name, rate, ENUM, values, null);
+    }
+
+    /**
+     * Registers a number key that is read on the publisher thread.
+     * @param name Dashboard key.
+     * @param rate Rate in Hz the source is read and published at.
+     * @param source Supplies the value.
+     * @return The handle of the key.
+     */
+    public int registerPolled(String name, double rate, DoubleSupplier source)
+    {
+        return addKey(name, rate, NUMBER, null, source);
+    }
+
+    private int addKey(String name, double rate, int kind, Enum<?>[] values, DoubleSupplier source)
+    {
+        if (keyCount == MAX_KEYS)
+        {
+            throw new IllegalStateException("Too many telemetry keys, raise MAX_KEYS in Telemetry.java");
+        }
+        if (rate <= 0)
+        {
+            throw new IllegalArgumentException("Telemetry rate must be positive for " + name);
+        }
+
+        int key = keyCount;
+        names[key] = name;
+        kinds[key] = kind;
+        periods[key] = Math.round(1e6 / rate);
+        enumValues[key] = values;
+        sources[key] = source;
+        keyCount++;
+        return key;
+    }
+
+    /**
+     * Queues a number sample. Never blocks; if the publisher has fallen a full
+     * ring behind the sample is dropped and counted.
+     * @param key Handle from register().
+     * @param value
+     */
+    public void put(int key, double value)
+    {
+        long h = head;
+        if (h - tail >= RING_SIZE)
+        {
+            dropped++;
+            return;
+        }
+
+        int index = (int) (h & (RING_SIZE - 1));
+        ringKeys[index] = key;
+        ringValues[index] = value;
+
+        // The volatile write makes the sample visible to the publisher
+        head = h + 1;
+    }
+
+    /**
+     * Queues a boolean sample.
+     * @param key Handle from registerBoolean().
+     * @param value
+     */
+    public void putBoolean(int key, boolean value)
+    {
+        put(key, value ? 1 : 0);
+    }
+
+    /**
+     * Queues an enum sample.
+     * @param key Handle from registerEnum().
+     * @param value
+     */
+    public void putEnum(int key, Enum<?> value)
+    {
+        put(key, value.ordinal());
+    }
+
+    /**
+     * Drains queued samples, reads polled sources that are due, and publishes
+     * every changed key whose period has passed. Called on the publisher
+     * thread once started, or directly when running off the robot.
+     */
+    public void publish()
+    {
+        long now = clock.getMicros();
+
+        // Keep only the latest value of every key
+        long t = tail;
+        long h = head;
+        while (t < h)
+        {
+            int index = (int) (t & (RING_SIZE - 1));
+            int key = ringKeys[index];
+            latest[key] = ringValues[index];
+            pending[key] = true;
+            t++;
+        }
+        tail = t;
+
+        for (int key = 0; key < keyCount; key++)
+        {
+            if (now < nextPublish[key]) continue;
+
+            if (sources[key] != null)
+            {
+                latest[key] = sources[key].getAsDouble();
+                pending[key] = true;
+            }
+            if (!pending[key]) continue;
+
+            pending[key] = false;
+            nextPublish[key] = now + periods[key];
+            double value = latest[key];
+            if (everPublished[key] && value == published[key]) continue;
+
+            switch (kinds[key])
+            {
+            case BOOLEAN:
+                dashboard.putBoolean(names[key], value != 0);
+                break;
+            case ENUM:
+                dashboard.putString(names[key], enumValues[key][(int) value].toString());
+                break;
+            default:
+                dashboard.putNumber(names[key], value);
+                break;
+            }
+            published[key] = value;
+            everPublished[key] = true;
+        }
+    }
+
+    /**
+     * Starts publishing on a background thread.
+     * @param rate How often the publisher runs in Hz.
+     */
+    public synchronized void start(double rate)
+    {
+        if (publisher == null)
+        {
+            publisher = new Sampler(this::publish, rate, clock);
+        }
+        else publisher.setRate(rate);
+        publisher.start();
+    }
+
+    /**
+     * Stops the background publisher.
+     */
+    public synchronized void stop()
+    {
+        if (publisher != null) publisher.stop();
+    }
+
+    /**
+     * Accessor method for the number of samples dropped because the ring was full.
+     * @return The dropped sample count.
+     */
+    public long getDroppedSamples()
+    {
+        return dropped;
+    }
+
+    /**
+     * Accessor method for the publisher thread, for its timing histograms.
+     * @return The sampler running publish(), or null if it was never started.
+     */
+    public Sampler getPublisher()
+    {
+        return publisher;
+    }
+}
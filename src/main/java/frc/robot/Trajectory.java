@@ -0,0 +1,202 @@
+package frc.robot;
+
+// Imports for the Trajectory class
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/** Methods:
+ * public static Trajectory open(File file)
+ * public String getName()
+ * public int getPointCount()
+ * public double getPeriod()
+ * public double getDuration()
+ * public void sample(double time, TrajectoryPoint out)
+ * private double lerp(int a, int b, int field, double t)
+ * public static void writeHeader(ByteBuffer buffer, int pointCount, double period)
+ * public static void writePoint(ByteBuffer buffer, double x, double y, double heading,
+ *         double velocityX, double velocityY, double headingRate)
+ */
+
+/**
+ * A precomputed autonomous path, memory-mapped from a file generated on the
+ * desktop by TrajectoryGenerator. Points are stored at a fixed period, so a
+ * lookup is an index calculation and a linear interpolation between two
+ * points, with no search and no allocation.
+ *
+ * File layout, little endian: a 16 byte header (magic, version, point count,
+ * period as a float) followed by one 24 byte point per period. Each point is
+ * six floats: x, y, heading, x velocity, y velocity and heading rate.
+ */
+public class Trajectory {
+    // File identification
+    public static final int MAGIC = 0x5452414A; // "TRAJ"
+    public static final int VERSION = 1;
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final String EXTENSION = ".traj";
+
+    // Layout sizes in bytes
+    public static final int HEADER_SIZE = 16;
+    public static final int POINT_SIZE = 24;
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int pointCount;
+    private final double period;
+
+    /**
+     * Constructs a Trajectory over an already mapped file.
+     * @param name
+     * @param buffer
+     * @throws IOException If the header is wrong or the file is cut short.
+     */
+    private Trajectory(String name, ByteBuffer buffer) throws IOException
+    {
+        this.name = name;
+        this.buffer = buffer.order(ORDER);
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a trajectory file");
+        }
+        if (buffer.getInt(4) != VERSION)
+        {
+            throw new IOException("Trajectory version " + buffer.getInt(4) + " doesn't match this build's version "
+                    + VERSION);
+        }
+        pointCount = buffer.getInt(8);
+        period = buffer.getFloat(12);
+        if (pointCount < 1 || period <= 0 || buffer.limit() < HEADER_SIZE + (long) pointCount * POINT_SIZE)
+        {
+            throw new IOException("Trajectory file is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Maps a trajectory file. Only the header is read; the points are paged
+     * in by the OS as they are used.
+     * @param file
+     * @return The trajectory, or null if it couldn't be opened.
+     */
+    public static Trajectory open(File file)
+    {
+        String name = file.getName();
+        if (name.endsWith(EXTENSION)) name = name.substring(0, name.length() - EXTENSION.length());
+
+        // The mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new Trajectory(name, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        catch (IOException e) {
+            System.out.println("Unable to open trajectory " + file + " in Trajectory.java: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Accessor method for the trajectory name.
+     * @return The file name without extension.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Accessor method for the number of stored points.
+     * @return
+     */
+    public int getPointCount()
+    {
+        return pointCount;
+    }
+
+    /**
+     * Accessor method for the time between stored points.
+     * @return The period in seconds.
+     */
+    public double getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * Calculates how long the trajectory takes to follow.
+     * @return The duration in seconds.
+     */
+    public double getDuration()
+    {
+        return (pointCount - 1) * period;
+    }
+
+    /**
+     * Fills in where the robot should be at a time, interpolating between the
+     * two stored points around it. Times past either end get the end point.
+     * @param time Seconds since the start of the trajectory.
+     * @param out
+     */
+    public void sample(double time, TrajectoryPoint out)
+    {
+        double position = Math.max(0, Math.min(time, getDuration())) / period;
+        int index = Math.min((int) position, pointCount - 1);
+        int next = Math.min(index + 1, pointCount - 1);
+        double t = position - index;
+
+        int a = HEADER_SIZE + index * POINT_SIZE;
+        int b = HEADER_SIZE + next * POINT_SIZE;
+        out.time = Math.max(0, Math.min(time, getDuration()));
+        out.x = lerp(a, b, 0, t);
+        out.y = lerp(a, b, 4, t);
+        out.heading = lerp(a, b, 8, t);
+        out.velocityX = lerp(a, b, 12, t);
+        out.velocityY = lerp(a, b, 16, t);
+        out.headingRate = lerp(a, b, 20, t);
+    }
+
+    /**
+     * Interpolates one float field between two points.
+     */
+    private double lerp(int a, int b, int field, double t)
+    {
+        double from = buffer.getFloat(a + field);
+        return from + (buffer.getFloat(b + field) - from) * t;
+    }
+
+    /**
+     * Writes the file header.
+     * @param buffer Buffer in ORDER with room for the header.
+     * @param pointCount
+     * @param period Seconds between points.
+     */
+    public static void writeHeader(ByteBuffer buffer, int pointCount, double period)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(pointCount);
+        buffer.putFloat((float) period);
+    }
+
+    /**
+     * Writes one point after the header or the previous point.
+     * @param buffer Buffer in ORDER with room for the point.
+     * @param x Meters.
+     * @param y Meters, right positive.
+     * @param heading Continuous degrees, clockwise positive.
+     * @param velocityX Meters per second.
+     * @param velocityY Meters per second.
+     * @param headingRate Degrees per second.
+     */
+    public static void writePoint(ByteBuffer buffer, double x, double y, double heading,
+            double velocityX, double velocityY, double headingRate)
+    {
+        buffer.putFloat((float) x);
+        buffer.putFloat((float) y);
+        buffer.putFloat((float) heading);
+        buffer.putFloat((float) velocityX);
+        buffer.putFloat((float) velocityY);
+        buffer.putFloat((float) headingRate);
+    }
+}
@@ -0,0 +1,291 @@
+package frc.robot;
+
+/** Methods:
+ * public TrajectoryFollower(DriveBase driveBase, PoseEstimator pose, Clock clock, Telemetry telemetry)
+ * public void start(Trajectory trajectory)
+ * public void stop()
+ * public boolean isFollowing()
+ * public boolean update()
+ * public int getStepCount()
+ * public double getStepTime(int step)
+ * public double getForwardError(int step)
+ * public double getLateralError(int step)
+ * public double getHeadingError(int step)
+ * public void log(FlightRecord record)
+ * private void drive(double forward, double strafe, double turn)
+ * private static double feedforward(double velocity, double kV, double kS)
+ */
+
+/**
+ * Drives the H-drive along a precomputed Trajectory in autonomous. Each step
+ * samples where the trajectory wants the robot now and compares it with the
+ * PoseEstimator. The trajectory's velocities are turned straight into motor
+ * outputs (feedforward), and proportional feedback on the position and
+ * heading errors pulls the robot back onto the path. The field velocity is
+ * rotated into the robot frame, so the side wheels take the forward part,
+ * the center wheel the sideways part, and the heading goes to the difference
+ * between the sides.
+ *
+ * The forward, lateral and heading errors of every step are kept in
+ * preallocated arrays for tuning, and the latest are sent to the flight log.
+ * A step doesn't allocate.
+ */
+public class TrajectoryFollower {
+    // Motor output per unit of speed, from the free speed of each axis
+    // at full output (3.5 m/s forward, 2 m/s sideways, 360 deg/s turning)
+    private static final double KV_FORWARD = 1 / 3.5;
+    private static final double KV_STRAFE = 1 / 2.0;
+    private static final double KV_TURN = 1 / 360.0;
+
+    // Output needed to overcome friction once an axis is moving
+    private static final double KS_FORWARD = 0.04;
+    private static final double KS_STRAFE = 0.06;
+
+    // Speeds below this get no friction output, so the robot doesn't buzz at rest (m/s)
+    private static final double KS_MIN_VELOCITY = 0.02;
+
+    // Feedback gains: m/s per meter of error, deg/s per degree of error
+    private static final double KP_POSITION = 2;
+    private static final double KP_HEADING = 3;
+
+    // The trajectory is done once the robot is this close to its end
+    private static final double POSITION_TOLERANCE = 0.05;
+    private static final double HEADING_TOLERANCE = 3;
+
+    // Longest the follower waits at the end for the robot to settle (seconds)
+    private static final double SETTLE_TIMEOUT = 0.5;
+
+    // Steps of error history kept, the whole 15 s Sandstorm at 50 Hz
+    private static final int MAX_STEPS = 750;
+
+    // Rate the tracking error is sent to the dashboard (Hz)
+    private static final double TELEMETRY_RATE = 10;
+
+    private final DriveBase driveBase;
+    private final PoseEstimator pose;
+    private final Clock clock;
+
+    // Reused every step
+    private final Pose current = new Pose();
+    private final TrajectoryPoint target = new TrajectoryPoint();
+
+    private Trajectory trajectory;
+    private boolean following = false;
+    private boolean started = false;
+    private double startTime;
+
+    // Error of each step, in the robot frame
+    private final double[] stepTimes = new double[MAX_STEPS];
+    private final double[] forwardErrors = new double[MAX_STEPS];
+    private final double[] lateralErrors = new double[MAX_STEPS];
+    private final double[] headingErrors = new double[MAX_STEPS];
+    private int steps = 0;
+    private volatile double forwardError, lateralError, headingError;
+
+    /**
+     * Constructs a new TrajectoryFollower. It drives nothing until start() is called.
+     * @param driveBase
+     * @param pose
+     * @param clock
+     * @param telemetry
+     */
+    public TrajectoryFollower(DriveBase driveBase, PoseEstimator pose, Clock clock, Telemetry telemetry)
+    {
+        this.driveBase = driveBase;
+        this.pose = pose;
+        this.clock = clock;
+
+        telemetry.registerPolled("Trajectory Forward Error", TELEMETRY_RATE, () -> forwardError);
+        telemetry.registerPolled("Trajectory Lateral Error", TELEMETRY_RATE, () -> lateralError);
+        telemetry.registerPolled("Trajectory Heading Error", TELEMETRY_RATE, () -> headingError);
+    }
+
+    /**
+     * Starts following a trajectory from the robot's current position, which
+     * becomes the trajectory's first point.
+     * @param trajectory
+     */
+    public void start(Trajectory trajectory)
+    {
+        this.trajectory = trajectory;
+        trajectory.sample(0, target);
+        pose.reset(target.x, target.y, target.heading);
+        following = true;
+        started = false;
+        steps = 0;
+    }
+
+    /**
+     * Stops following and stops the drive.
+     */
+    public void stop()
+    {
+        following = false;
+        drive(0, 0, 0);
+    }
+
+    /**
+     * Accessor method for whether a trajectory is being followed.
+     * @return
+     */
+    public boolean isFollowing()
+    {
+        return following;
+    }
+
+    /**
+     * Runs one step of the follower and sets the drive outputs.
+     * @return true while the trajectory is still being followed.
+     */
+    public boolean update()
+    {
+        if (!following) return false;
+
+        // Hold still until the pose estimator has moved to the start
+        if (!started) {
+            if (pose.isResetPending()) {
+                drive(0, 0, 0);
+                return true;
+            }
+            started = true;
+            startTime = clock.getTimestamp();
+        }
+
+        double time = clock.getTimestamp() - startTime;
+        trajectory.sample(time, target);
+        pose.getPose(current);
+
+        // Field frame errors, then rotated into the robot frame
+        double errorX = target.x - current.x;
+        double errorY = target.y - current.y;
+        double angle = Math.toRadians(current.heading);
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        forwardError = errorX * cos + errorY * sin;
+        lateralError = -errorX * sin + errorY * cos;
+        headingError = target.heading - current.heading;
+
+        if (steps < MAX_STEPS) {
+            stepTimes[steps] = time;
+            forwardErrors[steps] = forwardError;
+            lateralErrors[steps] = lateralError;
+            headingErrors[steps] = headingError;
+            steps++;
+        }
+
+        // Finished once past the end and settled, or out of time to settle
+        if (time >= trajectory.getDuration()) {
+            boolean settled = Math.hypot(errorX, errorY) < POSITION_TOLERANCE
+                    && Math.abs(headingError) < HEADING_TOLERANCE;
+            if (settled || time >= trajectory.getDuration() + SETTLE_TIMEOUT) {
+                stop();
+                return false;
+            }
+        }
+
+        // Trajectory velocity plus feedback, in the field frame
+        double velocityX = target.velocityX + KP_POSITION * errorX;
+        double velocityY = target.velocityY + KP_POSITION * errorY;
+        double turnRate = target.headingRate + KP_HEADING * headingError;
+
+        // Rotate into the robot frame and convert to outputs
+        double forward = feedforward(velocityX * cos + velocityY * sin, KV_FORWARD, KS_FORWARD);
+        double strafe = feedforward(-velocityX * sin + velocityY * cos, KV_STRAFE, KS_STRAFE);
+        drive(forward, strafe, turnRate * KV_TURN);
+        return true;
+    }
+
+    /**
+     * Accessor method for the number of steps recorded since start().
+     * @return
+     */
+    public int getStepCount()
+    {
+        return steps;
+    }
+
+    /**
+     * Accessor method for when a step ran.
+     * @param step
+     * @return Seconds since the trajectory started.
+     */
+    public double getStepTime(int step)
+    {
+        return stepTimes[step];
+    }
+
+    /**
+     * Accessor method for how far behind the target the robot was at a step.
+     * @param step
+     * @return The error in meters along the robot's forward axis.
+     */
+    public double getForwardError(int step)
+    {
+        return forwardErrors[step];
+    }
+
+    /**
+     * Accessor method for how far to the side of the target the robot was at a step.
+     * @param step
+     * @return The error in meters along the robot's right axis.
+     */
+    public double getLateralError(int step)
+    {
+        return lateralErrors[step];
+    }
+
+    /**
+     * Accessor method for the heading error at a step.
+     * @param step
+     * @return The error in degrees, clockwise positive.
+     */
+    public double getHeadingError(int step)
+    {
+        return headingErrors[step];
+    }
+
+    /**
+     * Writes the latest tracking errors into this cycle's flight record.
+     * @param record
+     */
+    public void log(FlightRecord record)
+    {
+        record.set(FlightRecord.Field.FORWARD_ERROR, following ? forwardError : 0);
+        record.set(FlightRecord.Field.LATERAL_ERROR, following ? lateralError : 0);
+        record.set(FlightRecord.Field.TRACKING_HEADING_ERROR, following ? headingError : 0);
+    }
+
+    /**
+     * Sets the drive outputs. Forward is left positive and right negative,
+     * and turning clockwise adds to both sides. If any output is past
+     * MAXIMUM_DRIVE_TALON_INPUT all three are scaled down together, so a
+     * robot that has fallen behind drives as hard as it can along the same
+     * curve instead of DriveBase rejecting the command.
+     */
+    private void drive(double forward, double strafe, double turn)
+    {
+        double left = forward + turn;
+        double right = -forward + turn;
+        double largest = Math.max(Math.max(Math.abs(left), Math.abs(right)), Math.abs(strafe));
+        if (largest > DriveBase.MAXIMUM_DRIVE_TALON_INPUT)
+        {
+            double scale = DriveBase.MAXIMUM_DRIVE_TALON_INPUT / largest;
+            left *= scale;
+            right *= scale;
+            strafe *= scale;
+        }
+
+        driveBase.setLeft(left);
+        driveBase.setRight(right);
+        driveBase.setCenter(strafe);
+    }
+
+    /**
+     * Converts a speed into a motor output, adding the friction output in the
+     * direction of motion.
+     */
+    private static double feedforward(double velocity, double kV, double kS)
+    {
+        if (Math.abs(velocity) < KS_MIN_VELOCITY) return velocity * kV;
+        return velocity * kV + Math.copySign(kS, velocity);
+    }
+}
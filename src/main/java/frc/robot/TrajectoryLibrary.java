@@ -0,0 +1,62 @@
+package frc.robot;
+
+// Imports for the TrajectoryLibrary class
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Methods:
+ * public TrajectoryLibrary(File directory)
+ * public Trajectory get(String name)
+ * public int size()
+ */
+
+/**
+ * Every trajectory file in a directory, mapped once at startup so autonomous
+ * can pick one by name without touching the disk. On the robot the directory
+ * is the trajectories folder that build.gradle deploys from src/main/deploy.
+ */
+public class TrajectoryLibrary {
+    private final Map<String, Trajectory> trajectories = new HashMap<>();
+
+    /**
+     * Constructs a new TrajectoryLibrary and maps every trajectory in a
+     * directory. Files that can't be opened are skipped.
+     * @param directory
+     */
+    public TrajectoryLibrary(File directory)
+    {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(Trajectory.EXTENSION));
+        if (files == null) {
+            System.out.println("No trajectory directory at " + directory + " in TrajectoryLibrary.java");
+            return;
+        }
+
+        for (File file : files) {
+            Trajectory trajectory = Trajectory.open(file);
+            if (trajectory != null) trajectories.put(trajectory.getName(), trajectory);
+        }
+        System.out.println("Loaded " + trajectories.size() + " trajectories from " + directory);
+    }
+
+    /**
+     * Looks up a trajectory by name.
+     * @param name File name without extension.
+     * @return The trajectory, or null if there is none by that name.
+     */
+    public Trajectory get(String name)
+    {
+        Trajectory trajectory = trajectories.get(name);
+        if (trajectory == null) System.out.println("No trajectory named " + name + " in TrajectoryLibrary.java");
+        return trajectory;
+    }
+
+    /**
+     * Accessor method for the number of trajectories loaded.
+     * @return
+     */
+    public int size()
+    {
+        return trajectories.size();
+    }
+}
@@ -0,0 +1,91 @@
+package frc.robot;
+
+/** Methods:
+ * public double getTime()
+ * public double getX()
+ * public double getY()
+ * public double getHeading()
+ * public double getVelocityX()
+ * public double getVelocityY()
+ * public double getHeadingRate()
+ */
+
+/**
+ * Where a trajectory wants the robot at one instant, filled in by
+ * Trajectory.sample(). Uses the same field frame as Pose: x forward, y to the
+ * right and the heading clockwise positive, all measured from the pose the
+ * trajectory starts at. Callers should keep one point and refill it.
+ */
+public class TrajectoryPoint {
+    // Values interpolated out of the trajectory file
+    double time;
+    double x;
+    double y;
+    double heading;
+    double velocityX;
+    double velocityY;
+    double headingRate;
+
+    /**
+     * Accessor method for the time since the start of the trajectory.
+     * @return The time in seconds.
+     */
+    public double getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Accessor method for the forward position.
+     * @return The x position in meters.
+     */
+    public double getX()
+    {
+        return x;
+    }
+
+    /**
+     * Accessor method for the sideways position.
+     * @return The y position in meters, right positive.
+     */
+    public double getY()
+    {
+        return y;
+    }
+
+    /**
+     * Accessor method for the heading.
+     * @return The heading in continuous degrees.
+     */
+    public double getHeading()
+    {
+        return heading;
+    }
+
+    /**
+     * Accessor method for the field velocity along x.
+     * @return The velocity in meters per second.
+     */
+    public double getVelocityX()
+    {
+        return velocityX;
+    }
+
+    /**
+     * Accessor method for the field velocity along y.
+     * @return The velocity in meters per second.
+     */
+    public double getVelocityY()
+    {
+        return velocityY;
+    }
+
+    /**
+     * Accessor method for the rate the heading changes.
+     * @return The rate in degrees per second, clockwise positive.
+     */
+    public double getHeadingRate()
+    {
+        return headingRate;
+    }
+}
@@ -0,0 +1,259 @@
+package frc.robot;
+
+// Imports for the DriveModel class
+import frc.robot.FakeDevices.*;
+
+/** Methods:
+ * public DriveModel(FakeMotor talLM, FakeMotor talLF, FakeMotor talRM, FakeMotor talRF, FakeMotor talC,
+ *         FakeI2C imuBus, FakePowerSource battery)
+ * public void step(double dt)
+ * public void reset(double x, double y, double heading)
+ * public double getX()
+ * public double getY()
+ * public double getHeading()
+ * public double getForwardVelocity()
+ * public double getStrafeVelocity()
+ * public double getTurnRate()
+ * public double getDriveCurrent()
+ * private double sideOutput(FakeMotor master, FakeMotor follower)
+ * private static double lag(double value, double target, double dt, double timeConstant)
+ * private void writeSensors()
+ */
+
+/**
+ * A simple model of the H-drive for desktop runs. It reads the five fake
+ * talons each step, moves the robot on the field, and writes the encoder
+ * counts, talon currents, battery and BNO055 registers back, so the pose
+ * estimator, heading controller and PowerManager see roughly what they would
+ * on the robot.
+ *
+ * Each axis speeds up towards its free speed at the applied output with a
+ * first order lag: forward from the difference between the sides, turning
+ * from their sum, and sideways from the center wheel. The free speeds match
+ * what TrajectoryFollower assumes. The output is scaled by the battery
+ * voltage, and each talon's current is its motor's stall current times how
+ * far the applied voltage is from the motor's back EMF, so sagging voltage
+ * and hard accelerations show up the way they do on the field.
+ */
+public class DriveModel {
+    // Free speed of each axis at full output on a NOMINAL_VOLTAGE battery
+    public static final double FREE_FORWARD_SPEED = 3.5;
+    public static final double FREE_STRAFE_SPEED = 2;
+    public static final double FREE_TURN_RATE = 360;
+
+    // How fast each axis reaches its target speed (s)
+    public static final double FORWARD_TIME_CONSTANT = 0.1;
+    public static final double STRAFE_TIME_CONSTANT = 0.08;
+    public static final double TURN_TIME_CONSTANT = 0.1;
+
+    // Distance between the side wheels (m)
+    public static final double TRACK_WIDTH = 0.6;
+
+    // CIM stall current, and the battery's resting voltage and resistance including wiring
+    public static final double STALL_CURRENT = 131;
+    public static final double NOMINAL_VOLTAGE = 12;
+    public static final double OPEN_CIRCUIT_VOLTAGE = 12.7;
+    public static final double BATTERY_RESISTANCE = 0.015;
+
+    // Current drawn by the rest of the robot (A)
+    public static final double BASE_CURRENT = 3;
+
+    // Encoder resolution, taken from DriveBase's geometry (m per count)
+    private static final double DRIVE_METERS_PER_TICK = DriveBase.DRIVE_METERS_PER_TICK;
+    private static final double CENTER_METERS_PER_TICK = DriveBase.CENTER_METERS_PER_TICK;
+
+    // BNO055 register scales: 16 counts per degree, and 16 per degree per second
+    private static final double EULER_COUNTS_PER_DEGREE = 16;
+    private static final double GYRO_COUNTS_PER_DEGREE = 16;
+
+    private final FakeMotor talLM, talLF, talRM, talRF, talC;
+    private final FakeI2C imuBus;
+    private final FakePowerSource battery;
+
+    // Field position, heading clockwise positive in degrees
+    private double x, y, heading;
+
+    // Robot frame speeds (m/s, deg/s)
+    private double forwardVelocity, strafeVelocity, turnRate;
+
+    // Distance each wheel has rolled (m)
+    private double leftDistance, rightDistance, centerDistance;
+
+    private double driveCurrent;
+
+    /**
+     * Constructs a new DriveModel at rest at the origin.
+     */
+    public DriveModel(FakeMotor talLM, FakeMotor talLF, FakeMotor talRM, FakeMotor talRF, FakeMotor talC,
+            FakeI2C imuBus, FakePowerSource battery)
+    {
+        this.talLM = talLM;
+        this.talLF = talLF;
+        this.talRM = talRM;
+        this.talRF = talRF;
+        this.talC = talC;
+        this.imuBus = imuBus;
+        this.battery = battery;
+        battery.voltage = OPEN_CIRCUIT_VOLTAGE;
+        writeSensors();
+    }
+
+    /**
+     * Advances the model and updates the fake sensors.
+     * @param dt Time step in seconds.
+     */
+    public void step(double dt)
+    {
+        // Output as a fraction of the nominal voltage, using last step's sag
+        double supply = battery.voltage / NOMINAL_VOLTAGE;
+        double left = sideOutput(talLM, talLF) * supply;
+        double right = sideOutput(talRM, talRF) * supply;
+        double center = talC.output * supply;
+
+        // Left forward is positive and right forward is negative
+        forwardVelocity = lag(forwardVelocity, (left - right) / 2 * FREE_FORWARD_SPEED, dt, FORWARD_TIME_CONSTANT);
+        strafeVelocity = lag(strafeVelocity, center * FREE_STRAFE_SPEED, dt, STRAFE_TIME_CONSTANT);
+        turnRate = lag(turnRate, (left + right) / 2 * FREE_TURN_RATE, dt, TURN_TIME_CONSTANT);
+
+        // Move on the field using the heading halfway through the step
+        double angle = Math.toRadians(heading + turnRate * dt / 2);
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        x += (forwardVelocity * cos - strafeVelocity * sin) * dt;
+        y += (forwardVelocity * sin + strafeVelocity * cos) * dt;
+        heading += turnRate * dt;
+
+        // Turning clockwise rolls the left wheels forward and the right ones back
+        double arc = Math.toRadians(turnRate) * TRACK_WIDTH / 2;
+        leftDistance += (forwardVelocity + arc) * dt;
+        rightDistance += (forwardVelocity - arc) * dt;
+        centerDistance += strafeVelocity * dt;
+
+        // Each motor's speed as a fraction of free speed, which sets its back EMF
+        double leftSpeed = (forwardVelocity + arc) / FREE_FORWARD_SPEED;
+        double rightSpeed = -(forwardVelocity - arc) / FREE_FORWARD_SPEED;
+        double centerSpeed = strafeVelocity / FREE_STRAFE_SPEED;
+        talLM.current = talLF.current = STALL_CURRENT * Math.abs(sideOutput(talLM, talLF) * supply - leftSpeed);
+        talRM.current = talRF.current = STALL_CURRENT * Math.abs(sideOutput(talRM, talRF) * supply - rightSpeed);
+        talC.current = STALL_CURRENT * Math.abs(center - centerSpeed);
+        driveCurrent = talLM.current + talLF.current + talRM.current + talRF.current + talC.current;
+
+        battery.current = driveCurrent + BASE_CURRENT;
+        battery.voltage = OPEN_CIRCUIT_VOLTAGE - battery.current * BATTERY_RESISTANCE;
+
+        writeSensors();
+    }
+
+    /**
+     * Moves the robot to a pose and stops it. The encoders keep their counts.
+     * @param x Forward position in meters.
+     * @param y Sideways position in meters, right positive.
+     * @param heading Heading in degrees, clockwise positive.
+     */
+    public void reset(double x, double y, double heading)
+    {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        forwardVelocity = 0;
+        strafeVelocity = 0;
+        turnRate = 0;
+        writeSensors();
+    }
+
+    /**
+     * Accessor method for the true forward position.
+     * @return Meters.
+     */
+    public double getX()
+    {
+        return x;
+    }
+
+    /**
+     * Accessor method for the true sideways position.
+     * @return Meters, right positive.
+     */
+    public double getY()
+    {
+        return y;
+    }
+
+    /**
+     * Accessor method for the true heading.
+     * @return Continuous degrees, clockwise positive.
+     */
+    public double getHeading()
+    {
+        return heading;
+    }
+
+    /**
+     * Accessor method for the speed along the robot's forward axis.
+     * @return m/s
+     */
+    public double getForwardVelocity()
+    {
+        return forwardVelocity;
+    }
+
+    /**
+     * Accessor method for the speed along the robot's right axis.
+     * @return m/s
+     */
+    public double getStrafeVelocity()
+    {
+        return strafeVelocity;
+    }
+
+    /**
+     * Accessor method for the turn rate.
+     * @return Degrees per second, clockwise positive.
+     */
+    public double getTurnRate()
+    {
+        return turnRate;
+    }
+
+    /**
+     * Accessor method for the current drawn by the five drive talons.
+     * @return Amps.
+     */
+    public double getDriveCurrent()
+    {
+        return driveCurrent;
+    }
+
+    /**
+     * Output of one side's gearbox. A follower runs with its master's output.
+     */
+    private double sideOutput(FakeMotor master, FakeMotor follower)
+    {
+        double followerOutput = follower.followingPort >= 0 ? master.output : follower.output;
+        return (master.output + followerOutput) / 2;
+    }
+
+    private static double lag(double value, double target, double dt, double timeConstant)
+    {
+        return value + (target - value) * (1 - Math.exp(-dt / timeConstant));
+    }
+
+    private void writeSensors()
+    {
+        // Talon counts and counts per 100 ms, the right side reads backwards
+        talLM.position = leftDistance / DRIVE_METERS_PER_TICK;
+        talRM.position = -rightDistance / DRIVE_METERS_PER_TICK;
+        talC.position = centerDistance / CENTER_METERS_PER_TICK;
+        double arc = Math.toRadians(turnRate) * TRACK_WIDTH / 2;
+        talLM.velocity = (forwardVelocity + arc) / DRIVE_METERS_PER_TICK / 10;
+        talRM.velocity = -(forwardVelocity - arc) / DRIVE_METERS_PER_TICK / 10;
+        talC.velocity = strafeVelocity / CENTER_METERS_PER_TICK / 10;
+
+        // BNO055 heading wraps at 360 degrees and increases clockwise, while
+        // the gyro z rate is counterclockwise positive, as the chip sends them
+        double wrapped = ((heading % 360) + 360) % 360;
+        imuBus.setShort(BNO055.reg_t.BNO055_EULER_H_LSB_ADDR.getVal(),
+                (int) Math.round(wrapped * EULER_COUNTS_PER_DEGREE) % (int) (360 * EULER_COUNTS_PER_DEGREE));
+        imuBus.setShort(BNO055.reg_t.BNO055_GYRO_DATA_Z_LSB_ADDR.getVal(),
+                (int) Math.round(-turnRate * GYRO_COUNTS_PER_DEGREE));
+    }
+}
@@ -0,0 +1,354 @@
+package frc.robot;
+
+// Imports for the FakeDevices class
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/** Classes:
+ * public static class FakeMotor implements MotorOutput
+ * public static class FakeSolenoid implements SolenoidOutput
+ * public static class FakeDoubleSolenoid implements DoubleSolenoidOutput
+ * public static class FakeAnalog implements AnalogTriggerSensor
+ * public static class FakeDigital implements InterruptSensor
+ * public static class FakeI2C implements I2CBus
+ * public static class FakeCompressor implements CompressorControl
+ * public static class FakePowerSource implements PowerSource
+ * public static class FakeClock implements Clock
+ * public static class FakeJoystick implements JoystickInput
+ * public static class FakeDashboard implements Dashboard
+ */
+
+/**
+ * In-memory versions of every device interface. They don't touch the HAL, so
+ * subsystems built with them run on any JVM for benchmarks and regression
+ * runs. Each fake just stores what it is given and lets the caller set what
+ * it reads back.
+ */
+public final class FakeDevices {
+    private FakeDevices()
+    {
+    }
+
+    /**
+     * A motor controller that records its last output.
+     */
+    public static class FakeMotor implements MotorOutput {
+        public double output;
+        public int followingPort = -1;
+        public boolean inverted;
+        public double current;
+        public double position;
+        public double velocity;
+        public long writes;
+
+        public void set(double percentOutput)
+        {
+            output = percentOutput;
+            followingPort = -1;
+            writes++;
+        }
+
+        public void follow(int masterPort)
+        {
+            followingPort = masterPort;
+            writes++;
+        }
+
+        public void setInverted(boolean inverted)
+        {
+            this.inverted = inverted;
+        }
+
+        public double getOutputCurrent()
+        {
+            return current;
+        }
+
+        public double getSensorPosition()
+        {
+            return position;
+        }
+
+        public double getSensorVelocity()
+        {
+            return velocity;
+        }
+    }
+
+    /**
+     * A solenoid that records its state.
+     */
+    public static class FakeSolenoid implements SolenoidOutput {
+        public boolean on;
+
+        public void set(boolean on)
+        {
+            this.on = on;
+        }
+
+        public boolean get()
+        {
+            return on;
+        }
+    }
+
+    /**
+     * A double solenoid that records its state.
+     */
+    public static class FakeDoubleSolenoid implements DoubleSolenoidOutput {
+        public DoubleSolenoid.Value value = DoubleSolenoid.Value.kOff;
+
+        public void set(DoubleSolenoid.Value value)
+        {
+            this.value = value;
+        }
+
+        public DoubleSolenoid.Value get()
+        {
+            return value;
+        }
+    }
+
+    /**
+     * An analog input that returns whatever voltage it is given. Its triggers
+     * only fire when checkTriggers() is called, standing in for the FPGA.
+     */
+    public static class FakeAnalog implements AnalogTriggerSensor {
+        public double voltage;
+        private final List<Trigger> triggers = new ArrayList<>();
+
+        private static class Trigger {
+            double lowerVoltage, upperVoltage;
+            LongConsumer below, above;
+            boolean high = true;
+        }
+
+        public double getVoltage()
+        {
+            return voltage;
+        }
+
+        public void addTrigger(double lowerVoltage, double upperVoltage, LongConsumer below, LongConsumer above)
+        {
+            Trigger trigger = new Trigger();
+            trigger.lowerVoltage = lowerVoltage;
+            trigger.upperVoltage = upperVoltage;
+            trigger.below = below;
+            trigger.above = above;
+            triggers.add(trigger);
+        }
+
+        /**
+         * Compares the voltage with each trigger's window and calls a handler
+         * for each trigger that changed state.
+         * @param micros Time of the check.
+         */
+        public void checkTriggers(long micros)
+        {
+            for (Trigger trigger : triggers)
+            {
+                if (trigger.high && voltage < trigger.lowerVoltage)
+                {
+                    trigger.high = false;
+                    if (trigger.below != null) trigger.below.accept(micros);
+                }
+                else if (!trigger.high && voltage > trigger.upperVoltage)
+                {
+                    trigger.high = true;
+                    if (trigger.above != null) trigger.above.accept(micros);
+                }
+            }
+        }
+    }
+
+    /**
+     * A digital input that returns whatever value it is given, and reports
+     * falling edges made with set().
+     */
+    public static class FakeDigital implements InterruptSensor {
+        public boolean value;
+        private LongConsumer fallingEdge;
+
+        public boolean get()
+        {
+            return value;
+        }
+
+        public void onFallingEdge(LongConsumer handler)
+        {
+            fallingEdge = handler;
+        }
+
+        /**
+         * Changes the input, calling the falling edge handler right away
+         * like the interrupt thread would.
+         * @param value
+         * @param micros Time of the change.
+         */
+        public void set(boolean value, long micros)
+        {
+            boolean falling = this.value && !value;
+            this.value = value;
+            if (falling && fallingEdge != null) fallingEdge.accept(micros);
+        }
+    }
+
+    /**
+     * An I2C device backed by a 256 byte register map.
+     */
+    public static class FakeI2C implements I2CBus {
+        public final byte[] registers = new byte[256];
+        public long reads;
+        public long writes;
+
+        public boolean read(int register, int count, byte[] buffer)
+        {
+            System.arraycopy(registers, register, buffer, 0, count);
+            reads++;
+            return false;
+        }
+
+        public boolean write(int register, int data)
+        {
+            registers[register] = (byte) data;
+            writes++;
+            return false;
+        }
+
+        /**
+         * Stores a little endian 16 bit value in two registers.
+         * @param register Address of the low byte.
+         * @param value
+         */
+        public void setShort(int register, int value)
+        {
+            registers[register] = (byte) value;
+            registers[register + 1] = (byte) (value >> 8);
+        }
+    }
+
+    /**
+     * A compressor that records if it was started.
+     */
+    public static class FakeCompressor implements CompressorControl {
+        public boolean enabled;
+
+        public void start()
+        {
+            enabled = true;
+        }
+
+        public void stop()
+        {
+            enabled = false;
+        }
+
+        public boolean enabled()
+        {
+            return enabled;
+        }
+    }
+
+    /**
+     * A battery that reports whatever current and voltage it is given.
+     */
+    public static class FakePowerSource implements PowerSource {
+        public double current;
+        public double voltage = 12.5;
+
+        public double getTotalCurrent()
+        {
+            return current;
+        }
+
+        public double getBatteryVoltage()
+        {
+            return voltage;
+        }
+    }
+
+    /**
+     * A clock that only moves when told to.
+     */
+    public static class FakeClock implements Clock {
+        public long micros;
+
+        public long getMicros()
+        {
+            return micros;
+        }
+
+        /**
+         * Moves the clock forward.
+         * @param seconds
+         */
+        public void advance(double seconds)
+        {
+            micros += Math.round(seconds * 1e6);
+        }
+    }
+
+    /**
+     * A joystick with settable axes and buttons. Presses are latched the same
+     * way the driver station does, so getRawButtonPressed() reports each press
+     * once.
+     */
+    public static class FakeJoystick implements JoystickInput {
+        public final double[] axes = new double[6];
+        private final boolean[] buttons = new boolean[13];
+        private final boolean[] pressed = new boolean[13];
+
+        public double getRawAxis(int axis)
+        {
+            return axes[axis];
+        }
+
+        public boolean getRawButton(int button)
+        {
+            return buttons[button];
+        }
+
+        public boolean getRawButtonPressed(int button)
+        {
+            boolean wasPressed = pressed[button];
+            pressed[button] = false;
+            return wasPressed;
+        }
+
+        /**
+         * Holds or releases a button.
+         * @param button
+         * @param held
+         */
+        public void setButton(int button, boolean held)
+        {
+            if (held && !buttons[button]) pressed[button] = true;
+            buttons[button] = held;
+        }
+    }
+
+    /**
+     * A dashboard that only counts what is published to it.
+     */
+    public static class FakeDashboard implements Dashboard {
+        public long puts;
+
+        public void putNumber(String key, double value)
+        {
+            puts++;
+        }
+
+        public void putBoolean(String key, boolean value)
+        {
+            puts++;
+        }
+
+        public void putString(String key, String value)
+        {
+            puts++;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package frc.robot;
+
+// Imports for the FakeRobot class
+import java.io.File;
+
+import frc.robot.FakeDevices.*;
+
+/** Methods:
+ * public FakeRobot()
+ * public FakeRobot(JoystickInput driverR, JoystickInput driverL)
+ * public void step(double seconds)
+ */
+
+/**
+ * A complete RobotLoop wired to FakeDevices, for running the robot code on a
+ * desktop JVM. The fake devices are public so callers can set joystick and
+ * sensor inputs and read back the outputs, or attach the DriveModel and
+ * VacuumModel to have step() close the loop through simple physics. The BNO055, the heading
+ * controller and the pose estimator are stepped along with the fake clock
+ * instead of on their own threads. The flight recorder writes to the temp
+ * directory, and only once recorder.open() is called.
+ */
+public class FakeRobot {
+    // BNO055 chip id register value
+    private static final int BNO055_CHIP_ID = 0xA0;
+
+    // Inputs
+    public final FakeClock clock = new FakeClock();
+    public final FakeI2C imuBus = new FakeI2C();
+    public final FakeJoystick joyR = new FakeJoystick();
+    public final FakeJoystick joyL = new FakeJoystick();
+    public final FakeAnalog pressureSensor = new FakeAnalog();
+    public final FakeAnalog vacuumSensor = new FakeAnalog();
+    public final FakeDigital limClosed = new FakeDigital();
+    public final FakePowerSource battery = new FakePowerSource();
+
+    // Outputs
+    public final FakeMotor talLM = new FakeMotor();
+    public final FakeMotor talLF = new FakeMotor();
+    public final FakeMotor talRM = new FakeMotor();
+    public final FakeMotor talRF = new FakeMotor();
+    public final FakeMotor talC = new FakeMotor();
+    public final FakeMotor talPillow = new FakeMotor();
+    public final FakeSolenoid upstreamSolenoid = new FakeSolenoid();
+    public final FakeSolenoid downstreamSolenoid = new FakeSolenoid();
+    public final FakeDoubleSolenoid piston = new FakeDoubleSolenoid();
+    public final FakeCompressor compressor = new FakeCompressor();
+    public final FakeDashboard dashboard = new FakeDashboard();
+
+    // Robot code under test
+    public final Telemetry telemetry;
+    public final FlightRecorder recorder;
+    public final BNO055 imu;
+    public final DriveBase driveBase;
+    public final Gyroscope gyro;
+    public final Pillow pillow;
+    public final Plunger plunger;
+    public final PowerManager power;
+    public final RobotLoop loop;
+
+    // Set to simulate the plunger's air system in step()
+    public VacuumModel pneumatics;
+
+    // Set to simulate the drive, encoders, IMU and battery in step()
+    public DriveModel drivetrain;
+
+    // Heading controller ticks run by step()
+    private long ticks = 0;
+
+    /**
+     * Constructs a new fake robot with the IMU initialized and every input at rest.
+     */
+    public FakeRobot()
+    {
+        this(null, null);
+    }
+
+    /**
+     * Constructs a new fake robot driven by the given joysticks instead of
+     * joyR and joyL, for example to replay recorded inputs.
+     * @param driverR Right joystick, or null to use joyR.
+     * @param driverL Left joystick, or null to use joyL.
+     */
+    public FakeRobot(JoystickInput driverR, JoystickInput driverL)
+    {
+        imuBus.registers[BNO055.reg_t.BNO055_CHIP_ID_ADDR.getVal()] = (byte) BNO055_CHIP_ID;
+        imu = BNO055.create(BNO055.opmode_t.OPERATION_MODE_IMUPLUS, BNO055.vector_type_t.VECTOR_EULER,
+                imuBus, clock);
+
+        // Run the BNO055 through its initialization delays
+        while (!imu.isInitialized())
+        {
+            imu.update();
+            clock.advance(0.01);
+        }
+
+        // Door closed, tank at 60 psi, no vacuum
+        limClosed.value = false;
+        pressureSensor.voltage = 1.7;
+        vacuumSensor.voltage = 1.8;
+
+        telemetry = new Telemetry(dashboard, clock);
+        driveBase = new DriveBase(talLM, talLF, talRM, talRF, talC, clock, telemetry);
+        gyro = new Gyroscope(imu);
+        pillow = new Pillow(talPillow, limClosed, clock);
+        plunger = new Plunger(upstreamSolenoid, downstreamSolenoid, piston, pressureSensor, vacuumSensor,
+                compressor, clock, telemetry);
+        power = new PowerManager(battery, clock, telemetry);
+        recorder = new FlightRecorder(new File(System.getProperty("java.io.tmpdir"), "flightlogs"), clock);
+        loop = new RobotLoop(driveBase, gyro, pillow, plunger, power, driverR != null ? driverR : joyR,
+                driverL != null ? driverL : joyL, recorder, clock, telemetry);
+    }
+
+    /**
+     * Moves the fake clock forward, running the heading controller and the
+     * IMU at their own rates on the way, and checking the vacuum triggers every
+     * tick, then publishes telemetry.
+     * @param seconds
+     */
+    public void step(double seconds)
+    {
+        double period = 1.0 / HeadingController.RATE;
+        long imuDivider = Math.round(HeadingController.RATE
+                / BNO055.getOutputRate(BNO055.opmode_t.OPERATION_MODE_IMUPLUS));
+        while (seconds > 1e-9)
+        {
+            double dt = Math.min(seconds, period);
+            clock.advance(dt);
+            if (drivetrain != null) drivetrain.step(dt);
+            if (ticks++ % imuDivider == 0) imu.update();
+            loop.getHeadingController().update();
+            loop.getPoseEstimator().update();
+            if (pneumatics != null) pneumatics.step(dt);
+            vacuumSensor.checkTriggers(clock.getMicros());
+            seconds -= dt;
+        }
+        telemetry.publish();
+    }
+}
@@ -0,0 +1,202 @@
+package frc.robot;
+
+// Imports for the VacuumModel class
+import frc.robot.FakeDevices.*;
+
+/** Methods:
+ * public VacuumModel(FakeSolenoid upstream, FakeSolenoid downstream, FakeCompressor compressor,
+ *         FakeAnalog pressureSensor, FakeAnalog vacuumSensor)
+ * public void step(double dt)
+ * public void attachHatch()
+ * public double getVacuum()
+ * public double getTankPressure()
+ * public double getAirUsed()
+ * public double getCompressorTime()
+ * public int getDrops()
+ * public boolean isHatchAttached()
+ * public boolean isHatchGripped()
+ */
+
+/**
+ * A simple model of the plunger's air system for desktop runs: the tank, the
+ * vacuum generator and a suction cup holding a hatch. It reads the fake
+ * solenoids and compressor each step and writes the resulting pressures back
+ * to the fake transducers, so a Plunger built on FakeDevices behaves roughly
+ * like the real one.
+ *
+ * With both solenoids open the generator pulls the cup towards its limit.
+ * With the downstream solenoid closed the cup is sealed and leaks back
+ * towards atmosphere; with only the downstream one open it vents. Air is
+ * used whenever the upstream solenoid feeds the generator. The hatch drops if
+ * the cup's vacuum gets too weak while it is attached.
+ */
+public class VacuumModel {
+    // Vacuum generator limit and how fast it pulls the cup down (psi, s)
+    public static final double GENERATOR_VACUUM = -9;
+    public static final double PULL_TIME_CONSTANT = 0.2;
+
+    // How fast the cup vents through the open downstream solenoid (s)
+    public static final double VENT_TIME_CONSTANT = 0.05;
+
+    // Tank pressure drop while the generator runs, and compressor refill (psi/s)
+    public static final double GENERATOR_AIR_USE = 4;
+    public static final double COMPRESSOR_FILL_RATE = 1.5;
+    public static final double MAX_TANK_PRESSURE = 120;
+
+    // Vacuum weaker than this lets go of the hatch (psi)
+    public static final double DROP_VACUUM = -3;
+
+    private final FakeSolenoid upstream;
+    private final FakeSolenoid downstream;
+    private final FakeCompressor compressor;
+    private final FakeAnalog pressureSensor;
+    private final FakeAnalog vacuumSensor;
+
+    // How fast the sealed cup leaks towards atmosphere (s). Larger seals better.
+    public double leakTimeConstant = 8;
+
+    private double vacuum = 0;
+    private double tankPressure = MAX_TANK_PRESSURE;
+    private double airUsed = 0;
+    private double compressorTime = 0;
+    private boolean hatchAttached = false;
+    private boolean hatchGripped = false;
+    private int drops = 0;
+
+    /**
+     * Constructs a new VacuumModel with a full tank and no vacuum.
+     */
+    public VacuumModel(FakeSolenoid upstream, FakeSolenoid downstream, FakeCompressor compressor,
+            FakeAnalog pressureSensor, FakeAnalog vacuumSensor)
+    {
+        this.upstream = upstream;
+        this.downstream = downstream;
+        this.compressor = compressor;
+        this.pressureSensor = pressureSensor;
+        this.vacuumSensor = vacuumSensor;
+        writeSensors();
+    }
+
+    /**
+     * Advances the model and updates the fake transducers.
+     * @param dt Time step in seconds.
+     */
+    public void step(double dt)
+    {
+        boolean generating = upstream.get() && tankPressure > 0;
+
+        // Cup vacuum
+        if (downstream.get())
+        {
+            double target = generating ? GENERATOR_VACUUM : 0;
+            double timeConstant = generating ? PULL_TIME_CONSTANT : VENT_TIME_CONSTANT;
+            vacuum += (target - vacuum) * (1 - Math.exp(-dt / timeConstant));
+        }
+        else vacuum -= vacuum * (1 - Math.exp(-dt / leakTimeConstant));
+
+        // Tank
+        if (generating)
+        {
+            tankPressure = Math.max(0, tankPressure - GENERATOR_AIR_USE * dt);
+            airUsed += GENERATOR_AIR_USE * dt;
+        }
+        if (compressor.enabled() && tankPressure < MAX_TANK_PRESSURE)
+        {
+            tankPressure = Math.min(MAX_TANK_PRESSURE, tankPressure + COMPRESSOR_FILL_RATE * dt);
+            compressorTime += dt;
+        }
+
+        // Hatch
+        if (hatchAttached)
+        {
+            if (vacuum < DROP_VACUUM) hatchGripped = true;
+            else if (hatchGripped)
+            {
+                hatchAttached = false;
+                hatchGripped = false;
+                if (!downstream.get() || upstream.get()) drops++;
+            }
+        }
+
+        writeSensors();
+    }
+
+    /**
+     * Puts a hatch against the suction cup.
+     */
+    public void attachHatch()
+    {
+        hatchAttached = true;
+        hatchGripped = false;
+    }
+
+    /**
+     * Accessor method for the cup vacuum.
+     * @return Vacuum in psi, negative below atmosphere.
+     */
+    public double getVacuum()
+    {
+        return vacuum;
+    }
+
+    /**
+     * Accessor method for the tank pressure.
+     * @return Pressure in psi.
+     */
+    public double getTankPressure()
+    {
+        return tankPressure;
+    }
+
+    /**
+     * Accessor method for the air used by the vacuum generator.
+     * @return Total tank pressure drop in psi.
+     */
+    public double getAirUsed()
+    {
+        return airUsed;
+    }
+
+    /**
+     * Accessor method for how long the compressor has been refilling the tank.
+     * @return Time in seconds.
+     */
+    public double getCompressorTime()
+    {
+        return compressorTime;
+    }
+
+    /**
+     * Accessor method for the number of hatches lost without being released.
+     * @return
+     */
+    public int getDrops()
+    {
+        return drops;
+    }
+
+    /**
+     * Accessor method for whether a hatch is on the cup.
+     * @return
+     */
+    public boolean isHatchAttached()
+    {
+        return hatchAttached;
+    }
+
+    /**
+     * Accessor method for whether the cup has pulled enough vacuum to hold the hatch.
+     * @return
+     */
+    public boolean isHatchGripped()
+    {
+        return hatchGripped;
+    }
+
+    private void writeSensors()
+    {
+        // Inverse of PlungerSensors' conversions
+        pressureSensor.voltage = (tankPressure + 25.0) / 50.0;
+        vacuumSensor.voltage = (vacuum + 20.0625) / 11.125;
+    }
+}
@@ -0,0 +1,179 @@
+package frc.robot;
+
+// Imports for the ImuSnapshotTest class
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import frc.robot.FakeDevices.*;
+
+/** Methods:
+ * public void setUp()
+ * public void snapshotsAreConsistentUnderConcurrentUpdates()
+ * private void writeSample(long k)
+ * private static void checkSnapshot(ImuSnapshot snapshot)
+ * private static void checkVector(double[] vector)
+ */
+
+/**
+ * Stress test for the BNO055 seqlock. One thread steps the BNO055 over a
+ * FakeI2C, changing every register it reads before each update, while other
+ * threads take snapshots as fast as they can. Sample k is written so every
+ * field can be worked out from k alone, so a snapshot mixing two updates
+ * shows up as fields that disagree about which k they came from. The
+ * vector getters are checked the same way.
+ */
+public class ImuSnapshotTest {
+    // Updates the writer publishes, and the number of reader threads
+    private static final long SAMPLES = 2_000_000;
+    private static final int READERS = 3;
+
+    // Heading register counts in one turn, 16 per degree
+    private static final int HEADING_COUNTS_PER_TURN = 360 * 16;
+
+    // Clock time of sample k is START_MICROS + k * PERIOD_MICROS
+    private static final long START_MICROS = 10_000_000;
+    private static final long PERIOD_MICROS = 10_000;
+
+    private final FakeClock clock = new FakeClock();
+    private final FakeI2C bus = new FakeI2C();
+    private BNO055 imu;
+
+    @Before
+    public void setUp()
+    {
+        bus.registers[BNO055.reg_t.BNO055_CHIP_ID_ADDR.getVal()] = (byte) BNO055.BNO055_ID;
+        imu = BNO055.create(BNO055.opmode_t.OPERATION_MODE_IMUPLUS, BNO055.vector_type_t.VECTOR_EULER, bus, clock);
+        while (!imu.isInitialized())
+        {
+            imu.update();
+            clock.advance(0.01);
+        }
+    }
+
+    @Test
+    public void snapshotsAreConsistentUnderConcurrentUpdates() throws InterruptedException
+    {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] reads = new long[READERS];
+
+        Thread writer = new Thread(() -> {
+            try
+            {
+                for (long k = 1; k <= SAMPLES && failure.get() == null; k++)
+                {
+                    writeSample(k);
+                    imu.update();
+                }
+            }
+            catch (Throwable t)
+            {
+                failure.compareAndSet(null, t);
+            }
+        }, "imu writer");
+
+        Thread[] readers = new Thread[READERS];
+        for (int i = 0; i < READERS; i++)
+        {
+            int reader = i;
+            readers[i] = new Thread(() -> {
+                ImuSnapshot snapshot = new ImuSnapshot();
+                double[] vector = new double[3];
+                long lastSequence = 0;
+                try
+                {
+                    while ((writer.isAlive() || lastSequence == 0) && failure.get() == null)
+                    {
+                        if (!imu.getSnapshot(snapshot)) continue;
+                        assertTrue("sequence went from " + lastSequence + " to " + snapshot.getSequence(),
+                                snapshot.getSequence() >= lastSequence);
+                        checkSnapshot(snapshot);
+                        lastSequence = snapshot.getSequence();
+                        reads[reader]++;
+
+                        imu.getVector(vector);
+                        checkVector(vector);
+                    }
+                }
+                catch (Throwable t)
+                {
+                    failure.compareAndSet(null, t);
+                }
+            }, "imu reader " + i);
+        }
+
+        for (Thread reader : readers) reader.start();
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) reader.join();
+
+        if (failure.get() != null)
+        {
+            throw new AssertionError(failure.get());
+        }
+
+        // The last update must be visible once the writer has finished
+        ImuSnapshot last = new ImuSnapshot();
+        assertTrue(imu.getSnapshot(last));
+        assertEquals(SAMPLES, last.getSequence());
+        checkSnapshot(last);
+        for (long count : reads)
+        {
+            assertTrue("a reader never got a snapshot", count > 0);
+        }
+    }
+
+    /**
+     * Sets every register the BNO055 reads and the clock for sample k.
+     */
+    private void writeSample(long k)
+    {
+        clock.micros = START_MICROS + k * PERIOD_MICROS;
+        bus.setShort(BNO055.reg_t.BNO055_EULER_H_LSB_ADDR.getVal(), (int) (k % HEADING_COUNTS_PER_TURN));
+        bus.setShort(BNO055.reg_t.BNO055_EULER_R_LSB_ADDR.getVal(), (int) (k % 1000));
+        bus.setShort(BNO055.reg_t.BNO055_EULER_P_LSB_ADDR.getVal(), (int) (-(k % 1000)));
+        bus.setShort(BNO055.reg_t.BNO055_GYRO_DATA_Z_LSB_ADDR.getVal(), (int) (k % 2000 - 1000));
+        bus.setShort(BNO055.reg_t.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR.getVal(), (int) (k % 3000));
+        bus.setShort(BNO055.reg_t.BNO055_LINEAR_ACCEL_DATA_Y_LSB_ADDR.getVal(), (int) (-(k % 3000)));
+        bus.setShort(BNO055.reg_t.BNO055_LINEAR_ACCEL_DATA_Z_LSB_ADDR.getVal(), (int) (k % 3001));
+    }
+
+    /**
+     * Works out k from the continuous heading and checks every other field
+     * came from the same sample.
+     */
+    private static void checkSnapshot(ImuSnapshot snapshot)
+    {
+        long k = Math.round(snapshot.getContinuousHeading() * 16);
+        String sample = "sample " + k + ": ";
+
+        assertEquals(sample + "sequence", k, snapshot.getSequence());
+        assertEquals(sample + "heading", (k % HEADING_COUNTS_PER_TURN) / 16.0, snapshot.getHeading(), 0);
+        assertEquals(sample + "turns", k / HEADING_COUNTS_PER_TURN, snapshot.getTurns());
+        assertEquals(sample + "roll", (k % 1000) / 16.0, snapshot.getRoll(), 0);
+        assertEquals(sample + "pitch", -(k % 1000) / 16.0, snapshot.getPitch(), 0);
+        assertEquals(sample + "yaw rate", -(k % 2000 - 1000) / 16.0, snapshot.getYawRate(), 0);
+        assertEquals(sample + "accel x", (k % 3000) / 100.0, snapshot.getAccelX(), 0);
+        assertEquals(sample + "accel y", -(k % 3000) / 100.0, snapshot.getAccelY(), 0);
+        assertEquals(sample + "accel z", (k % 3001) / 100.0, snapshot.getAccelZ(), 0);
+        assertEquals(sample + "timestamp", (START_MICROS + k * PERIOD_MICROS) / 1e6, snapshot.getTimestamp(), 1e-9);
+    }
+
+    /**
+     * Checks the heading, roll and pitch from getVector() came from the same
+     * sample. Both the heading and roll counts are k modulo a multiple of
+     * 40, so they agree modulo 40.
+     */
+    private static void checkVector(double[] vector)
+    {
+        long heading = Math.round(vector[0] * 16);
+        long roll = Math.round(vector[1] * 16);
+        String sample = "vector " + vector[0] + ", " + vector[1] + ", " + vector[2] + ": ";
+
+        assertEquals(sample + "heading and roll", heading % 40, roll % 40);
+        assertEquals(sample + "pitch", -vector[1], vector[2], 0);
+    }
+}
@@ -0,0 +1,141 @@
+package frc.robot;
+
+// Imports for the PlungerRefreshTest class
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Methods:
+ * public void setUp()
+ * public void predictiveRefreshStartsBeforeThreshold()
+ * public void predictiveRefreshKeepsUpWithFastLeak()
+ * public void reactiveRefreshWithoutPrediction()
+ * private void pickUpAndHold()
+ * private void checkRefreshes()
+ * private void cycle()
+ */
+
+/**
+ * Runs the Plunger against the VacuumModel holding a hatch in teleop, and
+ * checks that the predictive refresh starts each refresh while the cup is
+ * still stronger than VACUUM_SENSOR_MIN_VAC, without dropping the hatch.
+ */
+public class PlungerRefreshTest {
+    // Robot loop period (s), and the suction button as mapped in RobotLoop
+    private static final double LOOP_PERIOD = 0.02;
+    private static final int SUCTION_BUTTON = 6;
+
+    // How long the hatch is held, and the longest the pickup may take (s)
+    private static final double HOLD_TIME = 30;
+    private static final double PICKUP_TIMEOUT = 3;
+
+    private FakeRobot robot;
+    private Plunger plunger;
+    private VacuumModel pneumatics;
+
+    // Weakest cup vacuum after the pickup, refreshes included (psi)
+    private double weakestHold;
+
+    @Before
+    public void setUp()
+    {
+        robot = new FakeRobot();
+        robot.pneumatics = new VacuumModel(robot.upstreamSolenoid, robot.downstreamSolenoid, robot.compressor,
+                robot.pressureSensor, robot.vacuumSensor);
+        plunger = robot.plunger;
+        pneumatics = robot.pneumatics;
+        robot.loop.teleopInit();
+    }
+
+    @Test
+    public void predictiveRefreshStartsBeforeThreshold()
+    {
+        pickUpAndHold();
+        checkRefreshes();
+    }
+
+    @Test
+    public void predictiveRefreshKeepsUpWithFastLeak()
+    {
+        pneumatics.leakTimeConstant = 3;
+        pickUpAndHold();
+        checkRefreshes();
+    }
+
+    @Test
+    public void reactiveRefreshWithoutPrediction()
+    {
+        // Without the prediction the cup has to leak past the threshold first
+        plunger.setPredictiveRefresh(false);
+        pickUpAndHold();
+        assertEquals("predictive refreshes", 0, plunger.getPredictiveRefreshes());
+        assertTrue("no reactive refreshes", plunger.getReactiveRefreshes() > 0);
+        assertTrue("weakest vacuum " + weakestHold, weakestHold >= Plunger.VACUUM_SENSOR_MIN_VAC);
+        assertEquals("drops", 0, pneumatics.getDrops());
+    }
+
+    /**
+     * Puts a hatch on the cup, presses the suction button and holds the hatch
+     * for HOLD_TIME.
+     */
+    private void pickUpAndHold()
+    {
+        pneumatics.attachHatch();
+        robot.joyR.setButton(SUCTION_BUTTON, true);
+        cycle();
+        robot.joyR.setButton(SUCTION_BUTTON, false);
+
+        double time = 0;
+        while (plunger.getState() != Plunger.plungerState.HOLD)
+        {
+            assertTrue("no HOLD after " + PICKUP_TIMEOUT + " s", time < PICKUP_TIMEOUT);
+            cycle();
+            time += LOOP_PERIOD;
+        }
+
+        weakestHold = -Double.MAX_VALUE;
+        for (time = 0; time < HOLD_TIME; time += LOOP_PERIOD)
+        {
+            cycle();
+            weakestHold = Math.max(weakestHold, pneumatics.getVacuum());
+        }
+        assertTrue("hatch lost", pneumatics.isHatchAttached());
+    }
+
+    /**
+     * Checks every refresh was predictive and started stronger than
+     * VACUUM_SENSOR_MIN_VAC, and the hatch never dropped.
+     */
+    private void checkRefreshes()
+    {
+        assertTrue("no predictive refreshes", plunger.getPredictiveRefreshes() > 0);
+        assertEquals("reactive refreshes", 0, plunger.getReactiveRefreshes());
+        assertTrue("weakest vacuum " + weakestHold, weakestHold < Plunger.VACUUM_SENSOR_MIN_VAC);
+        assertEquals("drops", 0, pneumatics.getDrops());
+
+        long count = plunger.getTransitionCount();
+        assertTrue("transition log overwritten", count <= Plunger.TRANSITION_LOG_LENGTH);
+        int refreshes = 0;
+        for (long i = 0; i < count; i++)
+        {
+            if (plunger.getTransitionFrom(i) == Plunger.plungerState.HOLD
+                    && plunger.getTransitionTo(i) == Plunger.plungerState.HOLD_TO_VACUUM)
+            {
+                assertTrue("refresh " + refreshes + " started at " + plunger.getTransitionVacuum(i) + " psi",
+                        plunger.getTransitionVacuum(i) < Plunger.VACUUM_SENSOR_MIN_VAC);
+                refreshes++;
+            }
+        }
+        assertEquals("refreshes in the log", plunger.getPredictiveRefreshes(), refreshes);
+    }
+
+    /**
+     * Runs one teleop loop and the models up to the next one.
+     */
+    private void cycle()
+    {
+        robot.loop.teleopPeriodic();
+        robot.step(LOOP_PERIOD);
+    }
+}
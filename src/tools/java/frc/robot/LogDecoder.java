@@ -0,0 +1,404 @@
+package frc.robot;
+
+// Imports for the LogDecoder class
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Methods:
+ * public static void main(String[] args)
+ * public LogDecoder(File log)
+ * public void setFields(List<FlightRecord.Field> fields)
+ * public void setRange(double fromSeconds, double toSeconds)
+ * public void setCsv(File csv)
+ * public void setColumns(File directory)
+ * public void run() throws IOException
+ * public void printStatistics(PrintStream out)
+ */
+
+/**
+ * Desktop tool that streams through a flight recorder file. It decodes
+ * records with the same FlightRecord schema the robot writes with, so the two
+ * can't drift apart, and only ever holds one read buffer of the file in
+ * memory. It can export a slice of the log as CSV or as one binary column
+ * file per field, and prints statistics for every signal.
+ *
+ * Run with: ./gradlew decodeLog -Plog=file.frec [-Pcsv=out.csv] [-Pcolumns=dir]
+ *           [-Pfields=JOY_L_Y,LEFT_OUTPUT] [-Pfrom=seconds] [-Pto=seconds]
+ */
+public class LogDecoder {
+    // Read this many records from the file at a time
+    private static final int RECORDS_PER_READ = 16384;
+
+    // Loop period histogram: 100 us buckets up to 100 ms
+    private static final int PERIOD_BUCKETS = 1000;
+    private static final long PERIOD_BUCKET_WIDTH = 100;
+
+    // Talon CAN ids of the current fields, for the peak current report
+    private static final FlightRecord.Field[] CURRENT_FIELDS = {
+        FlightRecord.Field.CURRENT_LM, FlightRecord.Field.CURRENT_LF, FlightRecord.Field.CURRENT_RM,
+        FlightRecord.Field.CURRENT_RF, FlightRecord.Field.CURRENT_C
+    };
+    private static final int[] CURRENT_PORTS = {
+        DriveBase.LEFT_MASTER_PORT, DriveBase.LEFT_FOLLWER_PORT, DriveBase.RIGHT_MASTER_PORT,
+        DriveBase.RIGHT_FOLLOWER_PORT, DriveBase.CENTER_PORT
+    };
+
+    private final File log;
+    private List<FlightRecord.Field> fields = new ArrayList<>();
+    private double fromSeconds = 0;
+    private double toSeconds = Double.MAX_VALUE;
+    private File csv;
+    private File columns;
+
+    // Running statistics of every field (Welford's algorithm)
+    private final long[] counts = new long[FlightRecord.FIELDS.length];
+    private final double[] mins = new double[FlightRecord.FIELDS.length];
+    private final double[] maxes = new double[FlightRecord.FIELDS.length];
+    private final double[] means = new double[FlightRecord.FIELDS.length];
+    private final double[] squares = new double[FlightRecord.FIELDS.length];
+    private final double[] peakTimes = new double[FlightRecord.FIELDS.length];
+
+    // Loop period and plunger dwell statistics
+    private final Histogram periods = new Histogram(PERIOD_BUCKETS, PERIOD_BUCKET_WIDTH);
+    private final Plunger.plungerState[] states = Plunger.plungerState.values();
+    private final double[] dwellTotal = new double[states.length];
+    private final double[] dwellMax = new double[states.length];
+    private final long[] dwellCount = new long[states.length];
+    private int dwellState = -1;
+    private double dwellStart;
+    private long records = 0;
+    private double firstTime = -1, lastTime = 0;
+
+    /**
+     * Entry point for the decodeLog gradle task.
+     * @param args Pairs of --option value, see the class comment.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: LogDecoder <log.frec> [--csv out.csv] [--columns dir]"
+                    + " [--fields A,B,...] [--from seconds] [--to seconds]");
+            System.exit(1);
+        }
+
+        LogDecoder decoder = new LogDecoder(new File(args[0]));
+        for (int i = 1; i + 1 < args.length; i += 2)
+        {
+            String value = args[i + 1];
+            switch (args[i])
+            {
+            case "--csv":
+                decoder.setCsv(new File(value));
+                break;
+            case "--columns":
+                decoder.setColumns(new File(value));
+                break;
+            case "--fields":
+                List<FlightRecord.Field> selected = new ArrayList<>();
+                for (String name : value.split(","))
+                {
+                    selected.add(FlightRecord.Field.valueOf(name.trim()));
+                }
+                decoder.setFields(selected);
+                break;
+            case "--from":
+                decoder.fromSeconds = Double.parseDouble(value);
+                break;
+            case "--to":
+                decoder.toSeconds = Double.parseDouble(value);
+                break;
+            default:
+                System.out.println("Unknown option " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        try {
+            decoder.run();
+            decoder.printStatistics(System.out);
+        }
+        catch (IOException e) {
+            System.out.println("Unable to decode " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Constructs a new LogDecoder that exports every field and the whole log.
+     * @param log The flight recorder file.
+     */
+    public LogDecoder(File log)
+    {
+        this.log = log;
+        for (FlightRecord.Field field : FlightRecord.FIELDS)
+        {
+            fields.add(field);
+        }
+    }
+
+    /**
+     * Selects the fields written to the CSV and column exports.
+     * @param fields
+     */
+    public void setFields(List<FlightRecord.Field> fields)
+    {
+        this.fields = fields;
+    }
+
+    /**
+     * Limits the exports and statistics to part of the log.
+     * @param fromSeconds Start, in seconds from the first record.
+     * @param toSeconds End, in seconds from the first record.
+     */
+    public void setRange(double fromSeconds, double toSeconds)
+    {
+        this.fromSeconds = fromSeconds;
+        this.toSeconds = toSeconds;
+    }
+
+    /**
+     * Enables CSV export.
+     * @param csv File to write.
+     */
+    public void setCsv(File csv)
+    {
+        this.csv = csv;
+    }
+
+    /**
+     * Enables column export: one file of big endian doubles per field.
+     * @param directory Directory the column files are written to.
+     */
+    public void setColumns(File directory)
+    {
+        columns = directory;
+    }
+
+    /**
+     * Streams through the log once, writing the exports and collecting statistics.
+     * @throws IOException If the file can't be read or has a different schema.
+     */
+    public void run() throws IOException
+    {
+        Writer csvOut = null;
+        DataOutputStream[] columnOut = null;
+        FlightRecord record = new FlightRecord();
+
+        try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            // Header
+            ByteBuffer buffer = ByteBuffer.allocateDirect(
+                    Math.max(FlightRecord.getHeaderSize(), FlightRecord.RECORD_SIZE * RECORDS_PER_READ));
+            buffer.order(FlightRecord.ORDER);
+            buffer.limit(FlightRecord.getHeaderSize());
+            readFully(channel, buffer);
+            buffer.flip();
+            FlightRecord.readHeader(buffer);
+
+            if (csv != null)
+            {
+                csvOut = Files.newBufferedWriter(csv.toPath(), StandardCharsets.US_ASCII);
+                writeCsvHeader(csvOut);
+            }
+            if (columns != null)
+            {
+                columns.mkdirs();
+                columnOut = new DataOutputStream[fields.size()];
+                for (int i = 0; i < columnOut.length; i++)
+                {
+                    columnOut[i] = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(new File(columns, fields.get(i).name() + ".col"))));
+                }
+            }
+
+            // Records, one buffer at a time
+            boolean more = true;
+            buffer.clear();
+            while (more)
+            {
+                more = channel.read(buffer) > 0;
+                buffer.flip();
+                while (record.read(buffer))
+                {
+                    if (!accept(record))
+                    {
+                        continue;
+                    }
+                    if (csvOut != null) writeCsvRow(csvOut, record);
+                    if (columnOut != null) writeColumns(columnOut, record);
+                }
+
+                // Stop at the unused end of a preallocated file
+                if (buffer.remaining() >= FlightRecord.RECORD_SIZE) more = false;
+                buffer.compact();
+            }
+
+            // Close the dwell of the last state
+            trackDwell(-1, lastTime);
+        }
+        finally {
+            if (csvOut != null) csvOut.close();
+            if (columnOut != null)
+            {
+                for (DataOutputStream out : columnOut)
+                {
+                    if (out != null) out.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the statistics collected by run().
+     * @param out
+     */
+    public void printStatistics(PrintStream out)
+    {
+        out.printf("%s: %d records over %.2f s%n", log.getName(), records, lastTime - firstTime);
+
+        out.println();
+        out.println("Loop period (ms)");
+        out.printf("  mean %.2f  p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n", periods.getMean() / 1000,
+                periods.getPercentile(50) / 1000.0, periods.getPercentile(90) / 1000.0,
+                periods.getPercentile(99) / 1000.0, periods.getMax() / 1000.0);
+
+        out.println();
+        out.println("Plunger state dwell (s)");
+        for (int i = 0; i < states.length; i++)
+        {
+            if (dwellCount[i] == 0) continue;
+            out.printf("  %-15s visits %4d  total %8.2f  mean %6.2f  max %6.2f%n", states[i], dwellCount[i],
+                    dwellTotal[i], dwellTotal[i] / dwellCount[i], dwellMax[i]);
+        }
+
+        out.println();
+        out.println("Drive current peaks (A)");
+        for (int i = 0; i < CURRENT_FIELDS.length; i++)
+        {
+            int f = CURRENT_FIELDS[i].ordinal();
+            out.printf("  talon %d (%s)  peak %6.1f at %.2f s  mean %6.1f%n", CURRENT_PORTS[i],
+                    CURRENT_FIELDS[i], maxes[f], peakTimes[f], means[f]);
+        }
+
+        out.println();
+        out.println("Signals");
+        for (FlightRecord.Field field : FlightRecord.FIELDS)
+        {
+            int f = field.ordinal();
+            if (counts[f] == 0) continue;
+            double deviation = counts[f] > 1 ? Math.sqrt(squares[f] / (counts[f] - 1)) : 0;
+            out.printf("  %-15s min %12.4f  max %12.4f  mean %12.4f  stddev %10.4f%n", field, mins[f], maxes[f],
+                    means[f], deviation);
+        }
+    }
+
+    /**
+     * Updates the statistics with a record if it is inside the selected range.
+     * @return If the record is inside the range.
+     */
+    private boolean accept(FlightRecord record)
+    {
+        double time = record.get(FlightRecord.Field.TIMESTAMP) / 1e6;
+        if (firstTime < 0) firstTime = time;
+
+        double relative = time - firstTime;
+        if (relative < fromSeconds || relative > toSeconds) return false;
+
+        // Loop period and dwell time of the previous record's state
+        if (records > 0)
+        {
+            periods.record(Math.round((time - lastTime) * 1e6));
+        }
+        trackDwell((int) record.get(FlightRecord.Field.PLUNGER_STATE), time);
+        lastTime = time;
+        records++;
+
+        for (FlightRecord.Field field : FlightRecord.FIELDS)
+        {
+            int f = field.ordinal();
+            double value = record.get(field);
+            long n = ++counts[f];
+            if (n == 1 || value < mins[f]) mins[f] = value;
+            if (n == 1 || value > maxes[f])
+            {
+                maxes[f] = value;
+                peakTimes[f] = relative;
+            }
+            double delta = value - means[f];
+            means[f] += delta / n;
+            squares[f] += delta * (value - means[f]);
+        }
+        return true;
+    }
+
+    private void trackDwell(int state, double time)
+    {
+        if (state == dwellState) return;
+
+        if (dwellState >= 0 && dwellState < states.length)
+        {
+            double dwell = time - dwellStart;
+            dwellTotal[dwellState] += dwell;
+            dwellMax[dwellState] = Math.max(dwellMax[dwellState], dwell);
+            dwellCount[dwellState]++;
+        }
+        dwellState = state;
+        dwellStart = time;
+    }
+
+    private void writeCsvHeader(Writer out) throws IOException
+    {
+        for (int i = 0; i < fields.size(); i++)
+        {
+            if (i > 0) out.write(',');
+            out.write(fields.get(i).name());
+        }
+        out.write('\n');
+    }
+
+    private void writeCsvRow(Writer out, FlightRecord record) throws IOException
+    {
+        for (int i = 0; i < fields.size(); i++)
+        {
+            if (i > 0) out.write(',');
+            FlightRecord.Field field = fields.get(i);
+            if (field.type == FlightRecord.Type.FLOAT)
+            {
+                out.write(Float.toString((float) record.get(field)));
+            }
+            else out.write(Long.toString((long) record.get(field)));
+        }
+        out.write('\n');
+    }
+
+    private void writeColumns(DataOutputStream[] out, FlightRecord record) throws IOException
+    {
+        for (int i = 0; i < out.length; i++)
+        {
+            out[i].writeDouble(record.get(fields.get(i)));
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+            {
+                throw new IOException("File ends inside the header");
+            }
+        }
+    }
+}
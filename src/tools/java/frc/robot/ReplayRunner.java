@@ -0,0 +1,283 @@
+package frc.robot;
+
+// Imports for the ReplayRunner class
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Methods:
+ * public static void main(String[] args)
+ * public ReplayRunner(File inputs) throws IOException
+ * public void setRecordName(String name)
+ * public void setPneumatics(boolean pneumatics)
+ * public void setAutoTrajectory(Trajectory trajectory)
+ * public long run()
+ * public void printStatistics(PrintStream out)
+ * private long fold(long checksum, double value)
+ */
+
+/**
+ * Desktop tool that replays an input log from InputRecorder through a
+ * FakeRobot as fast as the CPU allows. Each record puts both joysticks back
+ * into the state the robot's cycle saw, steps the fake clock to the
+ * record's time, and calls the same RobotLoop mode functions the robot did.
+ * The replay ends at the first record without a marker, so a log the robot
+ * never closed can be replayed as well.
+ *
+ * Every cycle's outputs are folded into a checksum. Two runs of the same
+ * build and log give the same checksum, so a changed checksum after a code
+ * change means the robot would have driven differently. With --repeat the
+ * match is replayed several times for profiling and the checksums compared.
+ * --record writes a flight log of the replay into FakeRobot's log directory
+ * for decodeLog, --pneumatics runs the plunger against the VacuumModel, and
+ * --trajectory gives autonomous the trajectory file the robot had selected.
+ *
+ * Run with: ./gradlew replay -Pinputs=file.hid [-Prepeat=n] [-Precord=name] [-Ppneumatics]
+ *           [-Ptrajectory=file.traj]
+ */
+public class ReplayRunner {
+    private final File inputs;
+    private final ByteBuffer buffer;
+    private final int recordCount;
+    private String recordName;
+    private boolean pneumatics = false;
+    private Trajectory trajectory;
+
+    // Results of the last run
+    private FakeRobot robot;
+    private double matchSeconds;
+    private long wallNanos;
+    private int cycles;
+
+    /**
+     * Entry point for the replay gradle task.
+     * @param args The input log, then pairs of --option value, see the class comment.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: ReplayRunner <inputs.hid> [--repeat n] [--record name] [--pneumatics]"
+                    + " [--trajectory file.traj]");
+            System.exit(1);
+        }
+
+        int repeat = 1;
+        ReplayRunner runner = null;
+        try {
+            runner = new ReplayRunner(new File(args[0]));
+        }
+        catch (IOException e) {
+            System.out.println("Unable to read " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+            case "--repeat":
+                repeat = Integer.parseInt(args[++i]);
+                break;
+            case "--record":
+                runner.setRecordName(args[++i]);
+                break;
+            case "--pneumatics":
+                runner.setPneumatics(true);
+                break;
+            case "--trajectory":
+                Trajectory trajectory = Trajectory.open(new File(args[++i]));
+                if (trajectory == null) System.exit(1);
+                runner.setAutoTrajectory(trajectory);
+                break;
+            default:
+                System.out.println("Unknown option " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        long first = 0;
+        boolean deterministic = true;
+        for (int run = 0; run < repeat; run++)
+        {
+            long checksum = runner.run();
+            if (run == 0) first = checksum;
+            else if (checksum != first) deterministic = false;
+            System.out.printf("Run %d: checksum %016x%n", run + 1, checksum);
+        }
+        runner.printStatistics(System.out);
+        if (!deterministic)
+        {
+            System.out.println("Runs gave different checksums, the replay isn't deterministic");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Constructs a new ReplayRunner and maps the input log.
+     * @param inputs
+     * @throws IOException If the file isn't an input log from this build.
+     */
+    public ReplayRunner(File inputs) throws IOException
+    {
+        this.inputs = inputs;
+        try (RandomAccessFile file = new RandomAccessFile(inputs, "r"); FileChannel channel = file.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(InputRecorder.ORDER);
+        }
+        InputRecorder.readHeader(buffer);
+
+        // A log that wasn't closed still has its zero tail, so count up to the first missing marker
+        int count = 0;
+        while (InputRecorder.hasRecord(buffer))
+        {
+            buffer.position(buffer.position() + InputRecorder.RECORD_SIZE);
+            count++;
+        }
+        recordCount = count;
+    }
+
+    /**
+     * Writes a flight log of each run, replacing the previous run's.
+     * @param name File name without extension.
+     */
+    public void setRecordName(String name)
+    {
+        recordName = name;
+    }
+
+    /**
+     * Runs the plunger's air system with the VacuumModel during the replay.
+     * @param pneumatics
+     */
+    public void setPneumatics(boolean pneumatics)
+    {
+        this.pneumatics = pneumatics;
+    }
+
+    /**
+     * Selects the trajectory autonomous follows in the replay.
+     * @param trajectory The trajectory, or null to drive autonomous by hand.
+     */
+    public void setAutoTrajectory(Trajectory trajectory)
+    {
+        this.trajectory = trajectory;
+    }
+
+    /**
+     * Replays the whole log on a new FakeRobot.
+     * @return The checksum of every cycle's outputs.
+     */
+    public long run()
+    {
+        RecordedJoystick joyR = new RecordedJoystick(null);
+        RecordedJoystick joyL = new RecordedJoystick(null);
+        robot = new FakeRobot(joyR, joyL);
+        if (pneumatics)
+        {
+            robot.pneumatics = new VacuumModel(robot.upstreamSolenoid, robot.downstreamSolenoid, robot.compressor,
+                    robot.pressureSensor, robot.vacuumSensor);
+        }
+        robot.loop.setAutoTrajectory(trajectory);
+        if (recordName != null) robot.recorder.open(recordName);
+
+        InputRecorder.Mode[] modes = InputRecorder.Mode.values();
+        InputRecorder.Mode mode = null;
+        long checksum = 17;
+        long firstTime = -1, lastTime = 0;
+        cycles = 0;
+
+        long start = System.nanoTime();
+        buffer.position(InputRecorder.HEADER_SIZE);
+        for (int i = 0; i < recordCount; i++)
+        {
+            buffer.get(); // Record marker
+            long time = buffer.getLong();
+            InputRecorder.Mode recordMode = modes[buffer.get()];
+            joyR.read(buffer);
+            joyL.read(buffer);
+
+            // Let the clock and the fast threads catch up to this cycle
+            if (firstTime < 0) firstTime = time;
+            else if (time > lastTime) robot.step((time - lastTime) / 1e6);
+            lastTime = time;
+
+            if (recordMode != mode)
+            {
+                switch (recordMode)
+                {
+                case DISABLED:
+                    robot.loop.disabledInit();
+                    break;
+                case AUTONOMOUS:
+                    robot.loop.autonomousInit();
+                    break;
+                case TELEOP:
+                    robot.loop.teleopInit();
+                    break;
+                case TEST:
+                    break;
+                }
+                mode = recordMode;
+            }
+
+            switch (mode)
+            {
+            case DISABLED:
+                continue;
+            case AUTONOMOUS:
+                robot.loop.autonomousPeriodic();
+                break;
+            case TELEOP:
+                robot.loop.teleopPeriodic();
+                break;
+            case TEST:
+                robot.loop.testPeriodic();
+                break;
+            }
+            cycles++;
+
+            checksum = fold(checksum, robot.talLM.output);
+            checksum = fold(checksum, robot.talRM.output);
+            checksum = fold(checksum, robot.talC.output);
+            checksum = fold(checksum, robot.talPillow.output);
+            checksum = fold(checksum, robot.upstreamSolenoid.on ? 1 : 0);
+            checksum = fold(checksum, robot.downstreamSolenoid.on ? 1 : 0);
+            checksum = fold(checksum, robot.piston.value.ordinal());
+            checksum = fold(checksum, robot.compressor.enabled() ? 1 : 0);
+        }
+        wallNanos = System.nanoTime() - start;
+        matchSeconds = firstTime < 0 ? 0 : (lastTime - firstTime) / 1e6;
+        robot.recorder.close();
+        return checksum;
+    }
+
+    /**
+     * Prints the timing of the last run.
+     * @param out
+     */
+    public void printStatistics(PrintStream out)
+    {
+        double wallSeconds = wallNanos / 1e9;
+        Histogram loop = robot.loop.getLoopProbe().getHistogram();
+        out.printf("%s: %d records, %d cycles%n", inputs.getName(), recordCount, cycles);
+        out.printf("Match time %.1f s replayed in %.2f s (%.0fx real time)%n", matchSeconds, wallSeconds,
+                wallSeconds > 0 ? matchSeconds / wallSeconds : 0);
+        out.printf("Loop p50 %d us, p99 %d us, max %d us%n", loop.getPercentile(50), loop.getPercentile(99),
+                loop.getMax());
+        if (pneumatics)
+        {
+            out.printf("Air used %.1f, hatch drops %d%n", robot.pneumatics.getAirUsed(), robot.pneumatics.getDrops());
+        }
+    }
+
+    /**
+     * Mixes one output into the checksum.
+     */
+    private long fold(long checksum, double value)
+    {
+        return checksum * 31 + Double.doubleToLongBits(value);
+    }
+}
@@ -0,0 +1,428 @@
+package frc.robot;
+
+// Imports for the Simulator class
+import java.io.File;
+import java.io.PrintStream;
+
+/** Methods:
+ * public static void main(String[] args)
+ * public Simulator(PrintStream out)
+ * public void setAutoTrajectory(Trajectory trajectory)
+ * public void runDrive()
+ * public void runHatch()
+ * public void runAutonomous()
+ * private FakeRobot createRobot()
+ * private void hold(double seconds)
+ * private void cycle()
+ * private void driveStep(String name, double leftY, double rightY, double x, Axis axis)
+ * private void setSticks(double leftY, double rightY, double x)
+ * private static String latency(double seconds)
+ */
+
+/**
+ * Desktop tool that runs the robot code against the DriveModel and
+ * VacuumModel in fixed steps, as fast as the CPU allows, and prints how the
+ * robot responds. Run it before and after a control change and compare.
+ *
+ * drive: full stick steps forward, sideways and turning in teleop, each
+ *        followed by letting go. Reports the 10-90% rise time, speed reached,
+ *        overshoot, how long and far the robot takes to stop, the peak drive
+ *        current, lowest battery voltage and heading drift.
+ * hatch: puts a hatch on the cup and presses the suction button, holds it,
+ *        then presses again to let go. Reports the time until the cup grips
+ *        and the plunger reaches HOLD, the time until the hatch is released,
+ *        vacuum refreshes while holding, the air used, and the plunger's
+ *        own latency measurements and transition log.
+ * auto:  runs autonomous with the selected trajectory, hab_to_left_cargo from
+ *        the gradle task unless another is given, and reports where the
+ *        robot really ended up against where the pose estimator thinks it is.
+ *
+ * Run with: ./gradlew simulate [-Pscenario=drive|hatch|auto] [-Ptrajectory=file.traj]
+ */
+public class Simulator {
+    // Robot loop period, and the step the models and fast threads run at (s)
+    private static final double LOOP_PERIOD = 0.02;
+    private static final double TICK = 1.0 / HeadingController.RATE;
+
+    // Joystick buttons the scenarios press, as mapped in RobotLoop
+    private static final int SUCTION_BUTTON = 6;
+
+    // How long each drive step is held, then let go (s)
+    private static final double STEP_TIME = 2;
+    private static final double RELEASE_TIME = 1.5;
+
+    // Speed the robot counts as stopped below (m/s or deg/s)
+    private static final double STOPPED_SPEED = 0.01;
+
+    // How long the hatch is held before letting go, and the longest any hatch stage may take (s)
+    private static final double HATCH_HOLD_TIME = 10;
+    private static final double HATCH_TIMEOUT = 3;
+
+    // Time allowed for autonomous (s)
+    private static final double AUTONOMOUS_TIME = 15;
+
+    private final PrintStream out;
+    private Trajectory trajectory;
+
+    // Robot for the scenario being run
+    private FakeRobot robot;
+    private InputRecorder.Mode mode;
+    private double time;
+
+    // Reused by the drive steps, one value per tick
+    private final double[] samples = new double[(int) Math.ceil((STEP_TIME + RELEASE_TIME) / TICK) + 1];
+
+    /**
+     * The robot speed a drive step measures.
+     */
+    private interface Axis
+    {
+        double get(DriveModel model);
+    }
+
+    /**
+     * Entry point for the simulate gradle task.
+     * @param args Pairs of --option value, see the class comment.
+     */
+    public static void main(String[] args)
+    {
+        String scenario = null;
+        Simulator simulator = new Simulator(System.out);
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+            case "--scenario":
+                scenario = args[++i];
+                if (!scenario.equals("drive") && !scenario.equals("hatch") && !scenario.equals("auto"))
+                {
+                    System.out.println("Unknown scenario " + scenario);
+                    System.exit(1);
+                }
+                break;
+            case "--trajectory":
+                Trajectory trajectory = Trajectory.open(new File(args[++i]));
+                if (trajectory == null) System.exit(1);
+                simulator.setAutoTrajectory(trajectory);
+                break;
+            default:
+                System.out.println("Usage: Simulator [--scenario drive|hatch|auto] [--trajectory file.traj]");
+                System.exit(1);
+            }
+        }
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        if (scenario == null || scenario.equals("drive"))
+        {
+            simulator.runDrive();
+            simulated += simulator.time;
+        }
+        if (scenario == null || scenario.equals("hatch"))
+        {
+            simulator.runHatch();
+            simulated += simulator.time;
+        }
+        if (scenario == null || scenario.equals("auto"))
+        {
+            simulator.runAutonomous();
+            simulated += simulator.time;
+        }
+
+        double wall = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Simulated %.1f s in %.2f s (%.0fx real time)%n", simulated, wall, simulated / wall);
+    }
+
+    /**
+     * Constructs a new Simulator.
+     * @param out Where the results are printed.
+     */
+    public Simulator(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Selects the trajectory the auto scenario follows.
+     * @param trajectory
+     */
+    public void setAutoTrajectory(Trajectory trajectory)
+    {
+        this.trajectory = trajectory;
+    }
+
+    /**
+     * Runs the teleop drive steps.
+     */
+    public void runDrive()
+    {
+        robot = createRobot();
+        robot.loop.teleopInit();
+        mode = InputRecorder.Mode.TELEOP;
+
+        out.println("Drive response (rise 10-90%, speed, overshoot, stop time and distance, peak current, min voltage)");
+        driveStep("Forward", -1, -1, 0, DriveModel::getForwardVelocity);
+        driveStep("Strafe", 0, 0, 1, DriveModel::getStrafeVelocity);
+        driveStep("Turn", -1, 1, 0, DriveModel::getTurnRate);
+    }
+
+    /**
+     * Runs a hatch pickup, hold and release in teleop.
+     */
+    public void runHatch()
+    {
+        robot = createRobot();
+        robot.loop.teleopInit();
+        mode = InputRecorder.Mode.TELEOP;
+        Plunger plunger = robot.plunger;
+        VacuumModel pneumatics = robot.pneumatics;
+        hold(0.5);
+
+        // Acquire
+        pneumatics.attachHatch();
+        double airBefore = pneumatics.getAirUsed();
+        double pressed = time;
+        robot.joyR.setButton(SUCTION_BUTTON, true);
+        cycle();
+        robot.joyR.setButton(SUCTION_BUTTON, false);
+        double gripped = -1, holding = -1;
+        while (time - pressed < HATCH_TIMEOUT && (gripped < 0 || holding < 0))
+        {
+            cycle();
+            if (gripped < 0 && pneumatics.isHatchGripped()) gripped = time - pressed;
+            if (holding < 0 && plunger.state == Plunger.plungerState.HOLD) holding = time - pressed;
+        }
+        double acquireAir = pneumatics.getAirUsed() - airBefore;
+
+        // Hold
+        airBefore = pneumatics.getAirUsed();
+        int predictive = plunger.getPredictiveRefreshes();
+        int reactive = plunger.getReactiveRefreshes();
+        hold(HATCH_HOLD_TIME);
+        double leak = plunger.getLeakRate();
+        double holdAir = pneumatics.getAirUsed() - airBefore;
+        predictive = plunger.getPredictiveRefreshes() - predictive;
+        reactive = plunger.getReactiveRefreshes() - reactive;
+
+        // Release
+        pressed = time;
+        robot.joyR.setButton(SUCTION_BUTTON, true);
+        cycle();
+        robot.joyR.setButton(SUCTION_BUTTON, false);
+        double released = -1;
+        while (time - pressed < HATCH_TIMEOUT && released < 0)
+        {
+            cycle();
+            if (!pneumatics.isHatchAttached()) released = time - pressed;
+        }
+
+        // Let the drop finish so the plunger is back to CLOSED
+        hold(Plunger.DROP_TIME);
+
+        out.println("Hatch");
+        out.printf("  Acquire: gripped %s, HOLD %s, air %.2f psi%n", latency(gripped), latency(holding), acquireAir);
+        out.printf("  Hold %.0f s: air %.2f psi (%.3f psi/s), refreshes %d predictive %d reactive, leak %.3f psi/s%n",
+                HATCH_HOLD_TIME, holdAir, holdAir / HATCH_HOLD_TIME, predictive, reactive, leak);
+        out.printf("  Release: %s, drops %d%n", latency(released), pneumatics.getDrops());
+        out.printf("  Tank %.1f psi, total air %.2f psi, compressor ran %.1f s%n", pneumatics.getTankPressure(),
+                pneumatics.getAirUsed(), pneumatics.getCompressorTime());
+        out.printf("  Plunger measured: button to HOLD %.0f ms, button to vented %.0f ms%n",
+                plunger.getAcquireLatency().getMean() / 1000, plunger.getReleaseLatency().getMean() / 1000);
+
+        // The transitions, timed from the first
+        long count = plunger.getTransitionCount();
+        long first = Math.max(0, count - Plunger.TRANSITION_LOG_LENGTH);
+        for (long i = first; i < count; i++)
+        {
+            out.printf("    %8.3f s  %-14s -> %-14s %6.2f psi%n",
+                    (plunger.getTransitionTime(i) - plunger.getTransitionTime(first)) / 1e6,
+                    plunger.getTransitionFrom(i), plunger.getTransitionTo(i), plunger.getTransitionVacuum(i));
+        }
+    }
+
+    /**
+     * Runs autonomous with the selected trajectory, or reports that there is none.
+     */
+    public void runAutonomous()
+    {
+        robot = createRobot();
+        time = 0;
+        if (trajectory == null)
+        {
+            out.println("Autonomous: no trajectory, pass one with --trajectory");
+            return;
+        }
+
+        // Start the model where the trajectory starts, as the field setup would
+        TrajectoryPoint first = new TrajectoryPoint();
+        TrajectoryPoint last = new TrajectoryPoint();
+        trajectory.sample(0, first);
+        trajectory.sample(trajectory.getDuration(), last);
+        robot.drivetrain.reset(first.x, first.y, first.heading);
+        robot.step(TICK);
+
+        robot.loop.setAutoTrajectory(trajectory);
+        robot.loop.autonomousInit();
+        mode = InputRecorder.Mode.AUTONOMOUS;
+        TrajectoryFollower follower = robot.loop.getTrajectoryFollower();
+        double finished = -1;
+        while (time < AUTONOMOUS_TIME && finished < 0)
+        {
+            cycle();
+            if (!follower.isFollowing()) finished = time;
+        }
+
+        double maxForward = 0, maxLateral = 0, maxHeading = 0;
+        for (int i = 0; i < follower.getStepCount(); i++)
+        {
+            maxForward = Math.max(maxForward, Math.abs(follower.getForwardError(i)));
+            maxLateral = Math.max(maxLateral, Math.abs(follower.getLateralError(i)));
+            maxHeading = Math.max(maxHeading, Math.abs(follower.getHeadingError(i)));
+        }
+        Pose pose = new Pose();
+        robot.loop.getPoseEstimator().getPose(pose);
+        DriveModel model = robot.drivetrain;
+
+        out.printf("Autonomous %s (%.2f s)%n", trajectory.getName(), trajectory.getDuration());
+        out.printf("  Finished %s%n", finished < 0 ? "never" : String.format("at %.2f s", finished));
+        out.printf("  Max tracking error: forward %.3f m, lateral %.3f m, heading %.1f deg%n", maxForward, maxLateral,
+                maxHeading);
+        out.printf("  End: robot %.3f %.3f %.1f, estimate %.3f %.3f %.1f, target %.3f %.3f %.1f%n", model.getX(),
+                model.getY(), model.getHeading(), pose.getX(), pose.getY(), pose.getHeading(), last.x, last.y,
+                last.heading);
+    }
+
+    /**
+     * Builds a fake robot with the drive and air system models attached.
+     */
+    private FakeRobot createRobot()
+    {
+        FakeRobot robot = new FakeRobot();
+        robot.drivetrain = new DriveModel(robot.talLM, robot.talLF, robot.talRM, robot.talRF, robot.talC,
+                robot.imuBus, robot.battery);
+        robot.pneumatics = new VacuumModel(robot.upstreamSolenoid, robot.downstreamSolenoid, robot.compressor,
+                robot.pressureSensor, robot.vacuumSensor);
+        robot.step(TICK);
+        time = 0;
+        return robot;
+    }
+
+    /**
+     * Runs the robot for a while with the inputs as they are.
+     */
+    private void hold(double seconds)
+    {
+        double end = time + seconds;
+        while (time < end - 1e-9) cycle();
+    }
+
+    /**
+     * Runs one robot loop in the current mode and the models up to the next one.
+     */
+    private void cycle()
+    {
+        switch (mode)
+        {
+        case AUTONOMOUS:
+            robot.loop.autonomousPeriodic();
+            break;
+        case TELEOP:
+            robot.loop.teleopPeriodic();
+            break;
+        default:
+            break;
+        }
+        robot.step(LOOP_PERIOD);
+        time += LOOP_PERIOD;
+    }
+
+    /**
+     * Holds the sticks at a step in teleop, lets go, and prints the response of one axis.
+     * @param name
+     * @param leftY Left stick y, pushed forward is negative.
+     * @param rightY Right stick y, pushed forward is negative.
+     * @param x Both sticks' x, right is positive.
+     * @param axis The speed to measure.
+     */
+    private void driveStep(String name, double leftY, double rightY, double x, Axis axis)
+    {
+        DriveModel model = robot.drivetrain;
+        double startHeading = model.getHeading();
+        double peakCurrent = 0, minVoltage = Double.MAX_VALUE;
+        int stepTicks = (int) Math.round(STEP_TIME / TICK);
+        int n = 0;
+
+        // Sample every tick, running the loop every LOOP_PERIOD
+        int ticksPerCycle = (int) Math.round(LOOP_PERIOD / TICK);
+        setSticks(leftY, rightY, x);
+        double stopX = 0, stopY = 0, stopHeading = 0;
+        while (n < samples.length)
+        {
+            if (n == stepTicks)
+            {
+                setSticks(0, 0, 0);
+                stopX = model.getX();
+                stopY = model.getY();
+                stopHeading = model.getHeading();
+            }
+            if (n % ticksPerCycle == 0) robot.loop.teleopPeriodic();
+            robot.step(TICK);
+            time += TICK;
+            samples[n++] = axis.get(model);
+            peakCurrent = Math.max(peakCurrent, model.getDriveCurrent());
+            minVoltage = Math.min(minVoltage, robot.battery.voltage);
+        }
+
+        // Rise time against the speed held at the end of the step
+        double reached = samples[stepTicks - 1];
+        double peak = 0;
+        int rise10 = -1, rise90 = -1;
+        for (int i = 0; i < stepTicks; i++)
+        {
+            double v = samples[i] / reached;
+            if (rise10 < 0 && v >= 0.1) rise10 = i;
+            if (rise90 < 0 && v >= 0.9) rise90 = i;
+            peak = Math.max(peak, v);
+        }
+        int stopped = -1;
+        for (int i = stepTicks; i < n; i++)
+        {
+            if (Math.abs(samples[i]) < STOPPED_SPEED)
+            {
+                stopped = i - stepTicks + 1;
+                break;
+            }
+        }
+
+        // Coasting distance along the measured axis
+        double coast;
+        if (name.equals("Turn")) coast = model.getHeading() - stopHeading;
+        else coast = Math.hypot(model.getX() - stopX, model.getY() - stopY);
+        double drift = name.equals("Turn") ? 0 : model.getHeading() - startHeading;
+
+        out.printf("  %-8s rise %s, %.2f %s, overshoot %.1f%%, stop %s over %.3f %s, %.0f A, %.2f V",
+                name, rise90 < 0 ? "never" : String.format("%.3f s", (rise90 - rise10) * TICK), reached,
+                name.equals("Turn") ? "deg/s" : "m/s", Math.max(0, peak - 1) * 100,
+                stopped < 0 ? "never" : String.format("%.3f s", stopped * TICK), coast,
+                name.equals("Turn") ? "deg" : "m", peakCurrent, minVoltage);
+        if (!name.equals("Turn")) out.printf(", heading drift %.2f deg", drift);
+        out.println();
+
+        // Settle before the next step
+        hold(0.5);
+    }
+
+    private void setSticks(double leftY, double rightY, double x)
+    {
+        robot.joyL.axes[1] = leftY;
+        robot.joyR.axes[1] = rightY;
+        robot.joyL.axes[0] = x;
+        robot.joyR.axes[0] = x;
+    }
+
+    private static String latency(double seconds)
+    {
+        return seconds < 0 ? "timed out" : String.format("%.0f ms", seconds * 1000);
+    }
+}
@@ -0,0 +1,304 @@
+package frc.robot;
+
+// Imports for the TrajectoryGenerator class
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Methods:
+ * public static void main(String[] args)
+ * public TrajectoryGenerator(File pathFile) throws IOException
+ * public void generate(File output) throws IOException
+ * public double getDuration()
+ * private void buildPath()
+ * private void limitVelocity()
+ * private void writePoints(ByteBuffer buffer, int pointCount)
+ */
+
+/**
+ * Desktop tool that turns the path files in src/tools/paths into trajectory
+ * files for the robot. A path is a list of waypoints with a heading at each;
+ * the generator fits a Catmull-Rom spline through the positions, interpolates
+ * the heading along the distance travelled, and gives the path the fastest
+ * speed profile that stays inside the velocity, acceleration and rotation
+ * limits. The result is sampled at a fixed period and written with
+ * Trajectory's file layout, so the robot only has to map and index it.
+ *
+ * Path file lines, with # starting a comment:
+ *   maxVelocity <m/s>
+ *   maxAcceleration <m/s^2>
+ *   maxRotation <deg/s>
+ *   waypoint <x m> <y m> <heading deg>
+ *
+ * Run with: ./gradlew generateTrajectories
+ */
+public class TrajectoryGenerator {
+    // Time between trajectory points, the BNO055's output period (seconds)
+    private static final double PERIOD = 0.01;
+
+    // Spline samples between two waypoints when measuring the path
+    private static final int SAMPLES_PER_SEGMENT = 500;
+
+    // Limits used when a path file doesn't set them
+    private static final double DEFAULT_MAX_VELOCITY = 2;
+    private static final double DEFAULT_MAX_ACCELERATION = 2;
+    private static final double DEFAULT_MAX_ROTATION = 180;
+
+    private final String name;
+    private double maxVelocity = DEFAULT_MAX_VELOCITY;
+    private double maxAcceleration = DEFAULT_MAX_ACCELERATION;
+    private double maxRotation = DEFAULT_MAX_ROTATION;
+    private final List<double[]> waypoints = new ArrayList<>();
+
+    // The path measured at every spline sample
+    private double[] distance, xs, ys, headings, velocity, times;
+
+    /**
+     * Generates a trajectory for every path file in a directory.
+     * @param args Path directory, output directory.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 2) {
+            System.out.println("Usage: TrajectoryGenerator <path directory> <output directory>");
+            System.exit(1);
+        }
+
+        File[] paths = new File(args[0]).listFiles((dir, name) -> name.endsWith(".path"));
+        if (paths == null) {
+            System.out.println("No path directory at " + args[0]);
+            System.exit(1);
+        }
+
+        File output = new File(args[1]);
+        output.mkdirs();
+        boolean failed = false;
+        for (File path : paths) {
+            try {
+                TrajectoryGenerator generator = new TrajectoryGenerator(path);
+                File file = new File(output, generator.name + Trajectory.EXTENSION);
+                generator.generate(file);
+                System.out.printf("%s: %.2f s, %d bytes%n", generator.name, generator.getDuration(), file.length());
+            }
+            catch (IOException | RuntimeException e) {
+                System.out.println(path.getName() + ": " + e.getMessage());
+                failed = true;
+            }
+        }
+        if (failed) System.exit(1);
+    }
+
+    /**
+     * Constructs a new TrajectoryGenerator from a path file.
+     * @param pathFile
+     * @throws IOException If the file can't be read or has fewer than two waypoints.
+     */
+    public TrajectoryGenerator(File pathFile) throws IOException
+    {
+        String fileName = pathFile.getName();
+        name = fileName.substring(0, fileName.length() - ".path".length());
+
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(pathFile.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty()) continue;
+
+            try {
+                switch (words[0]) {
+                case "maxVelocity":
+                    maxVelocity = Double.parseDouble(words[1]);
+                    break;
+                case "maxAcceleration":
+                    maxAcceleration = Double.parseDouble(words[1]);
+                    break;
+                case "maxRotation":
+                    maxRotation = Double.parseDouble(words[1]);
+                    break;
+                case "waypoint":
+                    waypoints.add(new double[] {
+                        Double.parseDouble(words[1]), Double.parseDouble(words[2]), Double.parseDouble(words[3])
+                    });
+                    break;
+                default:
+                    throw new IOException("Unknown keyword " + words[0] + " on line " + lineNumber);
+                }
+            }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Bad " + words[0] + " on line " + lineNumber);
+            }
+        }
+
+        if (waypoints.size() < 2) throw new IOException("A path needs at least two waypoints");
+
+        // Heading is interpolated by distance, so the robot can't turn in place
+        for (int i = 1; i < waypoints.size(); i++) {
+            double[] a = waypoints.get(i - 1), b = waypoints.get(i);
+            if (a[0] == b[0] && a[1] == b[1]) {
+                throw new IOException("Waypoints " + (i - 1) + " and " + i + " are at the same position");
+            }
+        }
+    }
+
+    /**
+     * Builds the trajectory and writes it to a file.
+     * @param output
+     * @throws IOException
+     */
+    public void generate(File output) throws IOException
+    {
+        buildPath();
+        limitVelocity();
+
+        int pointCount = (int) Math.ceil(getDuration() / PERIOD) + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(Trajectory.HEADER_SIZE + pointCount * Trajectory.POINT_SIZE)
+                .order(Trajectory.ORDER);
+        Trajectory.writeHeader(buffer, pointCount, PERIOD);
+        writePoints(buffer, pointCount);
+        Files.write(output.toPath(), buffer.array());
+    }
+
+    /**
+     * Accessor method for the time the trajectory takes, once generated.
+     * @return The duration in seconds.
+     */
+    public double getDuration()
+    {
+        return times[times.length - 1];
+    }
+
+    /**
+     * Samples the spline through the waypoints, measuring the distance along
+     * it and interpolating the heading between waypoints by distance.
+     */
+    private void buildPath()
+    {
+        int segments = waypoints.size() - 1;
+        int samples = segments * SAMPLES_PER_SEGMENT + 1;
+        distance = new double[samples];
+        xs = new double[samples];
+        ys = new double[samples];
+        headings = new double[samples];
+
+        int index = 0;
+        for (int s = 0; s < segments; s++) {
+            double[] p0 = waypoints.get(Math.max(s - 1, 0));
+            double[] p1 = waypoints.get(s);
+            double[] p2 = waypoints.get(s + 1);
+            double[] p3 = waypoints.get(Math.min(s + 2, segments));
+
+            // Catmull-Rom tangents, one sided at the ends of the path
+            double t1x = (p2[0] - p0[0]) / (s == 0 ? 1 : 2);
+            double t1y = (p2[1] - p0[1]) / (s == 0 ? 1 : 2);
+            double t2x = (p3[0] - p1[0]) / (s == segments - 1 ? 1 : 2);
+            double t2y = (p3[1] - p1[1]) / (s == segments - 1 ? 1 : 2);
+
+            int start = index;
+            for (int i = s == 0 ? 0 : 1; i <= SAMPLES_PER_SEGMENT; i++) {
+                double u = (double) i / SAMPLES_PER_SEGMENT;
+                double u2 = u * u, u3 = u2 * u;
+                double h00 = 2 * u3 - 3 * u2 + 1, h10 = u3 - 2 * u2 + u;
+                double h01 = -2 * u3 + 3 * u2, h11 = u3 - u2;
+                xs[index] = h00 * p1[0] + h10 * t1x + h01 * p2[0] + h11 * t2x;
+                ys[index] = h00 * p1[1] + h10 * t1y + h01 * p2[1] + h11 * t2y;
+                if (index > 0) {
+                    distance[index] = distance[index - 1]
+                            + Math.hypot(xs[index] - xs[index - 1], ys[index] - ys[index - 1]);
+                }
+                index++;
+            }
+
+            // Heading moves from one waypoint's to the next in step with distance
+            double length = distance[index - 1] - distance[Math.max(start - 1, 0)];
+            for (int i = Math.max(start - 1, 0); i < index; i++) {
+                double fraction = length > 0 ? (distance[i] - distance[Math.max(start - 1, 0)]) / length
+                        : (double) (i - start + 1) / SAMPLES_PER_SEGMENT;
+                headings[i] = p1[2] + (p2[2] - p1[2]) * fraction;
+            }
+        }
+    }
+
+    /**
+     * Finds the fastest speed at every sample that stays within the limits,
+     * starting and ending at rest, then the time each sample is reached.
+     */
+    private void limitVelocity()
+    {
+        int samples = distance.length;
+        velocity = new double[samples];
+        times = new double[samples];
+
+        // Speed limits from the path shape at each sample
+        for (int i = 0; i < samples; i++) {
+            int a = Math.max(i - 1, 0), b = Math.min(i + 1, samples - 1);
+            double ds = distance[b] - distance[a];
+            double limit = maxVelocity;
+            if (ds > 0) {
+                // Rotation limit from how fast the heading changes with distance
+                double turn = Math.abs(headings[b] - headings[a]) / ds;
+                if (turn > 0) limit = Math.min(limit, maxRotation / turn);
+
+                // Centripetal limit from the curvature of the spline
+                double angleA = Math.atan2(ys[i] - ys[a], xs[i] - xs[a]);
+                double angleB = Math.atan2(ys[b] - ys[i], xs[b] - xs[i]);
+                double bend = Math.abs(Math.IEEEremainder(angleB - angleA, 2 * Math.PI));
+                if (i > 0 && i < samples - 1 && bend > 1e-9) {
+                    limit = Math.min(limit, Math.sqrt(maxAcceleration * (ds / 2) / bend));
+                }
+            }
+            velocity[i] = limit;
+        }
+        velocity[0] = 0;
+        velocity[samples - 1] = 0;
+
+        // Acceleration limit forwards, then deceleration limit backwards
+        for (int i = 1; i < samples; i++) {
+            double ds = distance[i] - distance[i - 1];
+            velocity[i] = Math.min(velocity[i], Math.sqrt(velocity[i - 1] * velocity[i - 1] + 2 * maxAcceleration * ds));
+        }
+        for (int i = samples - 2; i >= 0; i--) {
+            double ds = distance[i + 1] - distance[i];
+            velocity[i] = Math.min(velocity[i], Math.sqrt(velocity[i + 1] * velocity[i + 1] + 2 * maxAcceleration * ds));
+        }
+
+        for (int i = 1; i < samples; i++) {
+            double ds = distance[i] - distance[i - 1];
+            double average = (velocity[i] + velocity[i - 1]) / 2;
+            times[i] = times[i - 1] + (average > 0 ? ds / average : 0);
+        }
+    }
+
+    /**
+     * Resamples the path at the fixed period and writes every point.
+     */
+    private void writePoints(ByteBuffer buffer, int pointCount)
+    {
+        int samples = distance.length;
+        int i = 1;
+        for (int point = 0; point < pointCount; point++) {
+            double time = point * PERIOD;
+            while (i < samples - 1 && times[i] < time) i++;
+
+            // Interpolate between the two samples around this time
+            double span = times[i] - times[i - 1];
+            double t = span > 0 ? Math.max(0, Math.min(1, (time - times[i - 1]) / span)) : 1;
+            double x = xs[i - 1] + (xs[i] - xs[i - 1]) * t;
+            double y = ys[i - 1] + (ys[i] - ys[i - 1]) * t;
+            double heading = headings[i - 1] + (headings[i] - headings[i - 1]) * t;
+            double speed = velocity[i - 1] + (velocity[i] - velocity[i - 1]) * t;
+
+            // Direction of travel and heading change per meter along the path
+            double ds = distance[i] - distance[i - 1];
+            double dx = ds > 0 ? (xs[i] - xs[i - 1]) / ds : 0;
+            double dy = ds > 0 ? (ys[i] - ys[i - 1]) / ds : 0;
+            double turn = ds > 0 ? (headings[i] - headings[i - 1]) / ds : 0;
+            Trajectory.writePoint(buffer, x, y, heading, speed * dx, speed * dy, speed * turn);
+        }
+    }
+}